@@ -0,0 +1,114 @@
+package go.game;
+
+/**
+ * Headless benchmark for sizing the <code>PositionCache</code>. For each
+ * board size and memory cap, a fresh cache is shared by a
+ * <code>TreeSearch</code> playing several self-play games with a fixed
+ * playout budget per move, so later moves and later games revisit the
+ * positions, and their rotations and reflections, that earlier searches
+ * stored. Reports the hit rate, the entries held and evicted and the time
+ * spent per game.
+ *
+ * Usage: <code>java go.game.CacheBenchmark [playouts per move] [moves per game] [games]</code>
+ *
+ * @author Benjamin C. McKinley
+ */
+public class CacheBenchmark {
+
+	private static final int[] SIZES = {5, 12, 19};
+	private static final long[] CAPS = {16L << 10, 256L << 10, 4L << 20, 32L << 20};
+
+	//time budget per move, generous enough that the playout budget decides
+	private static final long MILLIS = 60_000;
+
+	private long playouts;
+	private int moves;
+	private int games;
+
+	/**
+	 * Constructor for a <code>CacheBenchmark</code>.
+	 *
+	 * @param playouts playout budget for each move
+	 * @param moves maximum number of moves in each game
+	 * @param games number of games played with each cache
+	 */
+	public CacheBenchmark(long playouts, int moves, int games) {
+		this.playouts = playouts;
+		this.moves = moves;
+		this.games = games;
+	} //CacheBenchmark
+
+	/**
+	 * Runs every board size with every memory cap and prints the results.
+	 *
+	 * @throws InterruptedException if the benchmark is interrupted
+	 */
+	public void runAll() throws InterruptedException {
+
+		System.out.printf("%6s %10s %10s %10s %10s %10s %10s%n",
+				"size", "cap KB", "hit rate", "lookups", "entries", "evictions", "ms/game");
+
+		for (int size : SIZES) {
+			for (long cap : CAPS) {
+
+				PositionCache cache = new PositionCache(cap);
+				TreeSearch search = new TreeSearch();
+				search.setCache(cache);
+
+				long start = System.nanoTime();
+
+				for (int i = 0; i < games; i++) {
+					play(search, size);
+				}
+
+				double millis = (System.nanoTime() - start) / 1e6 / games;
+				long lookups = cache.getHits() + cache.getMisses();
+
+				System.out.printf("%6d %10d %9.1f%% %10d %10d %10d %10.0f%n", size, cap >> 10,
+						100 * cache.getHitRate(), lookups, cache.size(), cache.getEvictions(), millis);
+			}
+		}
+	} //runAll
+
+	/**
+	 * Plays one self-play game until both players pass or the move cap is
+	 * reached.
+	 *
+	 * @param search search choosing both players' moves
+	 * @param size size of the board
+	 * @throws InterruptedException if the benchmark is interrupted
+	 */
+	private void play(TreeSearch search, int size) throws InterruptedException {
+
+		Position position = new Position(size);
+
+		for (int i = 0; i < moves && position.getPasses() < 2; i++) {
+
+			byte color = position.getToMove();
+			int p = search.search(position, MILLIS, playouts);
+
+			if (p < 0) {
+				position.pass(color);
+			}
+			else {
+				position.play(color, p);
+			}
+		}
+	} //play
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args optional playouts per move, moves per game and games per cache
+	 * @throws InterruptedException if the benchmark is interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		long playouts = (args.length > 0) ? Long.parseLong(args[0]) : 1000;
+		int moves = (args.length > 1) ? Integer.parseInt(args[1]) : 30;
+		int games = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+
+		new CacheBenchmark(playouts, moves, games).runAll();
+	} //main
+
+} //CacheBenchmark
@@ -0,0 +1,324 @@
+package go.game;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Headless benchmark for the rules hot paths. Measures the
+ * <code>Position</code> methods that <code>Board</code> delegates to
+ * (<code>checkValidMove</code>, <code>placePiece</code>/<code>updateBoard</code>,
+ * <code>checkSurrounded</code> and <code>score</code>) on several board sizes
+ * without starting a JavaFX stage, along with moves that keep the
+ * <code>AreaScorer</code> up to date and the <code>BitBoard</code> kernel
+ * that finds every empty region of a board. Listing
+ * every legal move after each move is measured both by checking each point
+ * and from the incrementally kept <code>LegalMoves</code> masks, and moves
+ * that keep the 3x3 <code>Patterns</code> codes are measured with a lookup
+ * of the weight of every vacant point. The <code>Symmetry</code> key used
+ * by the position cache is measured on the mid-game position.
+ *
+ * Two workloads are generated from seeded random games: a mid-game position
+ * with about half the board filled, and a capture-heavy game played until
+ * the board is full and groups are repeatedly taken off. Each benchmark
+ * reports throughput and the bytes allocated per operation.
+ *
+ * Usage: <code>java go.game.RulesBenchmark [seconds per benchmark]</code>
+ *
+ * @author Benjamin C. McKinley
+ */
+public class RulesBenchmark {
+
+	private static final int[] SIZES = {5, 12, 19, 37};
+	private static final long SEED = 20200501L;
+
+	private static ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private static volatile long sink;
+
+	private double seconds;
+
+	/**
+	 * Constructor for a <code>RulesBenchmark</code>.
+	 *
+	 * @param seconds time spent measuring each benchmark after warmup
+	 */
+	public RulesBenchmark(double seconds) {
+		this.seconds = seconds;
+	} //RulesBenchmark
+
+	/**
+	 * Interface for a single benchmarked operation.
+	 */
+	private interface Operation {
+
+		/**
+		 * Runs one batch of the operation.
+		 *
+		 * @return number of operations in the batch
+		 */
+		long run();
+	} //Operation
+
+	/**
+	 * Runs every benchmark for every board size and prints the results.
+	 */
+	public void runAll() {
+
+		System.out.printf("%-26s %6s %16s %12s%n", "benchmark", "size", "ops/s", "bytes/op");
+
+		for (int size : SIZES) {
+
+			int[] midgame = randomGame(size, size * size / 2, new SplittableRandom(SEED + size));
+			int[] captures = randomGame(size, size * size * 3, new SplittableRandom(SEED - size));
+			Position mid = replay(new Position(size), midgame);
+			Position full = new Position(size);
+
+			measure("checkValidMove midgame", size, () -> {
+				long legal = 0;
+				for (int p = 0; p < size * size; p++) {
+					legal += mid.isLegal(Position.BLACK, p) ? 1 : 0;
+					legal += mid.isLegal(Position.WHITE, p) ? 1 : 0;
+				}
+				sink += legal;
+				return 2 * size * size;
+			});
+
+			measure("checkSurrounded midgame", size, () -> {
+				long surrounded = 0;
+				for (int p = 0; p < size * size; p++) {
+					surrounded += mid.isSurrounded(p) ? 1 : 0;
+				}
+				sink += surrounded;
+				return size * size;
+			});
+
+			BitBoard vacant = new BitBoard(mid, Position.VACANT);
+			BitBoard left = new BitBoard(size, size);
+			BitBoard region = new BitBoard(size, size);
+
+			measure("bitboard regions midgame", size, () -> {
+				left.copyFrom(vacant);
+				long regions = 0;
+				for (int p = left.first(); p >= 0; p = left.first()) {
+					region.group(vacant, p);
+					left.andNot(region);
+					regions++;
+				}
+				sink += regions;
+				return 1;
+			});
+
+			measure("score midgame", size, () -> {
+				mid.score();
+				sink += mid.getBlackScore();
+				return 1;
+			});
+
+			measure("placePiece midgame", size, () -> {
+				replay(full, midgame);
+				return midgame.length;
+			});
+
+			measure("placePiece captures", size, () -> {
+				replay(full, captures);
+				return captures.length;
+			});
+
+			Position scored = new Position(size);
+			scored.getScorer();
+
+			measure("placePiece area score", size, () -> {
+				replay(scored, captures);
+				sink += (long) scored.getScorer().getWhiteArea();
+				return captures.length;
+			});
+
+			//listed as a playout would, without superko
+			Position checked = new Position(size);
+			checked.setSuperko(false);
+
+			measure("list moves by isLegal", size, () -> {
+				checked.clear();
+				long legal = 0;
+				for (int i = 0; i < captures.length; i++) {
+					byte color = (i % 2 == 0) ? Position.BLACK : Position.WHITE;
+					checked.play(color, captures[i]);
+					for (int p = 0; p < size * size; p++) {
+						legal += checked.isLegal(checked.getToMove(), p) ? 1 : 0;
+					}
+				}
+				sink += legal;
+				return captures.length;
+			});
+
+			Position listed = new Position(size);
+			listed.setSuperko(false);
+			LegalMoves moves = listed.getLegalMoves();
+
+			measure("list moves by bitmask", size, () -> {
+				listed.clear();
+				long legal = 0;
+				for (int i = 0; i < captures.length; i++) {
+					byte color = (i % 2 == 0) ? Position.BLACK : Position.WHITE;
+					listed.play(color, captures[i]);
+					legal += moves.get(listed.getToMove()).count();
+				}
+				sink += legal;
+				return captures.length;
+			});
+
+			Position patterned = new Position(size);
+			patterned.setSuperko(false);
+			Patterns patterns = patterned.getPatterns();
+
+			measure("placePiece patterns", size, () -> {
+				patterned.clear();
+				for (int i = 0; i < captures.length; i++) {
+					patterned.play(i % 2 == 0 ? Position.BLACK : Position.WHITE, captures[i]);
+				}
+				double weight = 0;
+				for (int p = 0; p < size * size; p++) {
+					weight += patterns.getWeight(patterned.getToMove(), p);
+				}
+				sink += (long) weight;
+				return captures.length;
+			});
+
+			Symmetry symmetry = new Symmetry(size, size);
+
+			measure("canonical key midgame", size, () -> {
+				sink += symmetry.canonicalize(mid);
+				return 1;
+			});
+
+			full.clear();
+			long captured = 0;
+
+			for (int i = 0; i < captures.length; i++) {
+				captured += full.play(i % 2 == 0 ? Position.BLACK : Position.WHITE, captures[i]);
+			}
+
+			System.out.printf("%-26s %6d %16.2f %12s%n", "  captures per move", size,
+					(double) captured / captures.length, "");
+		}
+	} //runAll
+
+	/**
+	 * Warms up and then measures one operation, printing the throughput
+	 * and allocation rate.
+	 *
+	 * @param name name of the benchmark
+	 * @param size size of the board
+	 * @param op operation to measure
+	 */
+	private void measure(String name, int size, Operation op) {
+
+		long warmupEnd = System.nanoTime() + (long) (seconds * 0.5e9);
+
+		while (System.nanoTime() < warmupEnd) {
+			op.run();
+		}
+
+		long ops = 0;
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		long end = start + (long) (seconds * 1e9);
+		long now;
+
+		do {
+			ops += op.run();
+			now = System.nanoTime();
+		} while (now < end);
+
+		allocated = allocatedBytes() - allocated;
+		double opsPerSecond = ops / ((now - start) / 1e9);
+		String perOp = (allocated < 0) ? "n/a" : String.format("%.3f", (double) allocated / ops);
+
+		System.out.printf("%-26s %6d %16.0f %12s%n", name, size, opsPerSecond, perOp);
+	} //measure
+
+	/**
+	 * Gets the bytes allocated so far by the current thread.
+	 *
+	 * @return allocated bytes, or a negative value if unsupported
+	 */
+	private static long allocatedBytes() {
+
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+
+		return Long.MIN_VALUE;
+	} //allocatedBytes
+
+	/**
+	 * Plays a seeded random game, alternating colors from black, and records
+	 * the points played.
+	 *
+	 * @param size size of the board
+	 * @param length maximum number of moves to play
+	 * @param random source of random moves
+	 * @return array of points played in order
+	 */
+	private static int[] randomGame(int size, int length, SplittableRandom random) {
+
+		Position position = new Position(size);
+		int[] moves = new int[length];
+		int[] candidates = new int[size * size];
+		int played = 0;
+
+		while (played < length) {
+
+			byte color = (played % 2 == 0) ? Position.BLACK : Position.WHITE;
+			int count = 0;
+
+			for (int p = 0; p < size * size; p++) {
+				if (position.isLegal(color, p)) {
+					candidates[count++] = p;
+				}
+			}
+
+			if (count == 0) {
+				break;
+			}
+
+			int p = candidates[random.nextInt(count)];
+			position.play(color, p);
+			moves[played++] = p;
+		}
+
+		return Arrays.copyOf(moves, played);
+	} //randomGame
+
+	/**
+	 * Clears a position and replays a recorded game onto it.
+	 *
+	 * @param position position to reuse
+	 * @param moves points to play, alternating from black
+	 * @return the parameter position
+	 */
+	private static Position replay(Position position, int[] moves) {
+
+		position.clear();
+
+		for (int i = 0; i < moves.length; i++) {
+			position.play(i % 2 == 0 ? Position.BLACK : Position.WHITE, moves[i]);
+		}
+
+		return position;
+	} //replay
+
+	/**
+	 * Runs the benchmark suite.
+	 *
+	 * @param args optional number of seconds to measure each benchmark
+	 */
+	public static void main(String[] args) {
+
+		double seconds = (args.length > 0) ? Double.parseDouble(args[0]) : 2;
+
+		new RulesBenchmark(seconds).runAll();
+	} //main
+
+} //RulesBenchmark
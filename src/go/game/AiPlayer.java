@@ -0,0 +1,108 @@
+package go.game;
+
+import go.game.Space.Resident;
+
+/**
+ * Class representing a computer player in a game of Go. Chooses its moves
+ * with a <code>TreeSearch</code> that spreads random playouts across every
+ * core instead of waiting for clicks. Every computer player shares one
+ * <code>PositionCache</code>, so what one search learns about a position,
+ * or any rotation or reflection of it, is reused by later moves and by
+ * other games.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class AiPlayer extends Player {
+
+	public static final long DEFAULT_MILLIS = 1000;
+	public static final long CACHE_BYTES = 32L << 20;
+
+	private static final PositionCache CACHE = new PositionCache(CACHE_BYTES);
+
+	private TreeSearch search = new TreeSearch();
+	private long millis;
+	private long playouts;
+
+	/**
+	 * Constructor for an <code>AiPlayer</code> that thinks for
+	 * <code>DEFAULT_MILLIS</code> per move.
+	 *
+	 * @param gameBoard board the player is using
+	 * @param selected color of player's pieces
+	 */
+	public AiPlayer(Board gameBoard, Resident selected) {
+		this(gameBoard, selected, DEFAULT_MILLIS, Long.MAX_VALUE);
+	} //AiPlayer
+
+	/**
+	 * Constructor for an <code>AiPlayer</code> with a search budget.
+	 *
+	 * @param gameBoard board the player is using
+	 * @param selected color of player's pieces
+	 * @param millis time to think per move in milliseconds
+	 * @param playouts maximum number of playouts per move
+	 */
+	public AiPlayer(Board gameBoard, Resident selected, long millis, long playouts) {
+		super(gameBoard, selected);
+		this.millis = millis;
+		this.playouts = playouts;
+		search.setCache(CACHE);
+	} //AiPlayer
+
+	/**
+	 * Constructor for an <code>AiPlayer</code> without a <code>Board</code>.
+	 *
+	 * @param position position the player is using
+	 * @param moves queue of the game, emptied after each move
+	 * @param selected color of player's pieces
+	 * @param millis time to think per move in milliseconds
+	 * @param playouts maximum number of playouts per move
+	 */
+	public AiPlayer(Position position, MoveQueue moves, Resident selected, long millis, long playouts) {
+		super(position, moves, selected);
+		this.millis = millis;
+		this.playouts = playouts;
+		search.setCache(CACHE);
+	} //AiPlayer
+
+	/**
+	 * Searches the current position and places the chosen piece, or passes
+	 * when no move is worth playing. Clicks made while thinking are discarded,
+	 * but undo and redo requests are kept for the next turn that takes them.
+	 *
+	 * @throws InterruptedException if the game is stopped while thinking
+	 */
+	@Override
+	public void move() throws InterruptedException {
+
+		int point = search.search(position, millis, playouts);
+
+		if (point < 0) {
+			pass();
+		}
+		else {
+			place(point);
+		}
+
+		moves.clearPoints();
+	} //move
+
+	/**
+	 * Getter method for <code>search</code>.
+	 *
+	 * @return the search used to choose moves
+	 */
+	public TreeSearch getSearch() {
+		return search;
+	} //getSearch
+
+	/**
+	 * Gets the cache shared by every computer player.
+	 *
+	 * @return the shared cache
+	 */
+	public static PositionCache getCache() {
+		return CACHE;
+	} //getCache
+
+} //AiPlayer
@@ -0,0 +1,362 @@
+package go.game;
+
+/**
+ * Class that keeps the empty regions of a <code>Position</code> and the
+ * color that owns each of them. A region bordered only by black stones is
+ * black territory, one bordered only by white stones is white territory, and
+ * one touching both is neutral.
+ *
+ * Regions are updated incrementally. When points change, only the regions
+ * containing or touching those points are discarded and flood filled again,
+ * so a move far from a large region costs nothing for that region. The
+ * vacant points and stones are also kept as <code>BitBoard</code> row masks,
+ * so each region is filled a row at a time, which requires a board no more
+ * than 64 points wide.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class AreaScorer {
+
+	public static final double DEFAULT_KOMI = 6.5;
+
+	private Position position;
+	private double komi = DEFAULT_KOMI;
+
+	//region representative per point, -1 on stones
+	private int[] region;
+
+	//indexed by region representative
+	private int[] regionSize;
+	private byte[] regionBorder;
+
+	private int blackTerritory = 0;
+	private int whiteTerritory = 0;
+
+	//vacant points and stones of each color, kept in step with the position
+	private BitBoard vacant, black, white;
+
+	//scratch space for flood fills
+	private BitBoard reach;
+	private int[] points;
+	private int[] killed;
+	private int[] filled;
+	private int epoch = 0;
+
+	/**
+	 * Constructor for an <code>AreaScorer</code> of a position.
+	 *
+	 * @param position position whose regions are scored
+	 */
+	public AreaScorer(Position position) {
+
+		this.position = position;
+
+		int n = position.getPointCount();
+		region = new int[n];
+		regionSize = new int[n];
+		regionBorder = new byte[n];
+		points = new int[n];
+		vacant = new BitBoard(position.getWidth(), position.getHeight());
+		black = new BitBoard(position.getWidth(), position.getHeight());
+		white = new BitBoard(position.getWidth(), position.getHeight());
+		reach = new BitBoard(position.getWidth(), position.getHeight());
+		killed = new int[n];
+		filled = new int[n];
+
+		rebuild();
+	} //AreaScorer
+
+	/**
+	 * Flood fills every region of the position from scratch.
+	 */
+	public void rebuild() {
+
+		epoch++;
+		blackTerritory = 0;
+		whiteTerritory = 0;
+
+		vacant.load(position, Position.VACANT);
+		black.load(position, Position.BLACK);
+		white.load(position, Position.WHITE);
+
+		for (int p = 0; p < region.length; p++) {
+			region[p] = -1;
+		}
+
+		for (int p = 0; p < region.length; p++) {
+			if (position.get(p) == Position.VACANT) {
+				fill(p);
+			}
+		}
+	} //rebuild
+
+	/**
+	 * Updates the regions touched by a set of changed points.
+	 *
+	 * @param placed index of a point that became a stone, or -1
+	 * @param changed array of points that changed
+	 * @param count number of entries of <code>changed</code> to use
+	 */
+	public void update(int placed, int[] changed, int count) {
+
+		epoch++;
+
+		if (placed >= 0) {
+			track(placed);
+		}
+		for (int i = 0; i < count; i++) {
+			track(changed[i]);
+		}
+
+		if (placed >= 0) {
+			discardAround(placed);
+		}
+		for (int i = 0; i < count; i++) {
+			discardAround(changed[i]);
+		}
+
+		if (placed >= 0) {
+			fillAround(placed);
+		}
+		for (int i = 0; i < count; i++) {
+			fillAround(changed[i]);
+		}
+	} //update
+
+	/**
+	 * Brings the bit sets up to date with the color now on a point.
+	 *
+	 * @param p index of the changed point
+	 */
+	private void track(int p) {
+
+		byte color = position.get(p);
+
+		vacant.unset(p);
+		black.unset(p);
+		white.unset(p);
+
+		if (color == Position.VACANT) {
+			vacant.set(p);
+		}
+		else if (color == Position.BLACK) {
+			black.set(p);
+		}
+		else {
+			white.set(p);
+		}
+	} //track
+
+	/**
+	 * Discards the regions containing or touching a changed point.
+	 *
+	 * @param p index of the changed point
+	 */
+	private void discardAround(int p) {
+
+		discard(region[p]);
+		region[p] = -1;
+
+		for (int i = 0; i < 4; i++) {
+
+			int q = position.getAdjacent(p, i);
+
+			if (q >= 0) {
+				discard(region[q]);
+			}
+		}
+	} //discardAround
+
+	/**
+	 * Removes the contribution of a region from the totals, once per update.
+	 *
+	 * @param r representative of the region, or -1
+	 */
+	private void discard(int r) {
+
+		if (r < 0 || killed[r] == epoch) {
+			return;
+		}
+
+		killed[r] = epoch;
+
+		if (regionBorder[r] == Position.BLACK) {
+			blackTerritory -= regionSize[r];
+		}
+		else if (regionBorder[r] == Position.WHITE) {
+			whiteTerritory -= regionSize[r];
+		}
+	} //discard
+
+	/**
+	 * Fills the regions at and around a changed point.
+	 *
+	 * @param p index of the changed point
+	 */
+	private void fillAround(int p) {
+
+		if (position.get(p) == Position.VACANT) {
+			fill(p);
+		}
+
+		for (int i = 0; i < 4; i++) {
+
+			int q = position.getAdjacent(p, i);
+
+			if (q >= 0 && position.get(q) == Position.VACANT) {
+				fill(q);
+			}
+		}
+	} //fillAround
+
+	/**
+	 * Flood fills the empty region containing a point, unless it was already
+	 * filled during this update, and adds it to the totals. The region is
+	 * grown as a bit set through the vacant points, and its border colors
+	 * are found by testing which stones touch it.
+	 *
+	 * @param seed index of a vacant point, which becomes the representative
+	 */
+	private void fill(int seed) {
+
+		if (filled[seed] == epoch) {
+			return;
+		}
+
+		reach.group(vacant, seed);
+		int size = reach.toPoints(points);
+
+		for (int i = 0; i < size; i++) {
+			region[points[i]] = seed;
+			filled[points[i]] = epoch;
+		}
+
+		byte border = 0;
+
+		if (reach.touches(black)) {
+			border |= Position.BLACK;
+		}
+		if (reach.touches(white)) {
+			border |= Position.WHITE;
+		}
+
+		regionSize[seed] = size;
+		regionBorder[seed] = border;
+
+		if (border == Position.BLACK) {
+			blackTerritory += size;
+		}
+		else if (border == Position.WHITE) {
+			whiteTerritory += size;
+		}
+	} //fill
+
+	/**
+	 * Gets the owner of a point: the stone on it, or the color whose
+	 * territory it is in.
+	 *
+	 * @param p index of point
+	 * @return color code of the owner, or <code>Position.VACANT</code> if neutral
+	 */
+	public byte getOwner(int p) {
+
+		byte color = position.get(p);
+
+		if (color != Position.VACANT) {
+			return color;
+		}
+
+		byte border = regionBorder[region[p]];
+
+		return (border == Position.BLACK || border == Position.WHITE) ? border : Position.VACANT;
+	} //getOwner
+
+	/**
+	 * Gets black's area score: stones on the board plus territory.
+	 *
+	 * @return black area score
+	 */
+	public double getBlackArea() {
+		return position.getBlackScore() + blackTerritory;
+	} //getBlackArea
+
+	/**
+	 * Gets white's area score: stones on the board plus territory plus komi.
+	 *
+	 * @return white area score
+	 */
+	public double getWhiteArea() {
+		return position.getWhiteScore() + whiteTerritory + komi;
+	} //getWhiteArea
+
+	/**
+	 * Gets the result by area score in SGF form.
+	 *
+	 * @return "B+" or "W+" followed by the margin, or "0" for a draw
+	 */
+	public String getResult() {
+
+		double margin = getBlackArea() - getWhiteArea();
+
+		if (margin == 0) {
+			return "0";
+		}
+
+		return (margin > 0 ? "B+" : "W+") + Math.abs(margin);
+	} //getResult
+
+	/**
+	 * Gets black's territory score: territory plus prisoners taken.
+	 *
+	 * @return black territory score
+	 */
+	public double getBlackTerritoryScore() {
+		return blackTerritory + position.getBlackCaptures();
+	} //getBlackTerritoryScore
+
+	/**
+	 * Gets white's territory score: territory plus prisoners taken plus komi.
+	 *
+	 * @return white territory score
+	 */
+	public double getWhiteTerritoryScore() {
+		return whiteTerritory + position.getWhiteCaptures() + komi;
+	} //getWhiteTerritoryScore
+
+	/**
+	 * Getter method for <code>blackTerritory</code>.
+	 *
+	 * @return number of vacant points owned by black
+	 */
+	public int getBlackTerritory() {
+		return blackTerritory;
+	} //getBlackTerritory
+
+	/**
+	 * Getter method for <code>whiteTerritory</code>.
+	 *
+	 * @return number of vacant points owned by white
+	 */
+	public int getWhiteTerritory() {
+		return whiteTerritory;
+	} //getWhiteTerritory
+
+	/**
+	 * Getter method for <code>komi</code>.
+	 *
+	 * @return points given to white
+	 */
+	public double getKomi() {
+		return komi;
+	} //getKomi
+
+	/**
+	 * Setter method for <code>komi</code>.
+	 *
+	 * @param komi points given to white
+	 */
+	public void setKomi(double komi) {
+		this.komi = komi;
+	} //setKomi
+
+} //AreaScorer
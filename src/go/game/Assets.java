@@ -0,0 +1,119 @@
+package go.game;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Class responsible for loading the images bundled with the game. Images
+ * are looked up on the classpath first and then in the <code>res</code>
+ * directory, and each is decoded once per process and shared by every
+ * game, so starting a game never touches the network or decodes an image
+ * twice. JavaFX images are immutable once loaded, which makes sharing
+ * them safe.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class Assets {
+
+	public static final String PIECES = "go_pieces.png";
+	public static final String TITLE = "go_title.png";
+	public static final String ICON = "go_icon.png";
+
+	private static final String DIRECTORY = "res";
+
+	private static Map<String, Image> images = new ConcurrentHashMap<>();
+	private static volatile SpriteSheet pieces;
+
+	private Assets() {
+	} //Assets
+
+	/**
+	 * Gets a bundled image, decoding it on first use.
+	 *
+	 * @param name file name of the image
+	 * @return the decoded image, or null if it is not bundled
+	 */
+	public static Image getImage(String name) {
+
+		Image image = images.get(name);
+
+		if (image == null) {
+
+			String location = locate(name);
+
+			if (location == null) {
+				return null;
+			}
+
+			image = images.computeIfAbsent(name, n -> new Image(location));
+		}
+
+		return image;
+	} //getImage
+
+	/**
+	 * Gets the sprite sheet of board pieces shared by every <code>Board</code>.
+	 *
+	 * @return sprite sheet of the eight 24x24 piece sprites
+	 */
+	public static SpriteSheet getPieces() {
+
+		if (pieces == null) {
+			synchronized (Assets.class) {
+				if (pieces == null) {
+					pieces = new SpriteSheet(getImage(PIECES), 24, 24, 8);
+				}
+			}
+		}
+
+		return pieces;
+	} //getPieces
+
+	/**
+	 * Gets the window icon: the bundled icon if there is one, otherwise the
+	 * black stone sprite.
+	 *
+	 * @return icon image
+	 */
+	public static Image getIcon() {
+
+		Image icon = getImage(ICON);
+
+		if (icon == null) {
+			icon = images.computeIfAbsent(ICON, n -> {
+				SpriteSheet sheet = getPieces();
+				return new WritableImage(sheet.getSheet().getPixelReader(),
+						(int) sheet.getSprite(0).getMinX(), (int) sheet.getSprite(0).getMinY(), 24, 24);
+			});
+		}
+
+		return icon;
+	} //getIcon
+
+	/**
+	 * Finds a bundled file on the classpath or in the resource directory.
+	 *
+	 * @param name file name
+	 * @return URL of the file as a string, or null if not found
+	 */
+	private static String locate(String name) {
+
+		URL resource = Assets.class.getResource("/" + name);
+
+		if (resource != null) {
+			return resource.toExternalForm();
+		}
+
+		Path file = Paths.get(DIRECTORY, name);
+
+		return Files.exists(file) ? file.toUri().toString() : null;
+	} //locate
+
+} //Assets
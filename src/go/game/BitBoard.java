@@ -0,0 +1,374 @@
+package go.game;
+
+import java.util.Arrays;
+
+/**
+ * Class representing a set of points as one <code>long</code> row mask per
+ * row of the board, with bit <code>x</code> of row <code>y</code> standing
+ * for the point at x, y. Boards may be rectangular and up to 64 points wide,
+ * with any number of rows.
+ *
+ * The kernels work on whole rows at a time. A flood fill spreads along each
+ * row with shifts that double in length, so a run of any width is covered
+ * in six steps, and spreads between rows by sweeping down and then up the
+ * board until nothing changes. This grows a group or fills an empty
+ * region without recursion and without visiting points one at a time, so
+ * it scales to big boards.
+ *
+ * Point indices passed to and returned from a <code>BitBoard</code> follow
+ * <code>Position</code>: <code>height * x + y</code>.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class BitBoard {
+
+	public static final int MAX_WIDTH = 64;
+
+	private int width, height;
+	private long[] rows;
+
+	/**
+	 * Constructor for an empty <code>BitBoard</code>.
+	 *
+	 * @param width number of points in the x direction, at most 64
+	 * @param height number of points in the y direction
+	 */
+	public BitBoard(int width, int height) {
+
+		if (width < 1 || width > MAX_WIDTH || height < 1) {
+			throw new IllegalArgumentException("Unsupported board size " + width + "x" + height);
+		}
+
+		this.width = width;
+		this.height = height;
+		rows = new long[height];
+	} //BitBoard
+
+	/**
+	 * Constructor for a <code>BitBoard</code> of the points of one color in
+	 * a position.
+	 *
+	 * @param position position to read
+	 * @param color color code of the points to include
+	 */
+	public BitBoard(Position position, byte color) {
+		this(position.getWidth(), position.getHeight());
+		load(position, color);
+	} //BitBoard
+
+	/**
+	 * Replaces this set with the points of one color in a position of the
+	 * same width and height.
+	 *
+	 * @param position position to read
+	 * @param color color code of the points to include
+	 */
+	public void load(Position position, byte color) {
+
+		Arrays.fill(rows, 0);
+		int p = 0;
+
+		for (int x = 0; x < width; x++) {
+
+			long bit = 1L << x;
+
+			for (int y = 0; y < height; y++, p++) {
+				if (position.get(p) == color) {
+					rows[y] |= bit;
+				}
+			}
+		}
+	} //load
+
+	/**
+	 * Removes every point.
+	 */
+	public void clear() {
+		Arrays.fill(rows, 0);
+	} //clear
+
+	/**
+	 * Adds a point.
+	 *
+	 * @param p index of point
+	 */
+	public void set(int p) {
+		rows[p % height] |= 1L << (p / height);
+	} //set
+
+	/**
+	 * Removes a point.
+	 *
+	 * @param p index of point
+	 */
+	public void unset(int p) {
+		rows[p % height] &= ~(1L << (p / height));
+	} //unset
+
+	/**
+	 * Checks whether a point is in the set.
+	 *
+	 * @param p index of point
+	 * @return boolean value whether the point is set
+	 */
+	public boolean get(int p) {
+		return (rows[p % height] & (1L << (p / height))) != 0;
+	} //get
+
+	/**
+	 * Replaces this set with a copy of another of the same size.
+	 *
+	 * @param other set to copy
+	 */
+	public void copyFrom(BitBoard other) {
+		System.arraycopy(other.rows, 0, rows, 0, height);
+	} //copyFrom
+
+	/**
+	 * Removes the points of another set.
+	 *
+	 * @param other set to remove
+	 */
+	public void andNot(BitBoard other) {
+
+		for (int y = 0; y < height; y++) {
+			rows[y] &= ~other.rows[y];
+		}
+	} //andNot
+
+	/**
+	 * Checks whether the set is empty.
+	 *
+	 * @return boolean value whether no point is set
+	 */
+	public boolean isEmpty() {
+
+		for (int y = 0; y < height; y++) {
+			if (rows[y] != 0) {
+				return false;
+			}
+		}
+
+		return true;
+	} //isEmpty
+
+	/**
+	 * Checks whether a point of another set is next to a point of this one,
+	 * without changing either.
+	 *
+	 * @param other set to compare with
+	 * @return boolean value whether the sets are adjacent
+	 */
+	public boolean touches(BitBoard other) {
+
+		long above = 0;
+
+		for (int y = 0; y < height; y++) {
+
+			long row = rows[y];
+			long below = (y + 1 < height) ? rows[y + 1] : 0;
+
+			if (((row << 1 | row >>> 1 | above | below) & other.rows[y]) != 0) {
+				return true;
+			}
+
+			above = row;
+		}
+
+		return false;
+	} //touches
+
+	/**
+	 * Counts the points in the set.
+	 *
+	 * @return number of points set
+	 */
+	public int count() {
+
+		int count = 0;
+
+		for (int y = 0; y < height; y++) {
+			count += Long.bitCount(rows[y]);
+		}
+
+		return count;
+	} //count
+
+	/**
+	 * Gets the lowest point in the set, scanning rows from the top.
+	 *
+	 * @return index of a point in the set, or -1 if it is empty
+	 */
+	public int first() {
+
+		for (int y = 0; y < height; y++) {
+			if (rows[y] != 0) {
+				return height * Long.numberOfTrailingZeros(rows[y]) + y;
+			}
+		}
+
+		return -1;
+	} //first
+
+	/**
+	 * Writes the index of every point in the set to an array.
+	 *
+	 * @param into array with room for every point in the set
+	 * @return number of indices written
+	 */
+	public int toPoints(int[] into) {
+
+		int count = 0;
+
+		for (int y = 0; y < height; y++) {
+			for (long bits = rows[y]; bits != 0; bits &= bits - 1) {
+				into[count++] = height * Long.numberOfTrailingZeros(bits) + y;
+			}
+		}
+
+		return count;
+	} //toPoints
+
+	/**
+	 * Grows the set to every point connected to it through a mask. Points
+	 * of the set outside the mask are dropped first, so the result is the
+	 * union of the connected parts of the mask that the set touched.
+	 *
+	 * @param within points the fill may spread through
+	 */
+	public void flood(BitBoard within) {
+
+		long[] mask = within.rows;
+		int lo = -1, hi = -1;
+
+		for (int y = 0; y < height; y++) {
+
+			rows[y] &= mask[y];
+
+			if (rows[y] != 0) {
+				hi = y;
+
+				if (lo < 0) {
+					lo = y;
+				}
+			}
+		}
+
+		if (lo < 0) {
+			return;
+		}
+
+		boolean changed = true;
+
+		while (changed) {
+
+			changed = false;
+
+			for (int y = lo; y < height; y++) {
+
+				long seed = rows[y] | ((y > 0) ? rows[y - 1] & mask[y] : 0);
+				long row = spread(seed, mask[y]);
+
+				if (row != rows[y]) {
+					rows[y] = row;
+					changed = true;
+					hi = Math.max(hi, y);
+				}
+				else if (y > hi) {
+					break;
+				}
+			}
+
+			for (int y = hi; y >= 0; y--) {
+
+				long seed = rows[y] | ((y + 1 < height) ? rows[y + 1] & mask[y] : 0);
+				long row = spread(seed, mask[y]);
+
+				if (row != rows[y]) {
+					rows[y] = row;
+					changed = true;
+					lo = Math.min(lo, y);
+				}
+				else if (y < lo) {
+					break;
+				}
+			}
+		}
+	} //flood
+
+	/**
+	 * Replaces this set with the group of stones containing a point.
+	 *
+	 * @param stones stones of the group's color
+	 * @param p index of a point in <code>stones</code>
+	 */
+	public void group(BitBoard stones, int p) {
+		clear();
+		set(p);
+		flood(stones);
+	} //group
+
+	/**
+	 * Spreads seed bits along a row to the whole runs of a mask they lie in,
+	 * using shifts of 1, 2, 4 up to 32 in each direction.
+	 *
+	 * @param seed bits to spread from
+	 * @param mask bits the spread may cover
+	 * @return every bit of <code>mask</code> in a run touched by <code>seed</code>
+	 */
+	private static long spread(long seed, long mask) {
+
+		long g = seed & mask;
+
+		if (g == 0 || g == mask) {
+			return g;
+		}
+
+		long p = mask;
+		g |= p & (g << 1);
+		p &= p << 1;
+		g |= p & (g << 2);
+		p &= p << 2;
+		g |= p & (g << 4);
+		p &= p << 4;
+		g |= p & (g << 8);
+		p &= p << 8;
+		g |= p & (g << 16);
+		p &= p << 16;
+		g |= p & (g << 32);
+
+		p = mask;
+		g |= p & (g >>> 1);
+		p &= p >>> 1;
+		g |= p & (g >>> 2);
+		p &= p >>> 2;
+		g |= p & (g >>> 4);
+		p &= p >>> 4;
+		g |= p & (g >>> 8);
+		p &= p >>> 8;
+		g |= p & (g >>> 16);
+		p &= p >>> 16;
+		g |= p & (g >>> 32);
+
+		return g;
+	} //spread
+
+	/**
+	 * Getter method for <code>width</code>.
+	 *
+	 * @return number of points in the x direction
+	 */
+	public int getWidth() {
+		return width;
+	} //getWidth
+
+	/**
+	 * Getter method for <code>height</code>.
+	 *
+	 * @return number of points in the y direction
+	 */
+	public int getHeight() {
+		return height;
+	} //getHeight
+
+} //BitBoard
@@ -1,28 +1,62 @@
 package go.game;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import go.game.Space.Resident;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.layout.GridPane;
 
 /**
  * Class representing a <code>GridPane</code> object consisting of
- * either vacant or occupied spaces. Contains methods relating to checking
- * move validity and placing pieces at indices.
+ * either vacant or occupied spaces. Mirrors the state of a <code>Position</code>,
+ * which contains the rules for checking move validity and placing pieces.
+ * 
+ * Moves are made on the game thread, but the nodes may only be changed on
+ * the FX Application Thread. Each changed point is published with its new
+ * color into a pending set, and one <code>Platform.runLater</code> task at a
+ * time applies the whole set. Points that change several times before the
+ * task runs are applied once with their latest color, so a large capture
+ * costs one pulse however many stones it removes.
+ * 
+ * The hover highlight is drawn stronger for moves whose 3x3
+ * <code>Patterns</code> weigh more for the player to move. The game thread
+ * works out the hints of both colors again only on the points whose
+ * patterns a move changed and publishes them with the pending set, along
+ * with the player to move, and the FX thread reads only its own copy.
  * 
  * @author Benjamin C. McKinley
  */
 public class Board extends GridPane {
 
 	private int size;
-	private int lastX = -1;
-	private int lastY = -1;
-	private int blackScore = 0;
-	private int whiteScore = 0;
+	private MoveQueue moves = new MoveQueue();
 	
-	private SpriteSheet pieces = new SpriteSheet("https://i.imgur.com/UgzVv6H.png", 24, 24, 8);
+	protected SpriteSheet pieces = Assets.getPieces();
 	
+	private Position position;
+	private Patterns patterns;
 	private Space[] spaces;
 
+	//colors and move hints shown by the view, touched only on the FX thread
+	private byte[] shown;
+	private float[] blackHints, whiteHints;
+	private byte hintColor = Position.BLACK;
+
+	//changes waiting for the FX thread, guarded by the lock on pending
+	private int[] pending;
+	private byte[] pendingColor;
+	private boolean[] isPending;
+	private int pendingCount = 0;
+	private int[] applying;
+	private byte[] applyingColor;
+	private int[] hintPoints;
+	private boolean[] isHintPending;
+	private int hintCount = 0;
+	private float[] pendingBlackHints, pendingWhiteHints;
+	private byte pendingToMove = Position.BLACK;
+	private AtomicBoolean scheduled = new AtomicBoolean();
+
 	/**
 	 * Constructor for the game board. Fills board with vacant
 	 * <code>Space</code> array.
@@ -30,10 +64,48 @@ public class Board extends GridPane {
 	 * @param size size of row and col for board
 	 */
 	public Board(int size) {
+		this(size, true);
+	} //Board
+
+	/**
+	 * Constructor for a game board that optionally leaves out the
+	 * <code>Space</code> nodes, for subclasses that draw the board another way
+	 * and override <code>mirror</code>.
+	 * 
+	 * @param size size of row and col for board
+	 * @param nodes whether to build a <code>Space</code> node for every point
+	 */
+	protected Board(int size, boolean nodes) {
 
 		this.size = size;
 		setAlignment(Pos.CENTER);
 
+		position = new Position(size);
+		patterns = position.getPatterns();
+
+		shown = new byte[size * size];
+		blackHints = new float[size * size];
+		whiteHints = new float[size * size];
+		hintPoints = new int[size * size];
+		isHintPending = new boolean[size * size];
+		pendingBlackHints = new float[size * size];
+		pendingWhiteHints = new float[size * size];
+		pending = new int[size * size];
+		pendingColor = new byte[size * size];
+		isPending = new boolean[size * size];
+		applying = new int[size * size];
+		applyingColor = new byte[size * size];
+
+		//the board starts empty, so the view needs only the opening hints
+		for (int point = 0; point < size * size; point++) {
+			blackHints[point] = patterns.getHint(Position.BLACK, point);
+			whiteHints[point] = patterns.getHint(Position.WHITE, point);
+		}
+
+		if (!nodes) {
+			return;
+		}
+
 		spaces = new Space[size * size];
 
 		for (int y = 0; y < size; y++) {
@@ -47,22 +119,20 @@ public class Board extends GridPane {
 					setClickEvent(fauxX, fauxY);
 				});
 				spaces[size * x + y].setOnMouseEntered(event -> {
-					spaces[size * fauxX + fauxY].highlight();
+					spaces[size * fauxX + fauxY].highlight(getHint(size * fauxX + fauxY));
 				});
 				spaces[size * x + y].setOnMouseExited(event -> {
 					spaces[size * fauxX + fauxY].updatePiece();
 				});
 
-				setSpace(Resident.VACANT, x, y);
 				add(getSpace(x, y), x, y);
 			}
 		}
 	} //Board
 
 	/**
-	 * Check if move entered is valid by placing the piece
-	 * at the designated location, checking how that affects the board, 
-	 * and removing it.
+	 * Check if move entered is valid using the liberty counts of the
+	 * neighbouring groups. Does not change the board or any <code>Space</code>.
 	 * 
 	 * @param selected color of piece to validate
 	 * @param x coordinate in x direction to check
@@ -70,17 +140,7 @@ public class Board extends GridPane {
 	 * @return boolean value for validity
 	 */
 	public boolean checkValidMove(Resident selected, int x, int y) {
-
-		setSpace(selected, x, y);
-
-		if (checkSurrounded(x, y)) {
-			setSpace(Resident.VACANT, x, y);
-			return false;
-		}
-
-		setSpace(Resident.VACANT, x, y);
-		return true;
-
+		return position.isLegal(Position.code(selected), x, y);
 	} //checkValidMove
 
 	/**
@@ -93,141 +153,320 @@ public class Board extends GridPane {
 	 */
 	public void placePiece(Resident resident, int x, int y) {
 
-		setSpace(resident, x, y);
+		position.play(Position.code(resident), x, y);
 
 		updateBoard();
 
-		//re-sets piece in case updateBoard removed it
-		setSpace(resident, x, y);
-		
-		score();
-
 	} //placePiece
 
 	/**
-	 * Checks every spot on the <code>Board</code> to see if it has enough liberties
-	 * to remain alive. Removes dead pieces.
+	 * Updates the <code>Space</code> objects changed by the last move: the
+	 * placed piece and any pieces it captured. The rest of the board is
+	 * left untouched.
 	 */
 	public void updateBoard() {
 
-		boolean[][] toRemove = new boolean[size][size];
+		int last = position.getLastMove();
 
-		//for each index
-		for (int x = 0; x < size; x++) {
-			for (int y = 0; y < size; y++) {
+		if (last >= 0) {
+			publish(last);
+		}
 
-				if (checkSurrounded(x, y)) {
-					toRemove[x][y] = true;
-				}
+		int[] captured = position.getCaptured();
 
-				for (int xx = 0; xx < size; xx++) {
-					for (int yy = 0; yy < size; yy++) {
-						getSpace(xx, yy).setSeen(false);
-					}
-				}
+		for (int i = 0; i < position.getCapturedCount(); i++) {
+			publish(captured[i]);
+		}
+
+		publishHints(last, captured, position.getCapturedCount());
+	} //updateBoard
+
+	/**
+	 * Adds a changed point to the pending set with its current color and
+	 * schedules the FX thread to apply the set if it is not already due to.
+	 * 
+	 * @param point index of the point that changed
+	 */
+	protected void publish(int point) {
 
+		synchronized (pending) {
+
+			if (!isPending[point]) {
+				isPending[point] = true;
+				pending[pendingCount++] = point;
 			}
+
+			pendingColor[point] = position.get(point);
 		}
 
-		//remove spaces
-		for (int x = 0; x < size; x++) {
-			for (int y = 0; y < size; y++) {
-				if (toRemove[x][y]) {
-					getSpace(x, y).setResident(Resident.VACANT);
+		schedule();
+	} //publish
+
+	/**
+	 * Adds the move hints changed by the last move to the pending set, along
+	 * with the player now to move. Only the stones placed or removed, their
+	 * neighbours and the points whose atari bits were looked at again can
+	 * have a new pattern, so every other hint is left as it is.
+	 *
+	 * @param p index of the point played or emptied, or -1 for a pass
+	 * @param stones array of the stones captured or put back
+	 * @param count number of entries of <code>stones</code> to use
+	 */
+	protected void publishHints(int p, int[] stones, int count) {
+
+		synchronized (pending) {
+
+			pendingToMove = position.getToMove();
+
+			if (p >= 0) {
+
+				publishAround(p);
+
+				for (int i = 0; i < count; i++) {
+					publishAround(stones[i]);
+				}
+
+				int[] refreshed = patterns.getRefreshed();
+
+				for (int i = 0; i < patterns.getRefreshedCount(); i++) {
+					publishHint(refreshed[i]);
 				}
-				getSpace(x, y).setSeen(false);
 			}
 		}
-	} //updateBoard
+
+		schedule();
+	} //publishHints
 
 	/**
-	 * Recursively checks whether an individual piece or the group of the same
-	 * type it is connected to has any liberties.
-	 * 
-	 * @param x coordinate of piece to check in the x direction
-	 * @param y coordinate of piece to check in the y direction
-	 * @return boolean value whether location is surrounded
+	 * Adds the move hints of every point to the pending set, along with the
+	 * player to move. Used when stones are set up rather than played.
 	 */
-	public boolean checkSurrounded(int x, int y) {
+	protected void publishHints() {
+
+		synchronized (pending) {
 
-		Space stone = getSpace(x, y);
+			pendingToMove = position.getToMove();
 
-		if (stone.getResident() == Resident.VACANT) {
-			return false;
+			for (int point = 0; point < size * size; point++) {
+				publishHint(point);
+			}
 		}
 
-		stone.setSeen(true);
+		schedule();
+	} //publishHints
 
-		//check each direction
-		int[] offX = {0, 1, -1, 0};
-		int[] offY = {1, 0, 0, -1};
+	/**
+	 * Adds the move hints of a point whose stone changed and of its eight
+	 * neighbours to the pending set. Called holding the lock on pending.
+	 *
+	 * @param s index of the point
+	 */
+	private void publishAround(int s) {
 
-		for (int dir = 0; dir < 4; dir++) {
+		publishHint(s);
 
-			//if out of bounds of grid count as a filled space
-			if (x + offX[dir] < size & y + offY[dir] < size & x + offX[dir] >= 0 & y + offY[dir] >= 0) {
+		for (int i = 0; i < Patterns.NEIGHBOURS; i++) {
 
-				Space spot = getSpace(x + offX[dir], y + offY[dir]);
+			int q = patterns.getNeighbour(s, i);
 
-				//base case: if there is a vacant spot connected to any element of the group then it can remain alive
-				if (spot.getResident() == Resident.VACANT) {
+			if (q >= 0) {
+				publishHint(q);
+			}
+		}
+	} //publishAround
 
-					return false;
-				}
-				else {
-					//if this space has never been looked at and belongs to group
-					if (!spot.getSeen() && !stone.belongsToOpponent(spot)) {
+	/**
+	 * Adds the move hints of one point for both colors to the pending set.
+	 * Called holding the lock on pending.
+	 *
+	 * @param point index of the point
+	 */
+	private void publishHint(int point) {
+
+		if (!isHintPending[point]) {
+			isHintPending[point] = true;
+			hintPoints[hintCount++] = point;
+		}
 
-						//if any element has a vacant spot then return false all the way back up the chain
-						if (!checkSurrounded(x + offX[dir], y + offY[dir])) {
+		pendingBlackHints[point] = patterns.getHint(Position.BLACK, point);
+		pendingWhiteHints[point] = patterns.getHint(Position.WHITE, point);
+	} //publishHint
 
-							return false;
-						}
-					}
-				}
+	/**
+	 * Schedules the FX thread to apply the pending set if it is not already due to.
+	 */
+	private void schedule() {
+
+		if (scheduled.compareAndSet(false, true)) {
+			Platform.runLater(this::applyChanges);
+		}
+	} //schedule
+
+	/**
+	 * Applies every pending change to the view. Runs on the FX thread.
+	 */
+	private void applyChanges() {
+
+		//cleared first so a change published while applying schedules another pass
+		scheduled.set(false);
+
+		int count;
+
+		synchronized (pending) {
+
+			count = pendingCount;
+
+			for (int i = 0; i < count; i++) {
+				int point = pending[i];
+				applying[i] = point;
+				applyingColor[i] = pendingColor[point];
+				isPending[point] = false;
 			}
+
+			pendingCount = 0;
+
+			for (int i = 0; i < hintCount; i++) {
+				int point = hintPoints[i];
+				blackHints[point] = pendingBlackHints[point];
+				whiteHints[point] = pendingWhiteHints[point];
+				isHintPending[point] = false;
+			}
+
+			hintCount = 0;
+			hintColor = pendingToMove;
 		}
 
-		return true;
-	} //checkSurrounded
+		long start = (Metrics.ENABLED) ? System.nanoTime() : 0;
+
+		for (int i = 0; i < count; i++) {
+			shown[applying[i]] = applyingColor[i];
+			mirror(applying[i], applyingColor[i]);
+		}
+
+		if (Metrics.ENABLED) {
+			Metrics.rendered(count, System.nanoTime() - start);
+		}
+	} //applyChanges
 
 	/**
-	 * Getter method for <code>lastX</code>.
+	 * Updates the view of one point. Runs on the FX thread.
 	 * 
-	 * @return lastX
+	 * @param point index of the point that changed
+	 * @param color color code now on the point
 	 */
-	public int getLastX() {
-		return lastX;
-	}
+	protected void mirror(int point, byte color) {
+		spaces[point].setResident(Position.resident(color));
+	} //mirror
 
 	/**
-	 * Getter method for <code>lastY</code>.
+	 * Shows the settled owner of every point and fades dead stones. Runs on
+	 * the FX thread, after the game has stopped.
 	 * 
-	 * @return lastY
+	 * @param ownership ownership estimated for the final position
 	 */
-	public int getLastY() {
-		return lastY;
-	}
+	public void showOwnership(Ownership ownership) {
+
+		for (int point = 0; point < size * size; point++) {
+			showOwner(point, ownership.getOwner(point), ownership.isDead(point));
+		}
+	} //showOwnership
 
 	/**
-	 * Resets <code>lastX</code> and <code>lastY</code> to -1.
+	 * Shows who owns one point. Runs on the FX thread.
+	 * 
+	 * @param point index of the point
+	 * @param owner from 1 if black owns the point to -1 if white does
+	 * @param dead boolean value whether the stone on the point is dead
 	 */
-	public void resetLastMove() {
-		lastX = -1;
-		lastY = -1;
-	}
+	protected void showOwner(int point, double owner, boolean dead) {
+		spaces[point].showOwner(owner, dead);
+	} //showOwner
+
+	/**
+	 * Gets the color the view shows on a point. Only valid on the FX thread.
+	 * 
+	 * @param point index of the point
+	 * @return color code shown
+	 */
+	protected byte getShown(int point) {
+		return shown[point];
+	} //getShown
+
+	/**
+	 * Takes back the last move and updates the <code>Space</code> objects it
+	 * changed: the emptied point and any pieces put back.
+	 */
+	public void undo() {
+
+		int point = position.undo();
+
+		if (point >= 0) {
+			publish(point);
+		}
+
+		int[] restored = position.getCaptured();
+
+		for (int i = 0; i < position.getCapturedCount(); i++) {
+			publish(restored[i]);
+		}
+
+		publishHints(point, restored, position.getCapturedCount());
+	} //undo
+
+	/**
+	 * Plays the last undone move again and updates the board.
+	 */
+	public void redo() {
+
+		position.redo();
+
+		updateBoard();
+	} //redo
+
+	/**
+	 * Passes the turn for the selected color without placing a piece.
+	 * 
+	 * @param resident color of the player passing
+	 */
+	public void pass(Resident resident) {
+		position.pass(Position.code(resident));
+		publishHints(-1, null, 0);
+	} //pass
+
 	/**
-	 * Sets <code>lastX</code> and <code>lastY</code> to the clicked
-	 * coordinates.
+	 * Checks whether an individual piece or the group of the same
+	 * type it is connected to has any liberties.
+	 * 
+	 * @param x coordinate of piece to check in the x direction
+	 * @param y coordinate of piece to check in the y direction
+	 * @return boolean value whether location is surrounded
+	 */
+	public boolean checkSurrounded(int x, int y) {
+		return position.isSurrounded(position.point(x, y));
+	} //checkSurrounded
+
+	/**
+	 * Getter method for <code>moves</code>.
+	 * 
+	 * @return queue that clicks on this board are delivered to
+	 */
+	public MoveQueue getMoveQueue() {
+		return moves;
+	} //getMoveQueue
+
+	/**
+	 * Submits the clicked coordinates to the waiting <code>Player</code>.
 	 * 
 	 * @param x clicked x coordinate
 	 * @param y clicked y coordinate
 	 */
 	public void setClickEvent(int x, int y) {
 
-		if (getSpace(x, y).getResident() == Resident.VACANT) {
-			lastX = x;
-			lastY = y;
+		int point = position.point(x, y);
+
+		//the view's copy, since the position belongs to the game thread
+		if (shown[point] == Position.VACANT) {
+			moves.submit(point);
 		}
 	}
 
@@ -239,25 +478,16 @@ public class Board extends GridPane {
 	 * @param y coordinate in y direction of piece to update
 	 */
 	public void setSpace(Resident resident, int x, int y) {
-		spaces[size * x + y].setResident(resident);
+		position.set(Position.code(resident), x, y);
+		publish(position.point(x, y));
+		publishHints();
 	} //setSpace
 
 	/**
 	 * Counts the number of each stone in play and updates scores.
 	 */
 	public void score() {
-		
-		blackScore = 0;
-		whiteScore = 0;
-		
-		for (Space current : spaces) {
-			if (current.getResident() == Resident.BLACK) {
-				blackScore++;
-			}
-			if (current.getResident() == Resident.WHITE) {
-				whiteScore++;
-			}
-		}
+		position.score();
 	} //score
 	
 	//gets space at x, y
@@ -266,12 +496,23 @@ public class Board extends GridPane {
 	 * 
 	 * @param x location in x direction to retrieve piece
 	 * @param y location in y direction to retrieve piece
-	 * @return <code>Space</code> at param location
+	 * @return <code>Space</code> at param location, or null if the board has no <code>Space</code> nodes
 	 */
 	public Space getSpace(int x, int y) {
-		return spaces[size * x + y];
+		return (spaces == null) ? null : spaces[size * x + y];
 	}
 
+	/**
+	 * Gets how strongly the patterns around a point suggest it for the
+	 * player to move, as last applied to the view. Only valid on the FX thread.
+	 * 
+	 * @param point index of the point
+	 * @return hint from 0 to 1, or 0 if the point holds a stone
+	 */
+	public double getHint(int point) {
+		return (hintColor == Position.BLACK) ? blackHints[point] : whiteHints[point];
+	} //getHint
+
 	/**
 	 * Getter method for <code>size</code> of board.
 	 * 
@@ -281,13 +522,22 @@ public class Board extends GridPane {
 		return size;
 	}
 	
+	/**
+	 * Getter method for the <code>Position</code> mirrored by this board.
+	 * 
+	 * @return position
+	 */
+	public Position getPosition() {
+		return position;
+	} //getPosition
+	
 	/**
 	 * Getter method for <code>blackScore</code>.
 	 * 
 	 * @return blackScore
 	 */
 	public int getBlackScore() {
-		return blackScore;
+		return position.getBlackScore();
 	} //getBlackScore
 	
 	/**
@@ -296,7 +546,7 @@ public class Board extends GridPane {
 	 * @return whiteScore
 	 */
 	public int getWhiteScore() {
-		return whiteScore;
+		return position.getWhiteScore();
 	} //getWhiteScore
 	
 } //Board
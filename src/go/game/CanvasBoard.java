@@ -0,0 +1,163 @@
+package go.game;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+
+/**
+ * Class representing a game board drawn on a single <code>Canvas</code>
+ * instead of one <code>Space</code> node per point. Mouse positions are
+ * mapped to points arithmetically by three handlers on the canvas, and a
+ * move repaints only the cells it changed: the placed piece and any pieces
+ * captured or put back. Repaints run on the FX thread in the coalesced
+ * passes scheduled by <code>Board</code>.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class CanvasBoard extends Board {
+
+	public static final int CELL = 24;
+
+	private Canvas canvas;
+	private GraphicsContext graphics;
+	private int hovered = -1;
+
+	/**
+	 * Constructor for a game board drawn on a canvas.
+	 *
+	 * @param size size of row and col for board
+	 */
+	public CanvasBoard(int size) {
+
+		super(size, false);
+
+		canvas = new Canvas(CELL * size, CELL * size);
+		graphics = canvas.getGraphicsContext2D();
+
+		for (int p = 0; p < size * size; p++) {
+			mirror(p, Position.VACANT);
+		}
+
+		canvas.setOnMousePressed(event -> {
+
+			int p = pointAt(event);
+
+			if (p >= 0) {
+				setClickEvent(getPosition().getX(p), getPosition().getY(p));
+			}
+		});
+		canvas.setOnMouseMoved(event -> hover(pointAt(event)));
+		canvas.setOnMouseExited(event -> hover(-1));
+
+		add(canvas, 0, 0);
+	} //CanvasBoard
+
+	/**
+	 * Repaints the cell of one point.
+	 *
+	 * @param point index of the point that changed
+	 * @param color color code now on the point
+	 */
+	@Override
+	protected void mirror(int point, byte color) {
+
+		boolean highlight = point == hovered && color == Position.VACANT;
+
+		if (highlight) {
+			graphics.setGlobalAlpha(Space.opacity(getHint(point)));
+		}
+
+		draw(point, highlight ? Space.HIGHLIGHT : Space.sprite(Position.resident(color)));
+		graphics.setGlobalAlpha(1);
+	} //mirror
+
+	/**
+	 * Redraws the cell of one point faded if its stone is dead, or shaded
+	 * for its owner if it is vacant.
+	 *
+	 * @param point index of the point
+	 * @param owner from 1 if black owns the point to -1 if white does
+	 * @param dead boolean value whether the stone on the point is dead
+	 */
+	@Override
+	protected void showOwner(int point, double owner, boolean dead) {
+
+		byte color = getShown(point);
+
+		if (color == Position.VACANT) {
+			graphics.setEffect(Space.shade(owner));
+		}
+		else if (dead) {
+			graphics.setGlobalAlpha(Space.DEAD);
+		}
+
+		draw(point, Space.sprite(Position.resident(color)));
+		graphics.setEffect(null);
+		graphics.setGlobalAlpha(1);
+	} //showOwner
+
+	/**
+	 * Moves the hover highlight, repainting only the cells it leaves and enters.
+	 *
+	 * @param point index of the point under the mouse, or -1
+	 */
+	private void hover(int point) {
+
+		if (point == hovered) {
+			return;
+		}
+
+		int old = hovered;
+		hovered = point;
+
+		if (old >= 0) {
+			mirror(old, getShown(old));
+		}
+		if (point >= 0) {
+			mirror(point, getShown(point));
+		}
+	} //hover
+
+	/**
+	 * Draws one sprite over the cell of a point.
+	 *
+	 * @param point index of the point
+	 * @param sprite index of the sprite in the pieces <code>SpriteSheet</code>
+	 */
+	private void draw(int point, int sprite) {
+
+		Rectangle2D source = pieces.getSprite(sprite);
+		double x = CELL * getPosition().getX(point);
+		double y = CELL * getPosition().getY(point);
+
+		graphics.clearRect(x, y, CELL, CELL);
+		graphics.drawImage(pieces.getSheet(), source.getMinX(), source.getMinY(),
+				source.getWidth(), source.getHeight(), x, y, CELL, CELL);
+	} //draw
+
+	/**
+	 * Maps a mouse position on the canvas to a point.
+	 *
+	 * @param event mouse event on the canvas
+	 * @return index of the point under the mouse, or -1 if off the board
+	 */
+	private int pointAt(MouseEvent event) {
+
+		int x = (int) (event.getX() / CELL);
+		int y = (int) (event.getY() / CELL);
+		int size = getSize();
+
+		return (event.getX() < 0 || event.getY() < 0 || x >= size || y >= size) ? -1 : getPosition().point(x, y);
+	} //pointAt
+
+	/**
+	 * Getter method for <code>canvas</code>.
+	 *
+	 * @return the canvas the board is drawn on
+	 */
+	public Canvas getCanvas() {
+		return canvas;
+	} //getCanvas
+
+} //CanvasBoard
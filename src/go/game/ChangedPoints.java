@@ -0,0 +1,232 @@
+package go.game;
+
+/**
+ * Class that finds the points of a <code>Position</code> whose surroundings
+ * were changed by a move or an undo, for the views of a position that are
+ * kept per point and only worked out again where they may have changed.
+ *
+ * A point's surroundings are the colors of its four neighbours and whether
+ * the group on each of them is in atari. A move changes the colors around the stone and its
+ * captures, and can change the atari state of a group only by adding or
+ * removing its liberties. Any group next to the stone that was in atari
+ * had the stone's point as its last liberty, so the points to revisit are
+ * the neighbourhoods of the changed points, the single liberty of each
+ * group beside the stone that is now in atari, and the former last liberty
+ * of each group the captures took out of atari, which the position records
+ * as it removes them. Groups that gained liberties without having been in
+ * atari are not in atari afterwards either. An undo revisits every liberty
+ * of the groups next to the emptied point and the stones put back.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class ChangedPoints {
+
+	private Position position;
+
+	//points found by the last update, each listed once
+	private int[] points;
+	private int count = 0;
+
+	private int[] marked;
+	private int[] visited;
+	private int epoch = 0;
+
+	/**
+	 * Constructor for the <code>ChangedPoints</code> of a position.
+	 *
+	 * @param position position whose moves are followed
+	 */
+	public ChangedPoints(Position position) {
+
+		this.position = position;
+
+		points = new int[position.getPointCount()];
+		marked = new int[position.getPointCount()];
+		visited = new int[position.getPointCount()];
+	} //ChangedPoints
+
+	/**
+	 * Finds the points to revisit after a stone has been played and its
+	 * captures removed.
+	 *
+	 * @param p index of the stone played
+	 * @param captured array of the points captured
+	 * @param capturedCount number of entries of <code>captured</code> to use
+	 * @return number of points found, listed by <code>getPoints</code>
+	 */
+	public int played(int p, int[] captured, int capturedCount) {
+
+		start();
+		markAround(p);
+
+		for (int i = 0; i < capturedCount; i++) {
+			markAround(captured[i]);
+		}
+
+		markAtari(p);
+
+		return count;
+	} //played
+
+	/**
+	 * Finds the points next to a group whose atari state may have changed
+	 * after a stone has been played, leaving out the neighbourhoods of the
+	 * stone and its captures, for views that follow the colors themselves.
+	 *
+	 * @param p index of the stone played
+	 * @return number of points found, listed by <code>getPoints</code>
+	 */
+	public int ataris(int p) {
+
+		start();
+		markAtari(p);
+
+		return count;
+	} //ataris
+
+	/**
+	 * Marks the single liberty of each group beside a stone that is now in
+	 * atari and the former last liberty of each group its captures took out
+	 * of atari.
+	 *
+	 * @param p index of the stone played
+	 */
+	private void markAtari(int p) {
+
+		byte enemy = Position.opponent(position.get(p));
+
+		mark(position.getAtariLiberty(p));
+
+		for (int dir = 0; dir < 4; dir++) {
+
+			int q = position.getAdjacent(p, dir);
+
+			if (q >= 0 && position.get(q) == enemy) {
+				mark(position.getAtariLiberty(q));
+			}
+		}
+
+		int[] rescued = position.getRescued();
+
+		for (int i = 0; i < position.getRescuedCount(); i++) {
+			mark(rescued[i]);
+		}
+	} //markAtari
+
+	/**
+	 * Finds the points to revisit after a move has been taken back. The
+	 * stone's own group may have split, so every group touching a changed
+	 * point has all of its liberties revisited.
+	 *
+	 * @param p index of the point emptied
+	 * @param restored array of the stones put back
+	 * @param restoredCount number of entries of <code>restored</code> to use
+	 * @return number of points found, listed by <code>getPoints</code>
+	 */
+	public int undone(int p, int[] restored, int restoredCount) {
+
+		start();
+		markAround(p);
+
+		for (int dir = 0; dir < 4; dir++) {
+
+			int q = position.getAdjacent(p, dir);
+
+			if (q >= 0 && position.get(q) != Position.VACANT) {
+				markLiberties(q);
+			}
+		}
+
+		for (int i = 0; i < restoredCount; i++) {
+
+			int s = restored[i];
+			markAround(s);
+			markLiberties(s);
+
+			for (int dir = 0; dir < 4; dir++) {
+
+				int q = position.getAdjacent(s, dir);
+
+				if (q >= 0 && position.get(q) != Position.VACANT) {
+					markLiberties(q);
+				}
+			}
+		}
+
+		return count;
+	} //undone
+
+	/**
+	 * Starts a new update with no points found.
+	 */
+	private void start() {
+		epoch++;
+		count = 0;
+	} //start
+
+	/**
+	 * Marks a point and its neighbours.
+	 *
+	 * @param p index of the point
+	 */
+	private void markAround(int p) {
+
+		mark(p);
+
+		for (int dir = 0; dir < 4; dir++) {
+			mark(position.getAdjacent(p, dir));
+		}
+	} //markAround
+
+	/**
+	 * Marks every liberty of the group on a point, once per update.
+	 *
+	 * @param s index of a stone of the group
+	 */
+	private void markLiberties(int s) {
+
+		int g = position.getGroup(s);
+
+		if (visited[g] == epoch) {
+			return;
+		}
+
+		visited[g] = epoch;
+		int t = g;
+
+		do {
+			for (int dir = 0; dir < 4; dir++) {
+
+				int q = position.getAdjacent(t, dir);
+
+				if (q >= 0 && position.get(q) == Position.VACANT) {
+					mark(q);
+				}
+			}
+			t = position.getNextStone(t);
+		} while (t != g);
+	} //markLiberties
+
+	/**
+	 * Adds a point to the list, once per update.
+	 *
+	 * @param p index of the point, or -1 for none
+	 */
+	private void mark(int p) {
+
+		if (p >= 0 && marked[p] != epoch) {
+			marked[p] = epoch;
+			points[count++] = p;
+		}
+	} //mark
+
+	/**
+	 * Getter method for <code>points</code>.
+	 *
+	 * @return array whose first entries are the points found by the last update
+	 */
+	public int[] getPoints() {
+		return points;
+	} //getPoints
+
+} //ChangedPoints
@@ -1,84 +1,343 @@
 package go.game;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import go.game.Space.Resident;
 
 /**
  * Class responsible for running general cycle of a game and starting new games.
- * 
+ * A <code>Game</code> either drives a <code>Board</code> and <code>ScoreBoard</code>
+ * on its own thread, or runs headless on a bare <code>Position</code>.
+ *
  * @author Benjamin C. McKinley
  */
 public class Game {
 
-	private boolean running = true;
+	//every board size the game offers, smallest first
+	public static final List<Integer> BOARD_SIZES =
+			Collections.unmodifiableList(Arrays.asList(5, 9, 12, 13, 19, 25, 37));
+
+	private volatile boolean running = true;
 	private Player player, player2;
+	private Position position;
 	private Board gameBoard;
 	private ScoreBoard scoreBoard;
 	private Thread gameCycle;
-	
+	private int moveCount = 0;
+	private int moveLimit = Integer.MAX_VALUE;
+	private List<MoveListener> listeners = new CopyOnWriteArrayList<>();
+	private GameRecord record;
+	private GameArchive archive;
+
 	/**
-	 * Constructor for a new <code>Game</code> that has a <code>Board</code> of 
+	 * Constructor for a new two player <code>Game</code> that has a <code>Board</code> of
 	 * a parameter size.
-	 * 
+	 *
+	 * @param size used to create <code>Board</code> of size x size
+	 */
+	public Game(int size) {
+		this(size, false);
+	} //Game
+
+	/**
+	 * Constructor for a new <code>Game</code> that has a <code>Board</code> of
+	 * a parameter size, optionally against the computer.
+	 *
 	 * @param size used to create <code>Board</code> of size x size
+	 * @param computer whether white is played by an <code>AiPlayer</code>
+	 */
+	public Game(int size, boolean computer) {
+		this(new Board(size), computer);
+	} //Game
+
+	/**
+	 * Constructor for a new <code>Game</code> played on a parameter
+	 * <code>Board</code>, such as a <code>CanvasBoard</code>.
+	 *
+	 * @param gameBoard empty board to play on
+	 * @param computer whether white is played by an <code>AiPlayer</code>
 	 */
-	public Game(int size) {		
-		
-		gameBoard = new Board(size);
+	public Game(Board gameBoard, boolean computer) {
+
+		this.gameBoard = gameBoard;
 		scoreBoard = new ScoreBoard();
-		
+		position = gameBoard.getPosition();
+		position.getScorer();
+
 		player = new Player(gameBoard, Resident.BLACK);
-		player2 = new Player(gameBoard, Resident.WHITE);
+		player2 = computer ? new AiPlayer(gameBoard, Resident.WHITE) : new Player(gameBoard, Resident.WHITE);
 
-		gameCycle = new Thread(() -> {
+		record = new GameRecord(gameBoard.getSize());
+		addMoveListener(record);
 
-			run();
+		start();
+	} //Game
 
-		});
+	/**
+	 * Constructor for a headless <code>Game</code> between two players on a
+	 * bare <code>Position</code>. The game does not start until <code>run</code>
+	 * or <code>start</code> is called.
+	 *
+	 * @param position position the players share
+	 * @param player player with the black pieces
+	 * @param player2 player with the white pieces
+	 */
+	public Game(Position position, Player player, Player player2) {
+		this.position = position;
+		this.player = player;
+		this.player2 = player2;
 
-		gameCycle.setDaemon(false);
-		gameCycle.start();
+		record = new GameRecord(position.getSize());
+		addMoveListener(record);
 	} //Game
 
 	/**
-	 * Loop that controls structure of the <code>Game</code>.
+	 * Starts the game loop on its own thread.
+	 */
+	public void start() {
+		start("go-game");
+	} //start
+
+	/**
+	 * Starts the game loop on its own thread with a parameter name.
+	 *
+	 * @param threadName name given to the game thread
+	 */
+	public void start(String threadName) {
+		gameCycle = GameThreads.start(threadName, this::run);
+	} //start
+
+	/**
+	 * Loop that controls structure of the <code>Game</code>. The player
+	 * whose color is to move takes the next turn, so an undone move is made
+	 * again by the same player. Ends when
+	 * the game is stopped, both players pass in a row, or the move limit
+	 * is reached. Games that end on their own are appended to the
+	 * <code>GameArchive</code> if there is one, and listeners are told the
+	 * loop has ended.
 	 */
 	public void run() {
 
-		while(running) {
-			
-			player.move();
-			scoreBoard.updateScoreBoard(gameBoard.getBlackScore(), gameBoard.getWhiteScore(), Resident.WHITE);
-			
-			player2.move();
-			scoreBoard.updateScoreBoard(gameBoard.getBlackScore(), gameBoard.getWhiteScore(), Resident.BLACK);
+		long cpu = (Metrics.ENABLED) ? Metrics.threadCpuTime() : -1;
+
+		try {
+			while(running && !isOver()) {
+				takeTurn(nextPlayer());
+			}
+		} catch (InterruptedException e) {
+			//stopped while a player was waiting for a move
+		}
+
+		if (archive != null && isOver()) {
+			try {
+				archive.append(this);
+			} catch (IOException e) {
+				System.out.println("Error archiving game: " + e);
+			}
+		}
+
+		if (Metrics.ENABLED) {
+			long end = Metrics.threadCpuTime();
+			Metrics.ended(moveCount, position.getScorer().getResult(), (cpu < 0 || end < 0) ? -1 : end - cpu);
+		}
+
+		for (MoveListener listener : listeners) {
+			listener.ended(this);
 		}
 	} //run
 
 	/**
-	 * Shuts down game loop.
+	 * Lets one player move, undo or redo, then notifies listeners and
+	 * updates the <code>ScoreBoard</code> if there is one. Against the
+	 * computer, undo and redo carry on past the computer's moves so the
+	 * player gets their own turn back.
+	 *
+	 * @param current player whose turn it is
+	 * @throws InterruptedException if the game is stopped while waiting for the move
+	 */
+	private void takeTurn(Player current) throws InterruptedException {
+
+		int before = position.getMoveNumber();
+		long start = System.nanoTime();
+		current.move();
+		long nanos = System.nanoTime() - start;
+
+		if (position.getMoveNumber() < before) {
+
+			undone();
+
+			while (nextPlayer() instanceof AiPlayer && position.canUndo()) {
+				current.undo();
+				undone();
+			}
+		}
+		else {
+
+			moved(nanos);
+
+			//a new move drops every undone move, so this only continues a redo
+			while (nextPlayer() instanceof AiPlayer && position.canRedo()) {
+				current.redo();
+				moved(0);
+			}
+		}
+
+		if (scoreBoard != null) {
+			AreaScorer scorer = position.getScorer();
+			scoreBoard.updateScoreBoard(scorer.getBlackArea(), scorer.getWhiteArea(),
+					Position.resident(position.getToMove()));
+		}
+	} //takeTurn
+
+	/**
+	 * Counts a move or redone move and notifies listeners of it.
+	 *
+	 * @param nanos time the player took to move in nanoseconds
+	 */
+	private void moved(long nanos) {
+
+		//the color that moved is the one not to move now
+		byte color = Position.opponent(position.getToMove());
+		moveCount++;
+
+		if (Metrics.ENABLED) {
+			Metrics.moved(color, position.getLastMove(), position.getCapturedCount(), nanos);
+		}
+
+		for (MoveListener listener : listeners) {
+			listener.moved(this, color, position.getLastMove(), position.getCapturedCount(), nanos);
+		}
+	} //moved
+
+	/**
+	 * Counts an undone move and notifies listeners of it.
+	 */
+	private void undone() {
+
+		moveCount--;
+
+		for (MoveListener listener : listeners) {
+			listener.undone(this);
+		}
+	} //undone
+
+	/**
+	 * Gets the player whose color is to move.
+	 *
+	 * @return player to take the next turn
+	 */
+	private Player nextPlayer() {
+		return position.getToMove() == Position.BLACK ? player : player2;
+	} //nextPlayer
+
+	/**
+	 * Checks whether the game has ended by two passes or the move limit.
+	 *
+	 * @return boolean value whether the game is over
+	 */
+	public boolean isOver() {
+		return position.getPasses() >= 2 || moveCount >= moveLimit;
+	} //isOver
+
+	/**
+	 * Shuts down game loop by waking the waiting player.
 	 */
 	public void stop() {
 		running = false;
-		gameCycle.stop();
+
+		if (gameCycle != null) {
+			gameCycle.interrupt();
+		}
 	} //stop
-	
+
+	/**
+	 * Waits for the game loop to return after <code>stop</code>, so the
+	 * position is no longer changed by the game thread.
+	 *
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 */
+	public void join() throws InterruptedException {
+
+		if (gameCycle != null) {
+			gameCycle.join();
+		}
+	} //join
+
+	/**
+	 * Adds a listener notified after every move.
+	 *
+	 * @param listener listener to add
+	 */
+	public void addMoveListener(MoveListener listener) {
+		listeners.add(listener);
+	} //addMoveListener
+
+	/**
+	 * Setter method for <code>moveLimit</code>.
+	 *
+	 * @param moveLimit number of moves after which the game ends
+	 */
+	public void setMoveLimit(int moveLimit) {
+		this.moveLimit = moveLimit;
+	} //setMoveLimit
+
+	/**
+	 * Setter method for <code>archive</code>.
+	 *
+	 * @param archive archive finished games are appended to, or null
+	 */
+	public void setArchive(GameArchive archive) {
+		this.archive = archive;
+	} //setArchive
+
 	/**
 	 * Getter method for <code>gameBoard</code>.
-	 * 
-	 * @return the current </code>Board</code>
+	 *
+	 * @return the current </code>Board</code>, or null for a headless game
 	 */
 	public Board getBoard() {
-		return gameBoard;	
+		return gameBoard;
 	} //getBoard
 
+	/**
+	 * Getter method for <code>position</code>.
+	 *
+	 * @return the <code>Position</code> being played
+	 */
+	public Position getPosition() {
+		return position;
+	} //getPosition
+
+	/**
+	 * Getter method for <code>record</code>.
+	 *
+	 * @return the moves played so far
+	 */
+	public GameRecord getRecord() {
+		return record;
+	} //getRecord
+
+	/**
+	 * Getter method for <code>moveCount</code>.
+	 *
+	 * @return number of moves made, including passes
+	 */
+	public int getMoveCount() {
+		return moveCount;
+	} //getMoveCount
+
 	/**
 	 * Getter method for <code>ScoreBoard</code>.
-	 * 
+	 *
 	 * @return object that extends <code>VBox</code> containing scores
 	 */
 	public ScoreBoard getScoreBoard() {
 		return scoreBoard;
 	} //getScoreBoard
-	
-	
+
+
 } //Game
@@ -0,0 +1,603 @@
+package go.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class representing an append-only archive of finished games in a compact
+ * binary format. Games are appended to a data file and the offset of each
+ * game is appended to an index file of 8 byte entries, so any game can be
+ * found with a single lookup. Games are read in place from memory mappings
+ * of the data file through a reusable <code>View</code>, without copying or
+ * allocating.
+ *
+ * Each game is a 20 byte header followed by its setup stones and moves:
+ * <pre>
+ * size      1 byte   board size
+ * flags     1 byte   first move white (1), explicit colors (2), winner (4 * 0-3)
+ * komi      2 bytes  komi in half points
+ * setup     2 bytes  number of setup stones
+ * reserved  2 bytes
+ * moves     4 bytes  number of moves
+ * black     4 bytes  black's score in half points
+ * white     4 bytes  white's score in half points
+ * </pre>
+ * Setup stones take 2 bytes each, the color in the top two bits and the
+ * point below. When the players alternate, as they do in every
+ * <code>Game</code>, each move is the point plus one (zero for a pass) in a
+ * single byte on boards of up to 15x15 and two bytes above that. Records
+ * that do not alternate store the color with each move in two bytes.
+ *
+ * The data file is mapped in segments of <code>SEGMENT_BYTES</code> and no
+ * game crosses a segment boundary, so archives may grow past the 2GB limit
+ * of a single mapping.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class GameArchive implements Closeable {
+
+	public static final int HEADER_BYTES = 20;
+	public static final int UNKNOWN = 0;
+	public static final int DRAW = 3;
+
+	private static final long MAGIC = 0x474F415243480001L; //GOARCH, version 1
+	private static final int FILE_HEADER_BYTES = 8;
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	private static final int FIRST_WHITE = 1;
+	private static final int EXPLICIT = 2;
+	private static final int WINNER_SHIFT = 2;
+
+	private FileChannel data;
+	private FileChannel index;
+	private long end;
+	private long count;
+	private ByteBuffer encoder = ByteBuffer.allocate(4096);
+	private ByteBuffer offset = ByteBuffer.allocate(8);
+
+	//read side, remapped as the files grow
+	private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+	private MappedByteBuffer offsets;
+
+	/**
+	 * Class giving read access to one archived game in place. A view is
+	 * moved between games with <code>seek</code>, so one view can walk a
+	 * whole archive without allocating.
+	 */
+	public class View {
+
+		private ByteBuffer segment;
+		private int base;
+		private int width;
+		private boolean explicit;
+		private byte first;
+
+		/**
+		 * Moves this view to a game.
+		 *
+		 * @param game number of the game, from zero
+		 * @return this view
+		 * @throws IOException if the archive cannot be mapped
+		 */
+		public View seek(long game) throws IOException {
+
+			if (game < 0 || game >= getCount()) {
+				throw new IndexOutOfBoundsException("Game " + game + " of " + getCount());
+			}
+
+			long at = offsets().getLong((int) (8 * game));
+			segment = segment(at);
+			base = (int) (at % SEGMENT_BYTES);
+
+			int size = getSize();
+			int flags = segment.get(base + 1);
+			explicit = (flags & EXPLICIT) != 0;
+			first = (flags & FIRST_WHITE) != 0 ? Position.WHITE : Position.BLACK;
+			width = moveWidth(size, explicit);
+
+			return this;
+		} //seek
+
+		/**
+		 * Getter method for the board size.
+		 *
+		 * @return size of the board the game was played on
+		 */
+		public int getSize() {
+			return segment.get(base) & 0xFF;
+		} //getSize
+
+		/**
+		 * Getter method for the winner.
+		 *
+		 * @return color code of the winner, <code>DRAW</code> or <code>UNKNOWN</code>
+		 */
+		public int getWinner() {
+			return (segment.get(base + 1) >> WINNER_SHIFT) & 3;
+		} //getWinner
+
+		/**
+		 * Getter method for the komi.
+		 *
+		 * @return points given to white
+		 */
+		public double getKomi() {
+			return segment.getShort(base + 2) / 2.0;
+		} //getKomi
+
+		/**
+		 * Getter method for the number of setup stones.
+		 *
+		 * @return number of setup stones
+		 */
+		public int getSetupCount() {
+			return segment.getShort(base + 4) & 0xFFFF;
+		} //getSetupCount
+
+		/**
+		 * Getter method for the number of moves.
+		 *
+		 * @return number of moves, including passes
+		 */
+		public int getMoveCount() {
+			return segment.getInt(base + 8);
+		} //getMoveCount
+
+		/**
+		 * Getter method for black's score.
+		 *
+		 * @return black's final score
+		 */
+		public double getBlackScore() {
+			return segment.getInt(base + 12) / 2.0;
+		} //getBlackScore
+
+		/**
+		 * Getter method for white's score.
+		 *
+		 * @return white's final score
+		 */
+		public double getWhiteScore() {
+			return segment.getInt(base + 16) / 2.0;
+		} //getWhiteScore
+
+		/**
+		 * Getter method for the color of a setup stone.
+		 *
+		 * @param i number of the setup stone, from zero
+		 * @return color code of the stone
+		 */
+		public byte getSetupColor(int i) {
+			return (byte) ((segment.getShort(base + HEADER_BYTES + 2 * i) & 0xFFFF) >> 14);
+		} //getSetupColor
+
+		/**
+		 * Getter method for the point of a setup stone.
+		 *
+		 * @param i number of the setup stone, from zero
+		 * @return index of the point
+		 */
+		public int getSetupPoint(int i) {
+			return segment.getShort(base + HEADER_BYTES + 2 * i) & 0x3FFF;
+		} //getSetupPoint
+
+		/**
+		 * Getter method for the color of a move.
+		 *
+		 * @param i number of the move, from zero
+		 * @return color code of the player who moved
+		 */
+		public byte getColor(int i) {
+
+			if (explicit) {
+				return (byte) (raw(i) >> 14);
+			}
+
+			return (i & 1) == 0 ? first : Position.opponent(first);
+		} //getColor
+
+		/**
+		 * Getter method for the point of a move.
+		 *
+		 * @param i number of the move, from zero
+		 * @return index of the point played, or -1 for a pass
+		 */
+		public int getPoint(int i) {
+			return (raw(i) & 0x3FFF) - 1;
+		} //getPoint
+
+		/**
+		 * Reads the stored value of a move.
+		 *
+		 * @param i number of the move, from zero
+		 * @return stored value
+		 */
+		private int raw(int i) {
+
+			int at = base + HEADER_BYTES + 2 * getSetupCount() + width * i;
+
+			return width == 1 ? segment.get(at) & 0xFF : segment.getShort(at) & 0xFFFF;
+		} //raw
+
+		/**
+		 * Replays the game onto a position, which is cleared first.
+		 *
+		 * @param position position of the same size to replay onto
+		 * @return number of moves played before the first illegal move
+		 */
+		public int replay(Position position) {
+
+			position.clear();
+
+			for (int i = 0; i < getSetupCount(); i++) {
+				int p = getSetupPoint(i);
+				position.set(getSetupColor(i), position.getX(p), position.getY(p));
+			}
+
+			int moves = getMoveCount();
+
+			for (int i = 0; i < moves; i++) {
+
+				byte color = getColor(i);
+				int p = getPoint(i);
+
+				if (p < 0) {
+					position.pass(color);
+				}
+				else if (position.isLegal(color, p)) {
+					position.play(color, p);
+				}
+				else {
+					return i;
+				}
+			}
+
+			return moves;
+		} //replay
+
+		/**
+		 * Copies the game into a new <code>GameRecord</code>.
+		 *
+		 * @return record of the game
+		 */
+		public GameRecord toRecord() {
+
+			GameRecord record = new GameRecord(getSize());
+			record.setKomi(getKomi());
+
+			int winner = getWinner();
+			double margin = Math.abs(getBlackScore() - getWhiteScore());
+
+			if (winner == DRAW) {
+				record.setResult("0");
+			}
+			else if (winner != UNKNOWN) {
+				record.setResult((winner == Position.BLACK ? "B+" : "W+") + margin);
+			}
+
+			for (int i = 0; i < getSetupCount(); i++) {
+				record.addSetup(getSetupColor(i), getSetupPoint(i));
+			}
+
+			for (int i = 0; i < getMoveCount(); i++) {
+				record.addMove(getColor(i), getPoint(i));
+			}
+
+			return record;
+		} //toRecord
+	} //View
+
+	/**
+	 * Constructor for a <code>GameArchive</code>. Opens the data file and
+	 * its index, named after the data file with ".idx" added, creating both
+	 * if missing.
+	 *
+	 * @param file path of the data file
+	 * @throws IOException if the files cannot be opened or are not an archive
+	 */
+	public GameArchive(Path file) throws IOException {
+
+		data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		index = FileChannel.open(Paths.get(file + ".idx"),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+
+		if (data.size() == 0) {
+			header.putLong(MAGIC).flip();
+			data.write(header, 0);
+		}
+		else {
+			data.read(header, 0);
+
+			if (header.getLong(0) != MAGIC) {
+				throw new IOException("Not a game archive: " + file);
+			}
+		}
+
+		//an index entry is written after its game, so it bounds the valid data
+		count = index.size() / 8;
+
+		if (count > 0) {
+			offset.clear();
+			index.read(offset, 8 * (count - 1));
+			long last = offset.getLong(0);
+
+			end = last + HEADER_BYTES + recordBytes(last);
+		}
+		else {
+			end = FILE_HEADER_BYTES;
+		}
+	} //GameArchive
+
+	/**
+	 * Appends the finished game of a <code>Game</code>, scored by area.
+	 *
+	 * @param game finished game
+	 * @return number of the archived game
+	 * @throws IOException if the game cannot be written
+	 */
+	public long append(Game game) throws IOException {
+
+		AreaScorer scorer = game.getPosition().getScorer();
+
+		return append(game.getRecord(), scorer.getBlackArea(), scorer.getWhiteArea());
+	} //append
+
+	/**
+	 * Appends a game.
+	 *
+	 * @param record moves of the game
+	 * @param black black's final score
+	 * @param white white's final score
+	 * @return number of the archived game
+	 * @throws IOException if the game cannot be written
+	 */
+	public synchronized long append(GameRecord record, double black, double white) throws IOException {
+
+		int size = record.getSize();
+		int moves = record.getMoveCount();
+		int setups = record.getSetupCount();
+		boolean explicit = !alternates(record);
+		int width = moveWidth(size, explicit);
+		int bytes = HEADER_BYTES + 2 * setups + width * moves;
+
+		if (bytes > SEGMENT_BYTES - FILE_HEADER_BYTES) {
+			throw new IOException("Game too long to archive: " + moves + " moves");
+		}
+
+		if (encoder.capacity() < bytes) {
+			encoder = ByteBuffer.allocate(Integer.highestOneBit(bytes) * 2);
+		}
+
+		int winner = black > white ? Position.BLACK : white > black ? Position.WHITE : DRAW;
+		int flags = winner << WINNER_SHIFT | (explicit ? EXPLICIT : 0)
+				| (moves > 0 && record.getColor(0) == Position.WHITE ? FIRST_WHITE : 0);
+
+		encoder.clear();
+		encoder.put((byte) size).put((byte) flags).putShort((short) Math.round(2 * record.getKomi()))
+				.putShort((short) setups).putShort((short) 0).putInt(moves)
+				.putInt((int) Math.round(2 * black)).putInt((int) Math.round(2 * white));
+
+		for (int i = 0; i < setups; i++) {
+			encoder.putShort((short) (record.getSetupColor(i) << 14 | record.getSetupPoint(i)));
+		}
+
+		for (int i = 0; i < moves; i++) {
+
+			int value = record.getPoint(i) + 1;
+
+			if (explicit) {
+				encoder.putShort((short) (record.getColor(i) << 14 | value));
+			}
+			else if (width == 1) {
+				encoder.put((byte) value);
+			}
+			else {
+				encoder.putShort((short) value);
+			}
+		}
+
+		encoder.flip();
+
+		//keep every game inside one segment
+		long at = end;
+		if (at / SEGMENT_BYTES != (at + bytes - 1) / SEGMENT_BYTES) {
+			at = (at / SEGMENT_BYTES + 1) * SEGMENT_BYTES;
+		}
+
+		long position = at;
+		while (encoder.hasRemaining()) {
+			position += data.write(encoder, position);
+		}
+
+		offset.clear();
+		offset.putLong(0, at);
+		index.write(offset, 8 * count);
+
+		end = at + bytes;
+
+		return count++;
+	} //append
+
+	/**
+	 * Checks whether the players of a record alternate.
+	 *
+	 * @param record record to check
+	 * @return boolean value whether each move is by the other color than the last
+	 */
+	private static boolean alternates(GameRecord record) {
+
+		for (int i = 1; i < record.getMoveCount(); i++) {
+			if (record.getColor(i) == record.getColor(i - 1)) {
+				return false;
+			}
+		}
+
+		return true;
+	} //alternates
+
+	/**
+	 * Gets the number of bytes used for each move.
+	 *
+	 * @param size size of the board
+	 * @param explicit whether moves store their color
+	 * @return 1 or 2
+	 */
+	private static int moveWidth(int size, boolean explicit) {
+		return (explicit || size * size + 1 > 0xFF) ? 2 : 1;
+	} //moveWidth
+
+	/**
+	 * Reads the length past the header of the game at an offset.
+	 *
+	 * @param at offset of the game in the data file
+	 * @return bytes of setup stones and moves
+	 * @throws IOException if the header cannot be read
+	 */
+	private long recordBytes(long at) throws IOException {
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		data.read(header, at);
+
+		int size = header.get(0) & 0xFF;
+		boolean explicit = (header.get(1) & EXPLICIT) != 0;
+
+		return 2L * (header.getShort(4) & 0xFFFF) + (long) moveWidth(size, explicit) * header.getInt(8);
+	} //recordBytes
+
+	/**
+	 * Creates a view for reading games. Each reading thread should use its
+	 * own view.
+	 *
+	 * @return new view, not yet on any game
+	 */
+	public View view() {
+		return new View();
+	} //view
+
+	/**
+	 * Gets the mapping of the index, remapped if games were added since.
+	 *
+	 * @return mapping covering every index entry
+	 * @throws IOException if the index cannot be mapped
+	 */
+	private synchronized MappedByteBuffer offsets() throws IOException {
+
+		if (offsets == null || offsets.capacity() < 8 * count) {
+
+			if (8 * count > Integer.MAX_VALUE) {
+				throw new IOException("Index too large to map");
+			}
+
+			offsets = index.map(FileChannel.MapMode.READ_ONLY, 0, 8 * count);
+		}
+
+		return offsets;
+	} //offsets
+
+	/**
+	 * Gets a read-only view of the segment holding an offset, remapping the
+	 * segment if it has grown past the offset since it was mapped.
+	 *
+	 * @param at offset in the data file
+	 * @return mapping of the segment, read only with absolute gets so it can be shared
+	 * @throws IOException if the data file cannot be mapped
+	 */
+	private synchronized ByteBuffer segment(long at) throws IOException {
+
+		int s = (int) (at / SEGMENT_BYTES);
+
+		if (s >= segments.length) {
+			segments = Arrays.copyOf(segments, s + 1);
+		}
+
+		long start = s * SEGMENT_BYTES;
+		long length = Math.min(SEGMENT_BYTES, end - start);
+
+		if (segments[s] == null || segments[s].capacity() < length) {
+			segments[s] = data.map(FileChannel.MapMode.READ_ONLY, start, length);
+		}
+
+		return segments[s];
+	} //segment
+
+	/**
+	 * Getter method for <code>count</code>.
+	 *
+	 * @return number of archived games
+	 */
+	public synchronized long getCount() {
+		return count;
+	} //getCount
+
+	/**
+	 * Forces every appended game to the storage device.
+	 *
+	 * @throws IOException if the files cannot be forced
+	 */
+	public void force() throws IOException {
+		data.force(false);
+		index.force(false);
+	} //force
+
+	@Override
+	public void close() throws IOException {
+		data.close();
+		index.close();
+	} //close
+
+	/**
+	 * Replays every game of an archive from the command line and reports
+	 * the throughput.
+	 *
+	 * @param args path of the data file
+	 * @throws IOException if the archive cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 1) {
+			System.out.println("Usage: java go.game.GameArchive archive");
+			return;
+		}
+
+		try (GameArchive archive = new GameArchive(Paths.get(args[0]))) {
+
+			View view = archive.view();
+			Position[] positions = new Position[256];
+			long moves = 0;
+			long illegal = 0;
+			long start = System.nanoTime();
+
+			for (long i = 0; i < archive.getCount(); i++) {
+
+				view.seek(i);
+				int size = view.getSize();
+
+				if (positions[size] == null) {
+					positions[size] = new Position(size);
+				}
+
+				int played = view.replay(positions[size]);
+				moves += played;
+
+				if (played < view.getMoveCount()) {
+					illegal++;
+				}
+			}
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("%d games, %d moves in %.2f s: %.0f games/s, %.0f moves/s, %d with an illegal move%n",
+					archive.getCount(), moves, seconds, archive.getCount() / seconds, moves / seconds, illegal);
+		}
+	} //main
+
+} //GameArchive
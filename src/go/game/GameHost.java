@@ -0,0 +1,693 @@
+package go.game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import go.game.Space.Resident;
+
+/**
+ * Class that hosts many independent headless games in one process. Each
+ * <code>Session</code> is a <code>Game</code> on its own
+ * <code>Position</code>, played by two players whose moves arrive through
+ * bounded <code>MoveQueue</code>s, and runs on a thread from
+ * <code>GameThreads</code>. On a JVM with virtual threads a session waiting
+ * for a move holds no operating system thread, so thousands of sessions
+ * cost little more than their positions, and positions of one size share
+ * their read-only tables.
+ *
+ * The host keeps lifecycle counts (opened, running, finished and stopped
+ * sessions), the number of moves played and a histogram of the time each
+ * move took to apply on its game thread. Each session reports its own
+ * moves, busy time, waiting moves, memory footprint, age and idle time,
+ * and can be watched through its <code>SpectatorChannel</code>.
+ *
+ * Usage: <code>java go.game.GameHost [sessions] [size]</code> plays
+ * random games on that many sessions at once and prints the host metrics.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class GameHost {
+
+	public static final int QUEUE_CAPACITY = 16;
+
+	/**
+	 * Lifecycle states of a session.
+	 */
+	public enum State {
+		RUNNING, FINISHED, STOPPED
+	} //State
+
+	private Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+	private AtomicInteger nextId = new AtomicInteger();
+	private AtomicLong opened = new AtomicLong();
+	private AtomicLong finished = new AtomicLong();
+	private AtomicLong stopped = new AtomicLong();
+	private AtomicLong moves = new AtomicLong();
+	private LatencyHistogram moveTime = new LatencyHistogram();
+	private long started = System.nanoTime();
+
+	/**
+	 * Class representing one hosted game and its metrics.
+	 */
+	public class Session implements MoveListener {
+
+		private int id;
+		private Position position;
+		private Game game;
+		private MoveQueue black = new MoveQueue(QUEUE_CAPACITY);
+		private MoveQueue white = new MoveQueue(QUEUE_CAPACITY);
+		private long created = System.nanoTime();
+		private volatile long lastActive = created;
+		private volatile State state = State.RUNNING;
+
+		//written only by the game thread
+		private volatile int moveCount = 0;
+		private volatile long busyNanos = 0;
+		private volatile byte toMove = Position.BLACK;
+
+		//bumped on every move, undo, rejected move and the end of the game
+		private int events = 0;
+
+		//copy of the board and scores for other threads, guarded by the lock on this
+		private byte[] shown;
+		private double blackArea, whiteArea;
+		private int lastCaptured = 0;
+		private String result;
+
+		private SpectatorChannel spectators;
+
+		/**
+		 * Constructor for a <code>Session</code> on a new board.
+		 *
+		 * @param id number of the session within the host
+		 * @param width number of points in the x direction
+		 * @param height number of points in the y direction
+		 */
+		private Session(int id, int width, int height) {
+
+			this.id = id;
+			position = new Position(width, height);
+			shown = new byte[width * height];
+			blackArea = 0;
+			whiteArea = position.getScorer().getKomi();
+
+			game = new Game(position, new Seat(this, black, Resident.BLACK), new Seat(this, white, Resident.WHITE));
+			game.setMoveLimit(3 * width * height);
+			game.addMoveListener(this);
+
+			spectators = new SpectatorChannel(position, SpectatorChannel.DEFAULT_CAPACITY);
+			game.addMoveListener(spectators);
+		} //Session
+
+		/**
+		 * Submits a move for one color. Moves for the color not to move wait
+		 * in its queue until its turn.
+		 *
+		 * @param color color code of the player moving
+		 * @param point index of the point, or a <code>MoveQueue</code> request
+		 * @return boolean value whether the move was queued, false if the queue is full or the game is over
+		 */
+		public boolean submit(byte color, int point) {
+
+			if (state != State.RUNNING) {
+				return false;
+			}
+
+			lastActive = System.nanoTime();
+
+			return (color == Position.BLACK ? black : white).submit(point);
+		} //submit
+
+		/**
+		 * Waits until something happens in the game after a number of events
+		 * was seen.
+		 *
+		 * @param seen value of <code>getEvents()</code> already seen
+		 * @param millis longest time to wait in milliseconds
+		 * @return boolean value whether a new event happened
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		public synchronized boolean awaitEvent(int seen, long millis) throws InterruptedException {
+
+			long deadline = System.nanoTime() + millis * 1_000_000L;
+
+			while (events == seen) {
+
+				long left = deadline - System.nanoTime();
+
+				if (left <= 0) {
+					return false;
+				}
+
+				wait(left / 1_000_000L, (int) (left % 1_000_000L));
+			}
+
+			return true;
+		} //awaitEvent
+
+		/**
+		 * Stops the game if it is still running.
+		 */
+		public void stop() {
+			game.stop();
+		} //stop
+
+		@Override
+		public void moved(Game game, byte color, int point, int captured, long nanos) {
+			moveCount++;
+			moves.incrementAndGet();
+			changed();
+		} //moved
+
+		@Override
+		public void undone(Game game) {
+			moveCount--;
+			changed();
+		} //undone
+
+		@Override
+		public void ended(Game game) {
+
+			synchronized (this) {
+				result = position.getScorer().getResult();
+			}
+
+			state = game.isOver() ? State.FINISHED : State.STOPPED;
+			(game.isOver() ? finished : stopped).incrementAndGet();
+			changed();
+		} //ended
+
+		/**
+		 * Records the time the game thread spent applying a move.
+		 *
+		 * @param nanos time in nanoseconds
+		 */
+		private void worked(long nanos) {
+			busyNanos += nanos;
+			moveTime.record(nanos);
+		} //worked
+
+		/**
+		 * Notes a change, copies the board and scores for other threads and
+		 * wakes anyone waiting for a change. Runs on the game thread.
+		 */
+		private synchronized void changed() {
+
+			for (int p = 0; p < shown.length; p++) {
+				shown[p] = position.get(p);
+			}
+
+			AreaScorer scorer = position.getScorer();
+			lastCaptured = position.getCapturedCount();
+			blackArea = scorer.getBlackArea();
+			whiteArea = scorer.getWhiteArea();
+			toMove = position.getToMove();
+			lastActive = System.nanoTime();
+			events++;
+			notifyAll();
+		} //changed
+
+		/**
+		 * Gets the board as of the last change, one row per line of text with
+		 * <code>.</code> for vacant points, <code>X</code> for black and
+		 * <code>O</code> for white. Safe from any thread.
+		 *
+		 * @param separator text put between rows
+		 * @return the board as text
+		 */
+		public synchronized String getBoardText(String separator) {
+
+			int width = position.getWidth();
+			int height = position.getHeight();
+			StringBuilder text = new StringBuilder(shown.length + height * separator.length());
+
+			for (int y = 0; y < height; y++) {
+
+				if (y > 0) {
+					text.append(separator);
+				}
+
+				for (int x = 0; x < width; x++) {
+					byte color = shown[height * x + y];
+					text.append(color == Position.BLACK ? 'X' : color == Position.WHITE ? 'O' : '.');
+				}
+			}
+
+			return text.toString();
+		} //getBoardText
+
+		/**
+		 * Gets black's area score as of the last change. Safe from any thread.
+		 *
+		 * @return black area score
+		 */
+		public synchronized double getBlackArea() {
+			return blackArea;
+		} //getBlackArea
+
+		/**
+		 * Gets white's area score including komi as of the last change. Safe
+		 * from any thread.
+		 *
+		 * @return white area score
+		 */
+		public synchronized double getWhiteArea() {
+			return whiteArea;
+		} //getWhiteArea
+
+		/**
+		 * Gets the number of stones captured by the last move as of the last
+		 * change. Safe from any thread.
+		 *
+		 * @return number of stones captured
+		 */
+		public synchronized int getLastCaptured() {
+			return lastCaptured;
+		} //getLastCaptured
+
+		/**
+		 * Gets the result once the game has ended. Safe from any thread.
+		 *
+		 * @return result in SGF form, or null while the game is running
+		 */
+		public synchronized String getResult() {
+			return result;
+		} //getResult
+
+		/**
+		 * Getter method for <code>id</code>.
+		 *
+		 * @return number of the session within the host
+		 */
+		public int getId() {
+			return id;
+		} //getId
+
+		/**
+		 * Getter method for <code>game</code>.
+		 *
+		 * @return the hosted game
+		 */
+		public Game getGame() {
+			return game;
+		} //getGame
+
+		/**
+		 * Getter method for <code>spectators</code>.
+		 *
+		 * @return channel broadcasting the game to spectators
+		 */
+		public SpectatorChannel getSpectators() {
+			return spectators;
+		} //getSpectators
+
+		/**
+		 * Getter method for <code>position</code>. The position belongs to the
+		 * game thread and should only be read between moves or after the game.
+		 *
+		 * @return the position being played
+		 */
+		public Position getPosition() {
+			return position;
+		} //getPosition
+
+		/**
+		 * Getter method for <code>state</code>.
+		 *
+		 * @return lifecycle state of the session
+		 */
+		public State getState() {
+			return state;
+		} //getState
+
+		/**
+		 * Getter method for <code>toMove</code>.
+		 *
+		 * @return color code of the player whose turn it is
+		 */
+		public byte getToMove() {
+			return toMove;
+		} //getToMove
+
+		/**
+		 * Getter method for <code>moveCount</code>.
+		 *
+		 * @return number of moves made, less any undone
+		 */
+		public int getMoveCount() {
+			return moveCount;
+		} //getMoveCount
+
+		/**
+		 * Getter method for <code>events</code>.
+		 *
+		 * @return number of changes so far, for <code>awaitEvent</code>
+		 */
+		public synchronized int getEvents() {
+			return events;
+		} //getEvents
+
+		/**
+		 * Getter method for <code>busyNanos</code>.
+		 *
+		 * @return time the game thread has spent applying moves in nanoseconds
+		 */
+		public long getBusyNanos() {
+			return busyNanos;
+		} //getBusyNanos
+
+		/**
+		 * Gets the number of moves waiting in both queues.
+		 *
+		 * @return number of waiting moves
+		 */
+		public int getQueued() {
+			return black.size() + white.size();
+		} //getQueued
+
+		/**
+		 * Estimates the memory held by the session's position and its copy
+		 * of the board in bytes.
+		 *
+		 * @return approximate size in bytes
+		 */
+		public long getFootprint() {
+			return position.getFootprint() + shown.length;
+		} //getFootprint
+
+		/**
+		 * Gets the time since the session was opened.
+		 *
+		 * @return age in milliseconds
+		 */
+		public long getAgeMillis() {
+			return (System.nanoTime() - created) / 1_000_000L;
+		} //getAgeMillis
+
+		/**
+		 * Gets the time since a move was submitted or made.
+		 *
+		 * @return idle time in milliseconds
+		 */
+		public long getIdleMillis() {
+			return (System.nanoTime() - lastActive) / 1_000_000L;
+		} //getIdleMillis
+
+		@Override
+		public String toString() {
+			return String.format("session %d %dx%d %s moves=%d busy=%.1fms queued=%d bytes=%d age=%dms idle=%dms",
+					id, position.getWidth(), position.getHeight(), state, moveCount, busyNanos / 1e6,
+					getQueued(), getFootprint(), getAgeMillis(), getIdleMillis());
+		} //toString
+	} //Session
+
+	/**
+	 * Class representing a player in a hosted game, which times the work
+	 * of each move it makes and reports moves it rejects.
+	 */
+	private static class Seat extends Player {
+
+		private Session session;
+
+		/**
+		 * Constructor for a <code>Seat</code>.
+		 *
+		 * @param session session the seat belongs to
+		 * @param moves queue the seat's moves are delivered to
+		 * @param selected color of the seat's pieces
+		 */
+		private Seat(Session session, MoveQueue moves, Resident selected) {
+			super(session.position, moves, selected);
+			this.session = session;
+		} //Seat
+
+		@Override
+		protected void place(int point) {
+			long start = System.nanoTime();
+			super.place(point);
+			session.worked(System.nanoTime() - start);
+		} //place
+
+		@Override
+		protected void pass() {
+			long start = System.nanoTime();
+			super.pass();
+			session.worked(System.nanoTime() - start);
+		} //pass
+
+		@Override
+		protected void undo() {
+			long start = System.nanoTime();
+			super.undo();
+			session.worked(System.nanoTime() - start);
+		} //undo
+
+		@Override
+		protected void redo() {
+			long start = System.nanoTime();
+			super.redo();
+			session.worked(System.nanoTime() - start);
+		} //redo
+
+		@Override
+		protected void rejected(int point) {
+			session.changed();
+		} //rejected
+	} //Seat
+
+	/**
+	 * Opens a session on a new square board and starts its game.
+	 *
+	 * @param size size of row and col for board
+	 * @return the running session
+	 */
+	public Session open(int size) {
+		return open(size, size);
+	} //open
+
+	/**
+	 * Opens a session on a new board and starts its game.
+	 *
+	 * @param width number of points in the x direction
+	 * @param height number of points in the y direction
+	 * @return the running session
+	 */
+	public Session open(int width, int height) {
+
+		Session session = new Session(nextId.incrementAndGet(), width, height);
+
+		sessions.put(session.id, session);
+		opened.incrementAndGet();
+		session.game.start("go-session-" + session.id);
+
+		return session;
+	} //open
+
+	/**
+	 * Gets a session by its number.
+	 *
+	 * @param id number of the session
+	 * @return the session, or null if there is none or it was closed
+	 */
+	public Session get(int id) {
+		return sessions.get(id);
+	} //get
+
+	/**
+	 * Stops a session and removes it from the host.
+	 *
+	 * @param id number of the session
+	 * @return boolean value whether there was such a session
+	 */
+	public boolean close(int id) {
+
+		Session session = sessions.remove(id);
+
+		if (session == null) {
+			return false;
+		}
+
+		session.stop();
+		return true;
+	} //close
+
+	/**
+	 * Closes every session that has been idle for longer than a time,
+	 * whether or not its game is over.
+	 *
+	 * @param idleMillis longest idle time to keep in milliseconds
+	 * @return number of sessions closed
+	 */
+	public int reap(long idleMillis) {
+
+		int closed = 0;
+
+		for (Session session : sessions.values()) {
+			if (session.getIdleMillis() > idleMillis && close(session.id)) {
+				closed++;
+			}
+		}
+
+		return closed;
+	} //reap
+
+	/**
+	 * Closes every session.
+	 */
+	public void shutdown() {
+
+		for (Integer id : sessions.keySet()) {
+			close(id);
+		}
+	} //shutdown
+
+	/**
+	 * Gets the open sessions.
+	 *
+	 * @return live view of the sessions not yet closed
+	 */
+	public Collection<Session> getSessions() {
+		return sessions.values();
+	} //getSessions
+
+	/**
+	 * Getter method for <code>opened</code>.
+	 *
+	 * @return number of sessions ever opened
+	 */
+	public long getOpened() {
+		return opened.get();
+	} //getOpened
+
+	/**
+	 * Gets the number of sessions whose game is still running.
+	 *
+	 * @return number of running sessions
+	 */
+	public long getRunning() {
+		return opened.get() - finished.get() - stopped.get();
+	} //getRunning
+
+	/**
+	 * Getter method for <code>finished</code>.
+	 *
+	 * @return number of games that ended by passes or the move limit
+	 */
+	public long getFinished() {
+		return finished.get();
+	} //getFinished
+
+	/**
+	 * Getter method for <code>stopped</code>.
+	 *
+	 * @return number of games stopped before they ended
+	 */
+	public long getStopped() {
+		return stopped.get();
+	} //getStopped
+
+	/**
+	 * Getter method for <code>moves</code>.
+	 *
+	 * @return number of moves made in every session
+	 */
+	public long getMoves() {
+		return moves.get();
+	} //getMoves
+
+	/**
+	 * Getter method for <code>moveTime</code>.
+	 *
+	 * @return histogram of the time taken to apply each move
+	 */
+	public LatencyHistogram getMoveTime() {
+		return moveTime;
+	} //getMoveTime
+
+	/**
+	 * Builds a short report of the host's lifecycle and resource metrics.
+	 *
+	 * @return lines of text describing the host
+	 */
+	public String report() {
+
+		long footprint = 0;
+		long queued = 0;
+		int open = 0;
+
+		for (Session session : sessions.values()) {
+			footprint += session.getFootprint();
+			queued += session.getQueued();
+			open++;
+		}
+
+		Runtime runtime = Runtime.getRuntime();
+		double seconds = (System.nanoTime() - started) / 1e9;
+
+		return String.format("sessions opened=%d open=%d running=%d finished=%d stopped=%d virtual=%b%n"
+				+ "moves total=%d rate=%.0f/s apply p50=%.1fus p99=%.1fus%n"
+				+ "memory positions=%dKB queued=%d heap=%dMB threads=%d%n",
+				getOpened(), open, getRunning(), getFinished(), getStopped(), GameThreads.isVirtual(),
+				getMoves(), getMoves() / seconds, moveTime.percentile(0.5) / 1e3, moveTime.percentile(0.99) / 1e3,
+				footprint / 1024, queued, (runtime.totalMemory() - runtime.freeMemory()) >> 20, Thread.activeCount());
+	} //report
+
+	/**
+	 * Plays random games on many sessions at once. Each session is fed by a
+	 * client on its own thread that submits random points for the player to
+	 * move, with an occasional pass, until the game ends.
+	 *
+	 * @param args optional number of sessions, board size and client threads
+	 * @throws InterruptedException if interrupted while waiting for games
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		int size = (args.length > 1) ? Integer.parseInt(args[1]) : 9;
+
+		GameHost host = new GameHost();
+		List<Thread> clients = new ArrayList<>();
+		long start = System.nanoTime();
+
+		for (int i = 0; i < count; i++) {
+
+			Session session = host.open(size);
+			SplittableRandom random = new SplittableRandom(i);
+
+			clients.add(GameThreads.start("go-client-" + i, () -> {
+				try {
+					while (session.getState() == State.RUNNING) {
+
+						int seen = session.getEvents();
+						int point = (random.nextInt(50) == 0) ? MoveQueue.PASS : random.nextInt(size * size);
+
+						if (session.submit(session.getToMove(), point)) {
+							session.awaitEvent(seen, 1000);
+						}
+					}
+				} catch (InterruptedException e) {
+					//host shutting down
+				}
+			}));
+		}
+
+		for (Thread client : clients) {
+			client.join();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.print(host.report());
+		System.out.print(Metrics.dump());
+		System.out.printf("%d games in %.2fs, %.0f moves/s%n", count, seconds, host.getMoves() / seconds);
+
+		host.shutdown();
+	} //main
+
+} //GameHost
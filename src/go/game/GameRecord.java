@@ -0,0 +1,259 @@
+package go.game;
+
+import java.util.Arrays;
+
+/**
+ * Class representing the moves of one game in the order they were played.
+ * Setup stones, such as handicap stones, are kept apart from the moves and
+ * are placed before the first move on replay. Moves are packed into a
+ * growing <code>int</code> array as the color in the high bits and the
+ * point plus one in the low bits, with zero meaning a pass.
+ *
+ * A <code>GameRecord</code> is a <code>MoveListener</code>, so it can be added
+ * to a <code>Game</code> to record the game as it is played.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class GameRecord implements MoveListener {
+
+	private static final int POINT_BITS = 24;
+	private static final int POINT_MASK = (1 << POINT_BITS) - 1;
+
+	private int size;
+	private double komi = AreaScorer.DEFAULT_KOMI;
+	private String result;
+	private int[] moves = new int[64];
+	private int moveCount = 0;
+	private int[] setup = new int[0];
+	private int setupCount = 0;
+
+	/**
+	 * Constructor for an empty <code>GameRecord</code>.
+	 *
+	 * @param size size of the board the game is played on
+	 */
+	public GameRecord(int size) {
+		this.size = size;
+	} //GameRecord
+
+	@Override
+	public void moved(Game game, byte color, int point, int captured, long nanos) {
+		addMove(color, point);
+	} //moved
+
+	@Override
+	public void undone(Game game) {
+		removeMove();
+	} //undone
+
+	/**
+	 * Removes the last move.
+	 */
+	public void removeMove() {
+
+		if (moveCount > 0) {
+			moveCount--;
+		}
+	} //removeMove
+
+	/**
+	 * Appends a move.
+	 *
+	 * @param color color code of the player who moved
+	 * @param point index of the point played, or -1 for a pass
+	 */
+	public void addMove(byte color, int point) {
+
+		if (moveCount == moves.length) {
+			moves = Arrays.copyOf(moves, 2 * moves.length);
+		}
+
+		moves[moveCount++] = pack(color, point);
+	} //addMove
+
+	/**
+	 * Appends a setup stone, placed before the first move on replay.
+	 *
+	 * @param color color code of the stone, or <code>Position.VACANT</code> to clear the point
+	 * @param point index of the point
+	 */
+	public void addSetup(byte color, int point) {
+
+		if (setupCount == setup.length) {
+			setup = Arrays.copyOf(setup, Math.max(8, 2 * setup.length));
+		}
+
+		setup[setupCount++] = pack(color, point);
+	} //addSetup
+
+	/**
+	 * Replays the record onto a position, which is cleared first. Moves are
+	 * checked against the rules of the position and replay stops at the
+	 * first illegal move.
+	 *
+	 * @param position position of the same size to replay onto
+	 * @return number of moves played, equal to <code>getMoveCount</code> if every move was legal
+	 */
+	public int replay(Position position) {
+
+		position.clear();
+
+		for (int i = 0; i < setupCount; i++) {
+			int p = point(setup[i]);
+			position.set(color(setup[i]), position.getX(p), position.getY(p));
+		}
+
+		for (int i = 0; i < moveCount; i++) {
+
+			byte color = color(moves[i]);
+			int p = point(moves[i]);
+
+			if (p < 0) {
+				position.pass(color);
+			}
+			else if (position.isLegal(color, p)) {
+				position.play(color, p);
+			}
+			else {
+				return i;
+			}
+		}
+
+		return moveCount;
+	} //replay
+
+	/**
+	 * Packs a color and a point into one <code>int</code>.
+	 *
+	 * @param color color code
+	 * @param point index of the point, or -1
+	 * @return packed move
+	 */
+	private static int pack(byte color, int point) {
+		return color << POINT_BITS | (point + 1);
+	} //pack
+
+	/**
+	 * Unpacks the color of a move.
+	 *
+	 * @param move packed move
+	 * @return color code
+	 */
+	private static byte color(int move) {
+		return (byte) (move >>> POINT_BITS);
+	} //color
+
+	/**
+	 * Unpacks the point of a move.
+	 *
+	 * @param move packed move
+	 * @return index of the point, or -1 for a pass
+	 */
+	private static int point(int move) {
+		return (move & POINT_MASK) - 1;
+	} //point
+
+	/**
+	 * Getter method for the color of a move.
+	 *
+	 * @param i number of the move, from zero
+	 * @return color code of the player who moved
+	 */
+	public byte getColor(int i) {
+		return color(moves[i]);
+	} //getColor
+
+	/**
+	 * Getter method for the point of a move.
+	 *
+	 * @param i number of the move, from zero
+	 * @return index of the point played, or -1 for a pass
+	 */
+	public int getPoint(int i) {
+		return point(moves[i]);
+	} //getPoint
+
+	/**
+	 * Getter method for the color of a setup stone.
+	 *
+	 * @param i number of the setup stone, from zero
+	 * @return color code of the stone
+	 */
+	public byte getSetupColor(int i) {
+		return color(setup[i]);
+	} //getSetupColor
+
+	/**
+	 * Getter method for the point of a setup stone.
+	 *
+	 * @param i number of the setup stone, from zero
+	 * @return index of the point
+	 */
+	public int getSetupPoint(int i) {
+		return point(setup[i]);
+	} //getSetupPoint
+
+	/**
+	 * Getter method for <code>moveCount</code>.
+	 *
+	 * @return number of moves, including passes
+	 */
+	public int getMoveCount() {
+		return moveCount;
+	} //getMoveCount
+
+	/**
+	 * Getter method for <code>setupCount</code>.
+	 *
+	 * @return number of setup stones
+	 */
+	public int getSetupCount() {
+		return setupCount;
+	} //getSetupCount
+
+	/**
+	 * Getter method for <code>size</code>.
+	 *
+	 * @return size of the board the game is played on
+	 */
+	public int getSize() {
+		return size;
+	} //getSize
+
+	/**
+	 * Getter method for <code>komi</code>.
+	 *
+	 * @return points given to white
+	 */
+	public double getKomi() {
+		return komi;
+	} //getKomi
+
+	/**
+	 * Setter method for <code>komi</code>.
+	 *
+	 * @param komi points given to white
+	 */
+	public void setKomi(double komi) {
+		this.komi = komi;
+	} //setKomi
+
+	/**
+	 * Getter method for <code>result</code>.
+	 *
+	 * @return result in SGF form, such as "B+3.5", or null if unknown
+	 */
+	public String getResult() {
+		return result;
+	} //getResult
+
+	/**
+	 * Setter method for <code>result</code>.
+	 *
+	 * @param result result in SGF form, such as "B+3.5"
+	 */
+	public void setResult(String result) {
+		this.result = result;
+	} //setResult
+
+} //GameRecord
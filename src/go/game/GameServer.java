@@ -0,0 +1,549 @@
+package go.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that serves the games of a <code>GameHost</code> to remote players
+ * over a line based text protocol. Every connection is handled on its own
+ * thread from <code>GameThreads</code>, so a connection waiting on the
+ * network or on its opponent holds no operating system thread where
+ * virtual threads are available. Commands, one per line:
+ *
+ * <pre>
+ * NEW [size]     opens a game and takes black     OK id BLACK
+ * JOIN id        takes white in an open game      OK id WHITE
+ * PLAY x y       plays a move on your turn        OK captured | ERR reason
+ * PASS           passes on your turn              OK 0 | ERR reason
+ * WAIT           waits for your turn              TURN | OVER result
+ * BOARD          shows the board, rows split by / BOARD width height rows
+ * SCORE          shows the area scores            SCORE black white toMove
+ * WATCH id       watches a game                   OK id WATCH, then frames
+ * METRICS        shows host metrics, lines by ;   METRICS lines
+ * QUIT           leaves, ending the game          BYE
+ * </pre>
+ *
+ * After <code>WATCH</code> the connection receives the binary frames of the
+ * game's <code>SpectatorChannel</code>, written straight from the shared
+ * buffers, until the game ends, and then takes commands again.
+ *
+ * Memory per game is bounded: moves wait in fixed size queues, input lines
+ * longer than <code>MAX_LINE</code> close the connection, and the only
+ * buffers are a small one per connection and the host's copy of the board.
+ *
+ * Usage: <code>java go.game.GameServer [port]</code>
+ *
+ * @author Benjamin C. McKinley
+ */
+public class GameServer {
+
+	public static final int DEFAULT_PORT = 7474;
+	public static final int MAX_LINE = 128;
+
+	private static final long WAIT_MILLIS = 60_000;
+
+	private GameHost host;
+	private ServerSocketChannel server;
+	private Set<Integer> joined = ConcurrentHashMap.newKeySet();
+	private Map<SocketChannel, Boolean> connections = new ConcurrentHashMap<>();
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor for a <code>GameServer</code> listening on a port.
+	 *
+	 * @param host host whose sessions are served
+	 * @param port port to listen on, or 0 for any free port
+	 * @throws IOException if the port cannot be bound
+	 */
+	public GameServer(GameHost host, int port) throws IOException {
+
+		this.host = host;
+
+		server = ServerSocketChannel.open();
+		server.socket().setReuseAddress(true);
+		server.bind(new InetSocketAddress(port), 4096);
+	} //GameServer
+
+	/**
+	 * Accepts connections on its own thread until the server is closed.
+	 *
+	 * @return the accepting thread
+	 */
+	public Thread start() {
+		return GameThreads.start("go-server", this::accept);
+	} //start
+
+	/**
+	 * Loop that accepts connections and starts a thread for each.
+	 */
+	private void accept() {
+
+		while (running) {
+			try {
+				SocketChannel channel = server.accept();
+				channel.socket().setTcpNoDelay(true);
+				connections.put(channel, Boolean.TRUE);
+				GameThreads.start("go-connection", () -> serve(channel));
+			} catch (IOException e) {
+				if (running) {
+					System.out.println("Error accepting connection: " + e);
+				}
+			}
+		}
+	} //accept
+
+	/**
+	 * Class holding the state of one connection: the game it is in, if any,
+	 * the color it plays and the game it is about to watch.
+	 */
+	private static class Connection {
+
+		private GameHost.Session session;
+		private byte color;
+		private GameHost.Session watching;
+	} //Connection
+
+	/**
+	 * Reads commands from a connection and answers each until the client
+	 * quits or disconnects, then closes its game.
+	 *
+	 * @param channel connected channel
+	 */
+	private void serve(SocketChannel channel) {
+
+		Connection connection = new Connection();
+
+		try (InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 256);
+				OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 256)) {
+
+			byte[] line = new byte[MAX_LINE];
+			int length;
+
+			while ((length = readLine(in, line)) >= 0) {
+
+				String reply = handle(connection, new String(line, 0, length, StandardCharsets.US_ASCII).trim());
+
+				out.write(reply.getBytes(StandardCharsets.US_ASCII));
+				out.write('\n');
+				out.flush();
+
+				if (reply.equals("BYE")) {
+					break;
+				}
+				if (connection.watching != null) {
+					stream(connection.watching.getSpectators(), channel);
+					connection.watching = null;
+				}
+			}
+		} catch (SocketException e) {
+			//client went away
+		} catch (IOException | InterruptedException e) {
+			if (running) {
+				System.out.println("Error serving connection: " + e);
+			}
+		} finally {
+			leave(connection);
+			connections.remove(channel);
+
+			try {
+				channel.close();
+			} catch (IOException e) {
+				//already closed
+			}
+		}
+	} //serve
+
+	/**
+	 * Writes the frames of a spectator channel to a connection until the
+	 * game ends. Each frame is written from a view of the buffer shared by
+	 * every spectator rather than from a copy made for this connection.
+	 *
+	 * @param spectators channel to watch
+	 * @param channel connection to write to
+	 * @throws IOException if the connection fails
+	 * @throws InterruptedException if the server is stopped while waiting
+	 */
+	private void stream(SpectatorChannel spectators, SocketChannel channel) throws IOException, InterruptedException {
+
+		SpectatorChannel.Subscriber subscriber = spectators.subscribe();
+
+		try {
+			while (running && !subscriber.isDone()) {
+
+				ByteBuffer frame = subscriber.poll(WAIT_MILLIS);
+
+				while (frame != null && frame.hasRemaining()) {
+					channel.write(frame);
+				}
+			}
+		} finally {
+			subscriber.close();
+		}
+	} //stream
+
+	/**
+	 * Reads one line into a buffer, without the line ending.
+	 *
+	 * @param in stream to read
+	 * @param line buffer of <code>MAX_LINE</code> bytes
+	 * @return length of the line, or -1 at the end of the stream
+	 * @throws IOException if the line is too long or the stream fails
+	 */
+	private static int readLine(InputStream in, byte[] line) throws IOException {
+
+		int length = 0;
+		int b;
+
+		while ((b = in.read()) >= 0) {
+
+			if (b == '\n') {
+				return length;
+			}
+			if (length == line.length) {
+				throw new IOException("Line longer than " + MAX_LINE + " bytes");
+			}
+
+			line[length++] = (byte) b;
+		}
+
+		return (length > 0) ? length : -1;
+	} //readLine
+
+	/**
+	 * Carries out one command.
+	 *
+	 * @param connection state of the connection
+	 * @param command line sent by the client
+	 * @return line to send back
+	 * @throws InterruptedException if the server is stopped while waiting
+	 */
+	private String handle(Connection connection, String command) throws InterruptedException {
+
+		String[] words = command.split("\\s+");
+		String verb = words[0].toUpperCase();
+
+		try {
+			switch (verb) {
+			case "NEW":
+				return open(connection, (words.length > 1) ? Integer.parseInt(words[1]) : 9);
+			case "JOIN":
+				return join(connection, Integer.parseInt(words[1]));
+			case "PLAY":
+				return play(connection, Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+			case "PASS":
+				return play(connection, MoveQueue.PASS);
+			case "WAIT":
+				return await(connection);
+			case "BOARD":
+				return board(connection);
+			case "SCORE":
+				return score(connection);
+			case "WATCH":
+				return watch(connection, Integer.parseInt(words[1]));
+			case "METRICS":
+				return metrics();
+			case "QUIT":
+				return "BYE";
+			default:
+				return "ERR unknown command";
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			return "ERR bad arguments";
+		}
+	} //handle
+
+	/**
+	 * Opens a game with this connection playing black.
+	 *
+	 * @param connection state of the connection
+	 * @param size size of row and col for board
+	 * @return reply to the client
+	 */
+	private String open(Connection connection, int size) {
+
+		if (connection.session != null) {
+			return "ERR already in a game";
+		}
+		if (size < 2 || size > BitBoard.MAX_WIDTH) {
+			return "ERR bad size";
+		}
+
+		connection.session = host.open(size);
+		connection.color = Position.BLACK;
+
+		return "OK " + connection.session.getId() + " BLACK";
+	} //open
+
+	/**
+	 * Joins an open game as white.
+	 *
+	 * @param connection state of the connection
+	 * @param id number of the game
+	 * @return reply to the client
+	 */
+	private String join(Connection connection, int id) {
+
+		if (connection.session != null) {
+			return "ERR already in a game";
+		}
+
+		GameHost.Session session = host.get(id);
+
+		if (session == null || session.getState() != GameHost.State.RUNNING) {
+			return "ERR no such game";
+		}
+		if (!joined.add(id)) {
+			return "ERR game is full";
+		}
+
+		connection.session = session;
+		connection.color = Position.WHITE;
+
+		return "OK " + id + " WHITE";
+	} //join
+
+	/**
+	 * Plays a move at coordinates.
+	 *
+	 * @param connection state of the connection
+	 * @param x location in x direction
+	 * @param y location in y direction
+	 * @return reply to the client
+	 * @throws InterruptedException if the server is stopped while waiting
+	 */
+	private String play(Connection connection, int x, int y) throws InterruptedException {
+
+		if (connection.session == null) {
+			return "ERR not in a game";
+		}
+
+		Position position = connection.session.getPosition();
+
+		if (x < 0 || y < 0 || x >= position.getWidth() || y >= position.getHeight()) {
+			return "ERR off the board";
+		}
+
+		return play(connection, position.point(x, y));
+	} //play
+
+	/**
+	 * Submits a move and waits for the game thread to make or reject it.
+	 *
+	 * @param connection state of the connection
+	 * @param point index of the point, or <code>MoveQueue.PASS</code>
+	 * @return reply to the client
+	 * @throws InterruptedException if the server is stopped while waiting
+	 */
+	private String play(Connection connection, int point) throws InterruptedException {
+
+		GameHost.Session session = connection.session;
+
+		if (session == null) {
+			return "ERR not in a game";
+		}
+		if (session.getState() != GameHost.State.RUNNING) {
+			return "OVER " + session.getResult();
+		}
+		if (session.getToMove() != connection.color) {
+			return "ERR not your turn";
+		}
+
+		int moves = session.getMoveCount();
+		int seen = session.getEvents();
+
+		if (!session.submit(connection.color, point)) {
+			return "ERR busy";
+		}
+
+		session.awaitEvent(seen, WAIT_MILLIS);
+
+		if (session.getMoveCount() != moves) {
+			return "OK " + session.getLastCaptured();
+		}
+
+		return (session.getState() == GameHost.State.RUNNING) ? "ERR illegal move" : "OVER " + session.getResult();
+	} //play
+
+	/**
+	 * Waits until it is this connection's turn or the game is over.
+	 *
+	 * @param connection state of the connection
+	 * @return reply to the client
+	 * @throws InterruptedException if the server is stopped while waiting
+	 */
+	private String await(Connection connection) throws InterruptedException {
+
+		GameHost.Session session = connection.session;
+
+		if (session == null) {
+			return "ERR not in a game";
+		}
+
+		while (running) {
+
+			int seen = session.getEvents();
+
+			if (session.getState() != GameHost.State.RUNNING) {
+				return "OVER " + session.getResult();
+			}
+			if (session.getToMove() == connection.color) {
+				return "TURN";
+			}
+
+			session.awaitEvent(seen, WAIT_MILLIS);
+		}
+
+		return "ERR server stopping";
+	} //await
+
+	/**
+	 * Describes the board.
+	 *
+	 * @param connection state of the connection
+	 * @return reply to the client
+	 */
+	private String board(Connection connection) {
+
+		if (connection.session == null) {
+			return "ERR not in a game";
+		}
+
+		Position position = connection.session.getPosition();
+
+		return "BOARD " + position.getWidth() + " " + position.getHeight() + " " + connection.session.getBoardText("/");
+	} //board
+
+	/**
+	 * Describes the scores and whose turn it is.
+	 *
+	 * @param connection state of the connection
+	 * @return reply to the client
+	 */
+	private String score(Connection connection) {
+
+		if (connection.session == null) {
+			return "ERR not in a game";
+		}
+
+		GameHost.Session session = connection.session;
+
+		return "SCORE " + session.getBlackArea() + " " + session.getWhiteArea() + " "
+				+ (session.getToMove() == Position.BLACK ? "BLACK" : "WHITE");
+	} //score
+
+	/**
+	 * Starts watching a game once the reply has been sent.
+	 *
+	 * @param connection state of the connection
+	 * @param id number of the game
+	 * @return reply to the client
+	 */
+	private String watch(Connection connection, int id) {
+
+		GameHost.Session session = host.get(id);
+
+		if (session == null) {
+			return "ERR no such game";
+		}
+
+		connection.watching = session;
+
+		return "OK " + id + " WATCH";
+	} //watch
+
+	/**
+	 * Describes the host and the process-wide <code>Metrics</code>.
+	 *
+	 * @return reply to the client
+	 */
+	private String metrics() {
+		return "METRICS " + (host.report() + Metrics.dump()).trim().replaceAll("\\R", ";");
+	} //metrics
+
+	/**
+	 * Ends the game of a connection that is leaving.
+	 *
+	 * @param connection state of the connection
+	 */
+	private void leave(Connection connection) {
+
+		if (connection.session != null) {
+			joined.remove(connection.session.getId());
+			host.close(connection.session.getId());
+			connection.session = null;
+		}
+	} //leave
+
+	/**
+	 * Gets the port the server is listening on.
+	 *
+	 * @return local port
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	} //getPort
+
+	/**
+	 * Gets the number of open connections.
+	 *
+	 * @return number of connections being served
+	 */
+	public int getConnections() {
+		return connections.size();
+	} //getConnections
+
+	/**
+	 * Stops accepting connections, closes every open one and stops every game.
+	 *
+	 * @throws IOException if the listening socket cannot be closed
+	 */
+	public void close() throws IOException {
+
+		running = false;
+		server.close();
+
+		for (SocketChannel channel : connections.keySet()) {
+			channel.close();
+		}
+
+		host.shutdown();
+	} //close
+
+	/**
+	 * Runs a server until the process is stopped, printing the host's
+	 * metrics every minute.
+	 *
+	 * @param args optional port to listen on
+	 * @throws IOException if the port cannot be bound
+	 * @throws InterruptedException if interrupted while running
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		GameHost host = new GameHost();
+		GameServer server = new GameServer(host, port);
+
+		server.start();
+		System.out.println("Listening on port " + server.getPort());
+
+		while (true) {
+			Thread.sleep(60_000);
+			System.out.print(host.report());
+			System.out.print(Metrics.dump());
+		}
+	} //main
+
+} //GameServer
@@ -0,0 +1,80 @@
+package go.game;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class responsible for creating the threads that host game loops. Uses a
+ * virtual thread when the running JVM supports them and otherwise falls
+ * back to a daemon platform thread, so a game waiting on a move never pins
+ * an operating system thread where it can be avoided.
+ *
+ * Also holds the one pool of platform threads, sized to the cores, that
+ * runs the CPU-bound playouts of both <code>TreeSearch</code> and
+ * <code>Ownership</code>.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class GameThreads {
+
+	private static final ForkJoinPool PLAYOUTS = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	private static Method ofVirtual, name, start;
+
+	static {
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			name = builder.getMethod("name", String.class);
+			start = builder.getMethod("start", Runnable.class);
+		} catch (ReflectiveOperationException e) {
+			ofVirtual = null;
+		}
+	}
+
+	private GameThreads() {
+	} //GameThreads
+
+	/**
+	 * Starts a new thread running the parameter task.
+	 *
+	 * @param threadName name given to the thread
+	 * @param task task for the thread to run
+	 * @return the started thread
+	 */
+	public static Thread start(String threadName, Runnable task) {
+
+		if (ofVirtual != null) {
+			try {
+				Object builder = name.invoke(ofVirtual.invoke(null), threadName);
+				return (Thread) start.invoke(builder, task);
+			} catch (ReflectiveOperationException e) {
+				ofVirtual = null;
+			}
+		}
+
+		Thread thread = new Thread(task, threadName);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	} //start
+
+	/**
+	 * Checks whether game loops run on virtual threads.
+	 *
+	 * @return boolean value whether virtual threads are available
+	 */
+	public static boolean isVirtual() {
+		return ofVirtual != null;
+	} //isVirtual
+
+	/**
+	 * Gets the pool shared by every search and estimate that runs playouts.
+	 *
+	 * @return pool with one thread per core
+	 */
+	public static ForkJoinPool getPlayoutPool() {
+		return PLAYOUTS;
+	} //getPlayoutPool
+
+} //GameThreads
@@ -1,16 +1,21 @@
 package go.game;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Random;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.scene.effect.GaussianBlur;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.WritableImage;
 import javafx.scene.layout.HBox;
@@ -28,8 +33,10 @@ import javafx.stage.Stage;
  * 
  * Players take turns placing pieces of their color down on the board. If a piece or group
  * of same color pieces have no liberties or connections to a vacant, non-edge space after 
- * a particular move the group or individual piece is removed from the board. The winner is
- * decided by who has the most stones when the players decide to finish the game.
+ * a particular move the group or individual piece is removed from the board. When the players
+ * decide to finish the game, random games played from the final position settle who owns each
+ * point and which groups are dead, and the winner is decided by area score with komi.
+ * The settled ownership is shown on the board before the winner enters their initials.
  * 
  * Suicide moves or moves that allow a player to jeopardize their own pieces are not allowed.
  * 
@@ -37,13 +44,21 @@ import javafx.stage.Stage;
  */
 public class GoApp extends Application {
 
+	//start of the application, for the startup time printed with -Dgo.timing=true
+	private static final long LAUNCHED = System.nanoTime();
+	private static final boolean TIMING = Boolean.getBoolean("go.timing");
+	//draw the board on one canvas instead of a node per point with -Dgo.canvas=true
+	private static final boolean CANVAS = Boolean.getBoolean("go.canvas");
+
 	Random rng = new Random();
 	public String version = "1.0.0";
-	private int[] sizeArray = {5, 12, 19};
-	private int size = 1; //between 0-2
+	private List<Integer> sizes = Game.BOARD_SIZES;
+	private int size = 2; //index into sizes
+	private boolean computer = false;
 	private Stage stage;
 	private Game game;
 	private Scene gameScene;
+	private HighScoreStore highscores;
 	
 	/**
 	 * Constructor for a game of Go. Builds <code>Board</code>
@@ -62,23 +77,77 @@ public class GoApp extends Application {
 		stage.setResizable(false);
 		stage.centerOnScreen();
 		stage.sizeToScene();
-		stage.getIcons().add(new Image("https://i.imgur.com/RdAEXIc.png"));
+		stage.getIcons().add(Assets.getIcon());
 		stage.show();
+		
+		if (TIMING) {
+			System.out.printf("Startup: %.1f ms%n", (System.nanoTime() - LAUNCHED) / 1e6);
+		}
 		stage.setOnCloseRequest(event -> {
 			game.stop();
 		});
 	} //start
 	
 	/**
-	 * Records high score for the current game in a text file for
-	 * later retrieval and launches new game.
+	 * Settles the final position on its own thread: waits for the stopped
+	 * game loop to return, copies the position, estimates ownership and
+	 * saves the record. Then shows the ownership on the board with the
+	 * result and a button that continues to the high score prompt.
 	 * 
+	 * @param info bar of controls below the board, replaced by the result
 	 */
-	public void recordHighscore() {
+	public void settle(HBox info) {
+		
+		Game finished = game;
 		
-		int wScore = game.getBoard().getWhiteScore();
-		int bScore = game.getBoard().getBlackScore();
-		int hScore = (wScore > bScore) ? wScore : bScore;
+		Text result = new Text("Counting...");
+		result.setStyle("-fx-font: 14 arial;");
+		result.setFill(Paint.valueOf("WHITE"));
+		info.getChildren().setAll(result);
+		
+		GameThreads.start("Settle", () -> {
+			
+			Ownership ownership;
+			
+			try {
+				//the game thread may still be finishing a move
+				finished.join();
+				ownership = new Ownership(finished.getPosition());
+				ownership.setKomi(finished.getPosition().getScorer().getKomi());
+				ownership.estimate(Ownership.DEFAULT_PLAYOUTS, Ownership.DEFAULT_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			} //try
+			
+			saveRecord(finished, ownership);
+			
+			Platform.runLater(() -> {
+				
+				finished.getBoard().showOwnership(ownership);
+				
+				result.setText(String.format("Black %.0f  White %.1f  %s  (dead: %d black, %d white)",
+						ownership.getBlackArea(), ownership.getWhiteArea(), ownership.getResult(),
+						ownership.getDeadStones(Position.BLACK), ownership.getDeadStones(Position.WHITE)));
+				
+				Button next = new Button("Continue");
+				next.setOnAction(event -> recordHighscore(ownership));
+				info.getChildren().setAll(result, next);
+				
+			});
+		});
+	} //settle
+	
+	/**
+	 * Records high score for the current game in the <code>HighScoreStore</code>
+	 * for later retrieval and launches new game. The score recorded is the
+	 * winner's settled area without komi.
+	 * 
+	 * @param ownership settled ownership of the final position
+	 */
+	public void recordHighscore(Ownership ownership) {
+		
+		int hScore = ownership.getWinnerPoints();
+		int boardSize = game.getPosition().getSize();
 		
 		WritableImage screenshot = stage.getScene().snapshot(null);
 		ImageView scImv = new ImageView(screenshot);
@@ -94,25 +163,42 @@ public class GoApp extends Application {
 		TextField textField = new TextField();
 		textField.setMaxWidth(50);
 		
+		Text leaders = new Text();
+		leaders.setStyle("-fx-font: 14 arial;");
+		leaders.setFill(Paint.valueOf("WHITE"));
+		
 		Button submit = new Button("SUBMIT");
 		submit.setOnAction(event -> {
 			
-			String filepath = "res/highscore_go.txt";
 			try { 
-				File file = new File(filepath);
-				FileWriter fileWriter = new FileWriter(file, true);
-				fileWriter.write(textField.getText() + " " + hScore + "\n");
-				fileWriter.close();
-			} catch (Exception e) {
+				getHighscores().record(boardSize, textField.getText(), hScore);
+			} catch (IOException e) {
 				System.out.println("Error recording score: " + e);
-				System.exit(1);
 			} //try
 			
 			startGame();
 			
 		});
 		
-		vbox.getChildren().addAll(initialRequest, textField, submit);
+		try {
+			StringBuilder best = new StringBuilder("Best on " + boardSize + "x" + boardSize + "\n");
+			for (HighScoreStore.Entry entry : getHighscores().top(boardSize, 5)) {
+				best.append(entry).append("\n");
+			}
+
+			List<HighScoreStore.Entry> earlier = getHighscores().top(HighScoreStore.UNKNOWN_SIZE, 5);
+			if (!earlier.isEmpty()) {
+				best.append("\nEarlier games, size not recorded\n");
+				for (HighScoreStore.Entry entry : earlier) {
+					best.append(entry).append("\n");
+				}
+			}
+			leaders.setText(best.toString());
+		} catch (IOException e) {
+			System.out.println("Error reading scores: " + e);
+		} //try
+		
+		vbox.getChildren().addAll(initialRequest, textField, submit, leaders);
 		
 		StackPane sp = new StackPane();
 		sp.getChildren().addAll(scImv, vbox);	
@@ -120,20 +206,75 @@ public class GoApp extends Application {
 		stage.setScene(scoreScene);
 	} //recordHighscore
 	
+	/**
+	 * Writes a finished game as an SGF file in the games directory. Called
+	 * off the FX thread once the game loop has returned.
+	 * 
+	 * @param finished game whose loop has returned
+	 * @param ownership settled ownership of the final position
+	 */
+	public void saveRecord(Game finished, Ownership ownership) {
+		
+		GameRecord record = finished.getRecord();
+		record.setResult(ownership.getResult());
+		
+		String name = "go-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".sgf";
+		
+		try {
+			Path games = Files.createDirectories(Paths.get("games"));
+			SgfWriter.write(record, games.resolve(name));
+		} catch (IOException e) {
+			System.out.println("Error saving game: " + e);
+		} //try
+	} //saveRecord
+	
+	/**
+	 * Opens the <code>HighScoreStore</code> on first use, importing the
+	 * scores of the old text file if the store is new.
+	 * 
+	 * @return the high score store
+	 * @throws IOException if the store cannot be opened
+	 */
+	private HighScoreStore getHighscores() throws IOException {
+		
+		if (highscores == null) {
+			Path file = Paths.get("res/highscore_go.bin");
+			Path legacy = Paths.get("res/highscore_go.txt");
+			boolean fresh = !Files.exists(file);
+			
+			highscores = new HighScoreStore(file);
+			
+			if (fresh && Files.exists(legacy)) {
+				highscores.importLegacy(legacy);
+			}
+		}
+		
+		return highscores;
+	} //getHighscores
+	
 	/**
 	 * Builds new scene and starts a new game of Go.
 	 */
 	public void startGame() {
-		game = new Game(sizeArray[size]);
+		long started = System.nanoTime();
+		int boardSize = sizes.get(size);
+		game = new Game(CANVAS ? new CanvasBoard(boardSize) : new Board(boardSize), computer);
 		
 		HBox title = new HBox();
 		title.setAlignment(Pos.BASELINE_CENTER);
 		title.setMinHeight(25);
 
-		title.getChildren().add(new ImageView(new Image("https://i.imgur.com/FSAcfia.png")));
+		if (Assets.getImage(Assets.TITLE) != null) {
+			title.getChildren().add(new ImageView(Assets.getImage(Assets.TITLE)));
+		} else {
+			Text name = new Text("GO");
+			name.setStyle("-fx-font: bold 20 arial;");
+			name.setFill(Paint.valueOf("WHITE"));
+			title.getChildren().add(name);
+		}
 
 		StackPane playBoard = new StackPane();
-		Rectangle background = new Rectangle(24 * sizeArray[size] + 8, 24 * sizeArray[size] + 8);
+		Rectangle background = new Rectangle(24 * sizes.get(size) + 8, 24 * sizes.get(size) + 8);
 		background.setFill(Paint.valueOf("572A00"));
 		playBoard.getChildren().addAll(background, game.getBoard());
 
@@ -147,26 +288,36 @@ public class GoApp extends Application {
 		endGame.setOnAction(event -> {	
 			game.getBoard().setDisable(true);
 			game.stop();	
-			recordHighscore();
+			settle(info);
+		});
+		
+		Button undo = new Button("Undo");
+		undo.setOnAction(event -> {
+			game.getBoard().getMoveQueue().submit(MoveQueue.UNDO);
 		});
 		
-		Button changeSize = new Button(sizeArray[size] + "x" + sizeArray[size]);
+		Button redo = new Button("Redo");
+		redo.setOnAction(event -> {
+			game.getBoard().getMoveQueue().submit(MoveQueue.REDO);
+		});
+		
+		Button changeSize = new Button(sizes.get(size) + "x" + sizes.get(size));
 		changeSize.setOnAction(event -> {
 			
-			if (changeSize.getText().toString().charAt(1) == '2') {
-				size = 2;
-				changeSize.setText("19x19");
-			} else if (changeSize.getText().toString().charAt(1) == '9') {
-				size = 0;
-				changeSize.setText("5x5");
-			} else {
-				size = 1;
-				changeSize.setText("12x12");
-			}
+			size = (size + 1) % sizes.size();
+			changeSize.setText(sizes.get(size) + "x" + sizes.get(size));
 			
 		});
 
-		info.getChildren().addAll(game.getScoreBoard(), endGame, changeSize);
+		Button opponent = new Button(computer ? "CPU" : "2P");
+		opponent.setOnAction(event -> {
+			
+			computer = !computer;
+			opponent.setText(computer ? "CPU" : "2P");
+			
+		});
+
+		info.getChildren().addAll(game.getScoreBoard(), endGame, undo, redo, changeSize, opponent);
 		
 		screen.getChildren().addAll(title, playBoard, info);
 
@@ -174,6 +325,10 @@ public class GoApp extends Application {
 		
 		stage.setScene(gameScene);
 		stage.show();
+		
+		if (TIMING) {
+			System.out.printf("New game: %.1f ms%n", (System.nanoTime() - started) / 1e6);
+		}
 	} //startGame
 	
 	/**
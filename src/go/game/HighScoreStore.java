@@ -0,0 +1,382 @@
+package go.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class representing the high scores of every finished game. Scores are
+ * appended to a binary file of fixed 16 byte records and the best scores
+ * for each board size are kept in memory in sorted sets of bounded size.
+ *
+ * Each record holds the board size (1 byte), the initials (3 ASCII bytes),
+ * the score (4 bytes) and the time it was recorded (8 bytes). Loading maps
+ * the file and only keeps records that make a leaderboard, so it stays fast
+ * however many games have been recorded. Appends take an exclusive lock on
+ * the file, so several game instances can share one store; each query first
+ * reads any records other instances have appended since. File locks are
+ * held by the whole process, so stores on the same file within one process
+ * also share an in-process lock for that file.
+ *
+ * Scores imported from the old text file, which did not record the board
+ * size, are filed under <code>UNKNOWN_SIZE</code>.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class HighScoreStore {
+
+	public static final int RECORD_BYTES = 16;
+	public static final int DEFAULT_KEEP = 100;
+
+	//size filed for scores whose board size was not recorded
+	public static final int UNKNOWN_SIZE = 0;
+
+	private static final int MAGIC = 0x474F4853; //GOHS
+	private static final int HEADER_BYTES = 8;
+	private static final long MAX_MAPPING = (Integer.MAX_VALUE / RECORD_BYTES) * (long) RECORD_BYTES;
+
+	//one lock per score file, taken before the file lock
+	private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+	private Path file;
+	private ReentrantLock lock;
+	private int keep;
+	private long loaded = HEADER_BYTES;
+	private long sequence = 0;
+	private Map<Integer, TreeSet<Entry>> boards = new HashMap<>();
+
+	/**
+	 * Class representing one recorded score.
+	 */
+	public static class Entry {
+
+		private final int size;
+		private final String initials;
+		private final int score;
+		private final long time;
+		private final long order;
+
+		/**
+		 * Constructor for an <code>Entry</code>.
+		 *
+		 * @param size size of the board the game was played on
+		 * @param initials initials of the winning player
+		 * @param score winning score
+		 * @param time time recorded in milliseconds since the epoch
+		 * @param order position of the record in the file
+		 */
+		private Entry(int size, String initials, int score, long time, long order) {
+			this.size = size;
+			this.initials = initials;
+			this.score = score;
+			this.time = time;
+			this.order = order;
+		} //Entry
+
+		/**
+		 * Getter method for <code>size</code>.
+		 *
+		 * @return size of the board the game was played on
+		 */
+		public int getSize() {
+			return size;
+		} //getSize
+
+		/**
+		 * Getter method for <code>initials</code>.
+		 *
+		 * @return initials of the winning player
+		 */
+		public String getInitials() {
+			return initials;
+		} //getInitials
+
+		/**
+		 * Getter method for <code>score</code>.
+		 *
+		 * @return winning score
+		 */
+		public int getScore() {
+			return score;
+		} //getScore
+
+		/**
+		 * Getter method for <code>time</code>.
+		 *
+		 * @return time recorded in milliseconds since the epoch
+		 */
+		public long getTime() {
+			return time;
+		} //getTime
+
+		@Override
+		public String toString() {
+			return initials + " " + score;
+		} //toString
+	} //Entry
+
+	//best score first, then earliest recorded
+	private static final Comparator<Entry> RANKING = Comparator.comparingInt((Entry e) -> -e.score)
+			.thenComparingLong(e -> e.order);
+
+	/**
+	 * Constructor for a <code>HighScoreStore</code> keeping
+	 * <code>DEFAULT_KEEP</code> scores per board size.
+	 *
+	 * @param file path of the binary score file, created if missing
+	 * @throws IOException if the file cannot be read or created
+	 */
+	public HighScoreStore(Path file) throws IOException {
+		this(file, DEFAULT_KEEP);
+	} //HighScoreStore
+
+	/**
+	 * Constructor for a <code>HighScoreStore</code>.
+	 *
+	 * @param file path of the binary score file, created if missing
+	 * @param keep number of scores kept in memory per board size
+	 * @throws IOException if the file cannot be read or created
+	 */
+	public HighScoreStore(Path file, int keep) throws IOException {
+
+		this.file = file;
+		this.keep = keep;
+		lock = LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(), f -> new ReentrantLock());
+		lock.lock();
+
+		try (FileChannel channel = open()) {
+
+			//released when the channel is closed
+			channel.lock();
+
+			if (channel.size() == 0) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+				header.putInt(MAGIC).putInt(RECORD_BYTES).flip();
+				channel.write(header, 0);
+			}
+			else {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+				channel.read(header, 0);
+
+				if (header.getInt(0) != MAGIC) {
+					throw new IOException("Not a high score file: " + file);
+				}
+			}
+
+			readNew(channel);
+		} finally {
+			lock.unlock();
+		}
+	} //HighScoreStore
+
+	/**
+	 * Appends a score to the file and adds it to the leaderboard of its
+	 * board size.
+	 *
+	 * @param size size of the board the game was played on
+	 * @param initials initials of the winning player, cut or padded to three letters
+	 * @param score winning score
+	 * @throws IOException if the score cannot be written
+	 */
+	public synchronized void record(int size, String initials, int score) throws IOException {
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+		encode(record, size, initials, score);
+		record.flip();
+
+		append(record);
+	} //record
+
+	/**
+	 * Writes one record to a buffer.
+	 *
+	 * @param buffer buffer with room for the record
+	 * @param size size of the board the game was played on
+	 * @param initials initials of the winning player, cut or padded to three letters
+	 * @param score winning score
+	 */
+	private static void encode(ByteBuffer buffer, int size, String initials, int score) {
+
+		byte[] letters = (initials + "   ").substring(0, 3).getBytes(StandardCharsets.US_ASCII);
+		buffer.put((byte) size).put(letters).putInt(score).putLong(System.currentTimeMillis());
+	} //encode
+
+	/**
+	 * Appends whole records to the file under one lock and adds them to the
+	 * leaderboards.
+	 *
+	 * @param records buffer of records, ready to be read
+	 * @throws IOException if the records cannot be written
+	 */
+	private synchronized void append(ByteBuffer records) throws IOException {
+
+		lock.lock();
+
+		try (FileChannel channel = open()) {
+
+			//released when the channel is closed
+			channel.lock();
+			readNew(channel);
+
+			long end = channel.size();
+			while (records.hasRemaining()) {
+				end += channel.write(records, end);
+			}
+
+			readNew(channel);
+		} finally {
+			lock.unlock();
+		}
+	} //append
+
+	/**
+	 * Gets the best scores recorded for a board size, including any appended
+	 * by other game instances.
+	 *
+	 * @param size size of the board
+	 * @param count maximum number of scores to return
+	 * @return list of scores, best first
+	 * @throws IOException if the file cannot be read
+	 */
+	public synchronized List<Entry> top(int size, int count) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			readNew(channel);
+		}
+
+		List<Entry> best = new ArrayList<>(count);
+		TreeSet<Entry> board = boards.get(size);
+
+		if (board != null) {
+			for (Entry entry : board) {
+				if (best.size() == count) {
+					break;
+				}
+				best.add(entry);
+			}
+		}
+
+		return best;
+	} //top
+
+	/**
+	 * Reads every whole record past the last one loaded.
+	 *
+	 * @param channel open channel to the score file
+	 * @throws IOException if the file cannot be read
+	 */
+	private void readNew(FileChannel channel) throws IOException {
+
+		long end = channel.size();
+		end -= (end - HEADER_BYTES) % RECORD_BYTES;
+
+		while (loaded < end) {
+
+			long length = Math.min(end - loaded, MAX_MAPPING);
+			readRecords(channel.map(FileChannel.MapMode.READ_ONLY, loaded, length));
+			loaded += length;
+		}
+	} //readNew
+
+	/**
+	 * Adds the records of one mapped section of the file to the leaderboards.
+	 *
+	 * @param buffer mapping of whole records
+	 */
+	private void readRecords(MappedByteBuffer buffer) {
+
+		byte[] letters = new byte[3];
+
+		while (buffer.remaining() >= RECORD_BYTES) {
+
+			int size = buffer.get() & 0xFF;
+			int start = buffer.position();
+			int score = buffer.getInt(start + 3);
+			TreeSet<Entry> board = boards.computeIfAbsent(size, s -> new TreeSet<>(RANKING));
+
+			//most records cannot make the board, so skip them before decoding
+			if (board.size() < keep || score > board.last().score) {
+				buffer.get(letters);
+				buffer.getInt();
+				long time = buffer.getLong();
+				insert(board, new Entry(size, new String(letters, StandardCharsets.US_ASCII).trim(), score, time, sequence));
+			}
+			else {
+				buffer.position(start + RECORD_BYTES - 1);
+			}
+
+			sequence++;
+		}
+	} //readRecords
+
+	/**
+	 * Adds an entry to a leaderboard, dropping the worst entry if it is full.
+	 *
+	 * @param board leaderboard of one board size
+	 * @param entry entry to add
+	 */
+	private void insert(TreeSet<Entry> board, Entry entry) {
+
+		board.add(entry);
+
+		if (board.size() > keep) {
+			board.pollLast();
+		}
+	} //insert
+
+	/**
+	 * Opens the score file for reading and writing.
+	 *
+	 * @return open channel
+	 * @throws IOException if the file cannot be opened
+	 */
+	private FileChannel open() throws IOException {
+		return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	} //open
+
+	/**
+	 * Imports a text file of "initials score" lines written by earlier
+	 * versions. The board size was not recorded then, so the scores are
+	 * filed under <code>UNKNOWN_SIZE</code> rather than any real board size.
+	 * Every line is appended under a single lock.
+	 *
+	 * @param legacy path of the text file
+	 * @throws IOException if either file cannot be read or written
+	 */
+	public void importLegacy(Path legacy) throws IOException {
+
+		List<String> lines = Files.readAllLines(legacy);
+		ByteBuffer records = ByteBuffer.allocate(RECORD_BYTES * lines.size());
+
+		for (String line : lines) {
+
+			String[] parts = line.trim().split("\\s+");
+
+			if (parts.length == 2) {
+				try {
+					int score = Integer.parseInt(parts[1]);
+					encode(records, UNKNOWN_SIZE, parts[0], score);
+				} catch (NumberFormatException e) {
+					//skip malformed lines
+				}
+			}
+		}
+
+		records.flip();
+		append(records);
+	} //importLegacy
+
+} //HighScoreStore
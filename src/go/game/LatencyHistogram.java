@@ -0,0 +1,128 @@
+package go.game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class representing a histogram of durations in nanoseconds. Buckets
+ * double in width every sixteen buckets, so any recorded value is kept to
+ * within about six percent. Recording is a single atomic increment and is
+ * safe from any number of threads.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 16;
+	private static final int SUB_BITS = 4;
+
+	private AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+
+	/**
+	 * Records one duration.
+	 *
+	 * @param nanos duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		counts.incrementAndGet(bucket(Math.max(nanos, 0)));
+	} //record
+
+	/**
+	 * Adds every count of another histogram to this one.
+	 *
+	 * @param other histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+
+		for (int i = 0; i < counts.length(); i++) {
+
+			long count = other.counts.get(i);
+
+			if (count != 0) {
+				counts.addAndGet(i, count);
+			}
+		}
+	} //add
+
+	/**
+	 * Gets the number of recorded durations.
+	 *
+	 * @return total count
+	 */
+	public long getCount() {
+
+		long total = 0;
+
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+
+		return total;
+	} //getCount
+
+	/**
+	 * Gets the duration below which a fraction of the recorded durations fall.
+	 *
+	 * @param fraction fraction between 0 and 1, such as 0.99
+	 * @return upper bound of the matching bucket in nanoseconds, or 0 if empty
+	 */
+	public long percentile(double fraction) {
+
+		long total = getCount();
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long target = (long) Math.ceil(fraction * total);
+		long seen = 0;
+
+		for (int i = 0; i < counts.length(); i++) {
+
+			seen += counts.get(i);
+
+			if (seen >= Math.max(target, 1)) {
+				return upperBound(i);
+			}
+		}
+
+		return upperBound(counts.length() - 1);
+	} //percentile
+
+	/**
+	 * Gets the bucket for a duration. Values below sixteen get a bucket
+	 * each; above that, each power of two is split into sixteen buckets.
+	 *
+	 * @param value duration in nanoseconds
+	 * @return index of the bucket
+	 */
+	private static int bucket(long value) {
+
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		int sub = (int) (value >>> exponent) - SUB_BUCKETS;
+
+		return (exponent + 1) * SUB_BUCKETS + sub;
+	} //bucket
+
+	/**
+	 * Gets the largest duration that falls in a bucket.
+	 *
+	 * @param bucket index of the bucket
+	 * @return upper bound in nanoseconds
+	 */
+	private static long upperBound(int bucket) {
+
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int exponent = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+
+		return ((sub + 1) << exponent) - 1;
+	} //upperBound
+
+} //LatencyHistogram
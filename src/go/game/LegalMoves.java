@@ -0,0 +1,211 @@
+package go.game;
+
+/**
+ * Class that keeps every legal move of a <code>Position</code> for both
+ * colors as <code>BitBoard</code> masks, so listing the legal moves is a
+ * copy of a few row masks rather than a legality check per point.
+ *
+ * The masks hold the points each color may play on without suicide. They
+ * are updated incrementally after every move: whether a vacant point is
+ * playable depends only on its neighbours and on whether the groups next
+ * to it are in atari, so only the points <code>ChangedPoints</code> finds
+ * are checked again.
+ * Simple ko and positional superko depend on the history rather than the
+ * board, so they are applied when the moves are asked for. Without superko
+ * that is a single bit; with it, each candidate costs one lookup in the
+ * history.
+ *
+ * Like the <code>BitBoard</code> it uses, this requires a board no more
+ * than 64 points wide.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class LegalMoves {
+
+	private Position position;
+
+	//points each color may play on without suicide, ignoring ko and superko
+	private BitBoard black, white;
+
+	//points to check again after each move
+	private ChangedPoints changed;
+
+	//scratch space for the moves returned
+	private BitBoard moves;
+	private int[] candidates;
+	private long rechecked = 0;
+
+	/**
+	 * Constructor for the <code>LegalMoves</code> of a position.
+	 *
+	 * @param position position whose moves are kept
+	 */
+	public LegalMoves(Position position) {
+
+		this.position = position;
+
+		int width = position.getWidth();
+		int height = position.getHeight();
+		black = new BitBoard(width, height);
+		white = new BitBoard(width, height);
+		moves = new BitBoard(width, height);
+		candidates = new int[position.getPointCount()];
+		changed = new ChangedPoints(position);
+
+		rebuild();
+	} //LegalMoves
+
+	/**
+	 * Checks every point of the position from scratch.
+	 */
+	public void rebuild() {
+
+		black.clear();
+		white.clear();
+
+		for (int p = 0; p < candidates.length; p++) {
+			check(p);
+		}
+	} //rebuild
+
+	/**
+	 * Copies the masks of another position's moves, which must be of the
+	 * same width and height and hold the same stones as this position.
+	 *
+	 * @param other moves to copy
+	 */
+	public void copyFrom(LegalMoves other) {
+		black.copyFrom(other.black);
+		white.copyFrom(other.white);
+	} //copyFrom
+
+	/**
+	 * Updates the masks after a stone has been played and its captures
+	 * removed, checking only the points whose surroundings changed.
+	 *
+	 * @param p index of the stone played
+	 * @param captured array of the points captured
+	 * @param count number of entries of <code>captured</code> to use
+	 */
+	public void played(int p, int[] captured, int count) {
+		checkAll(changed.played(p, captured, count));
+	} //played
+
+	/**
+	 * Updates the masks after a move has been taken back, checking only the
+	 * points whose surroundings changed.
+	 *
+	 * @param p index of the point emptied
+	 * @param restored array of the stones put back
+	 * @param count number of entries of <code>restored</code> to use
+	 */
+	public void undone(int p, int[] restored, int count) {
+		checkAll(changed.undone(p, restored, count));
+	} //undone
+
+	/**
+	 * Checks the points found by the last update.
+	 *
+	 * @param count number of points found
+	 */
+	private void checkAll(int count) {
+
+		int[] points = changed.getPoints();
+
+		for (int i = 0; i < count; i++) {
+			check(points[i]);
+		}
+	} //checkAll
+
+	/**
+	 * Sets whether each color may play on a point.
+	 *
+	 * @param p index of the point
+	 */
+	private void check(int p) {
+
+		rechecked++;
+
+		if (position.get(p) != Position.VACANT) {
+			black.unset(p);
+			white.unset(p);
+			return;
+		}
+
+		if (position.isPlayable(Position.BLACK, p)) {
+			black.set(p);
+		}
+		else {
+			black.unset(p);
+		}
+
+		if (position.isPlayable(Position.WHITE, p)) {
+			white.set(p);
+		}
+		else {
+			white.unset(p);
+		}
+	} //check
+
+	/**
+	 * Gets every legal move for a color, including simple ko and, if the
+	 * position enforces it, positional superko. The mask returned is reused
+	 * by the next call.
+	 *
+	 * @param color color of the player moving
+	 * @return mask of the legal points
+	 */
+	public BitBoard get(byte color) {
+
+		moves.copyFrom((color == Position.BLACK) ? black : white);
+
+		int ko = position.getKoPoint();
+
+		if (ko >= 0 && color == position.getToMove()) {
+			moves.unset(ko);
+		}
+
+		if (position.isSuperko()) {
+
+			int count = moves.toPoints(candidates);
+
+			for (int i = 0; i < count; i++) {
+				if (position.repeats(color, candidates[i])) {
+					moves.unset(candidates[i]);
+				}
+			}
+		}
+
+		return moves;
+	} //get
+
+	/**
+	 * Checks whether a color may play on a point. Agrees with
+	 * <code>Position.isLegal</code>.
+	 *
+	 * @param color color of the player moving
+	 * @param p index of the point
+	 * @return boolean value for validity
+	 */
+	public boolean isLegal(byte color, int p) {
+
+		if (!((color == Position.BLACK) ? black : white).get(p)) {
+			return false;
+		}
+		if (p == position.getKoPoint() && color == position.getToMove()) {
+			return false;
+		}
+
+		return !(position.isSuperko() && position.repeats(color, p));
+	} //isLegal
+
+	/**
+	 * Getter method for <code>rechecked</code>.
+	 *
+	 * @return number of points checked since the moves were created
+	 */
+	public long getRechecked() {
+		return rechecked;
+	} //getRechecked
+
+} //LegalMoves
@@ -0,0 +1,308 @@
+package go.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command line load generator for <code>GameServer</code>. Starts a server
+ * on a loopback port, unless one is given, and connects two clients per
+ * game. Each client waits for its turn and plays random points, with an
+ * occasional pass, until the game ends. Moves per second and the latency
+ * percentiles of <code>PLAY</code> and <code>PASS</code> round trips are
+ * printed at the end along with the host's metrics.
+ *
+ * Each game may also have spectators that <code>WATCH</code> it and rebuild
+ * it from its frames. Their frame and byte counts are reported, and a
+ * spectator whose rebuilt score does not match the result it was sent is
+ * counted as a mismatch.
+ *
+ * Usage: <code>java go.game.LoadGenerator [games] [size] [spectators per game] [host:port]</code>
+ *
+ * @author Benjamin C. McKinley
+ */
+public class LoadGenerator {
+
+	private int games;
+	private int size;
+	private int spectators;
+	private LatencyHistogram latency = new LatencyHistogram();
+	private AtomicLong moves = new AtomicLong();
+	private AtomicLong rejected = new AtomicLong();
+	private AtomicLong failed = new AtomicLong();
+	private AtomicLong frames = new AtomicLong();
+	private AtomicLong frameBytes = new AtomicLong();
+	private AtomicLong mismatched = new AtomicLong();
+
+	/**
+	 * Constructor for a <code>LoadGenerator</code>.
+	 *
+	 * @param games number of games to play at once
+	 * @param size size of row and col for board
+	 * @param spectators number of spectators watching each game
+	 */
+	public LoadGenerator(int games, int size, int spectators) {
+		this.games = games;
+		this.size = size;
+		this.spectators = spectators;
+	} //LoadGenerator
+
+	/**
+	 * Class representing one client connection.
+	 */
+	private static class Client implements AutoCloseable {
+
+		private Socket socket;
+		private BufferedReader in;
+		private OutputStream out;
+
+		/**
+		 * Constructor for a <code>Client</code> connected to a server.
+		 *
+		 * @param address host name of the server
+		 * @param port port of the server
+		 * @throws IOException if the connection fails
+		 */
+		private Client(String address, int port) throws IOException {
+			socket = new Socket(address, port);
+			socket.setTcpNoDelay(true);
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			out = socket.getOutputStream();
+		} //Client
+
+		/**
+		 * Sends a command and reads the reply.
+		 *
+		 * @param command command line to send
+		 * @return reply line
+		 * @throws IOException if the connection fails
+		 */
+		private String send(String command) throws IOException {
+
+			out.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+
+			String reply = in.readLine();
+
+			if (reply == null) {
+				throw new IOException("Connection closed");
+			}
+
+			return reply;
+		} //send
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		} //close
+	} //Client
+
+	/**
+	 * Plays every game at once against a server and waits for them to end.
+	 *
+	 * @param address host name of the server
+	 * @param port port of the server
+	 * @throws IOException if a client cannot connect
+	 * @throws InterruptedException if interrupted while waiting for games
+	 */
+	public void run(String address, int port) throws IOException, InterruptedException {
+
+		CountDownLatch done = new CountDownLatch((2 + spectators) * games);
+		List<Client> clients = new ArrayList<>();
+		List<Socket> watchers = new ArrayList<>();
+
+		for (int i = 0; i < games; i++) {
+
+			Client black = new Client(address, port);
+			Client white = new Client(address, port);
+			clients.add(black);
+			clients.add(white);
+
+			String id = black.send("NEW " + size).split(" ")[1];
+			white.send("JOIN " + id);
+
+			for (int j = 0; j < spectators; j++) {
+
+				Socket watcher = new Socket(address, port);
+				watchers.add(watcher);
+
+				DataInputStream in = new DataInputStream(new BufferedInputStream(watcher.getInputStream()));
+				OutputStream out = watcher.getOutputStream();
+
+				out.write(("WATCH " + id + "\n").getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+
+				StringBuilder reply = new StringBuilder();
+
+				for (byte b = in.readByte(); b != '\n'; b = in.readByte()) {
+					reply.append((char) b);
+				}
+
+				if (!reply.toString().startsWith("OK")) {
+					throw new IOException("Cannot watch game " + id + ": " + reply);
+				}
+
+				GameThreads.start("go-load-spectator", () -> watch(in, done));
+			}
+
+			long seed = i;
+			GameThreads.start("go-load-black", () -> play(black, new SplittableRandom(seed), done));
+			GameThreads.start("go-load-white", () -> play(white, new SplittableRandom(~seed), done));
+		}
+
+		done.await();
+
+		for (Client client : clients) {
+			client.close();
+		}
+		for (Socket watcher : watchers) {
+			watcher.close();
+		}
+	} //run
+
+	/**
+	 * Loop run by each spectator: rebuilds a watched game from its frames
+	 * until it ends. The spectator is watching before its game starts, so
+	 * it cannot miss a game that ends quickly.
+	 *
+	 * @param in frames of the watched game
+	 * @param done latch counted down when the spectator finishes
+	 */
+	private void watch(DataInputStream in, CountDownLatch done) {
+
+		try {
+			SpectatorChannel.Mirror mirror = new SpectatorChannel.Mirror();
+
+			while (mirror.getResult() == null) {
+
+				int length = in.readUnsignedShort();
+				ByteBuffer frame = ByteBuffer.allocate(length);
+				frame.putShort((short) length);
+				in.readFully(frame.array(), 2, length - 2);
+				frame.rewind();
+
+				mirror.apply(frame);
+				frames.incrementAndGet();
+				frameBytes.addAndGet(length);
+			}
+
+			double margin = mirror.getBlackArea() - mirror.getWhiteArea();
+			String rebuilt = (margin == 0) ? "0" : (margin > 0 ? "B+" : "W+") + Math.abs(margin);
+
+			if (!rebuilt.equals(mirror.getResult())) {
+				mismatched.incrementAndGet();
+			}
+		} catch (IOException | IllegalStateException e) {
+			failed.incrementAndGet();
+		} finally {
+			done.countDown();
+		}
+	} //watch
+
+	/**
+	 * Loop run by each client: waits for its turn and plays random moves
+	 * until the game is over.
+	 *
+	 * @param client connection to play through
+	 * @param random source of random moves
+	 * @param done latch counted down when the client finishes
+	 */
+	private void play(Client client, SplittableRandom random, CountDownLatch done) {
+
+		try {
+			while (client.send("WAIT").equals("TURN")) {
+
+				String reply;
+
+				do {
+					String command = (random.nextInt(50) == 0) ? "PASS"
+							: "PLAY " + random.nextInt(size) + " " + random.nextInt(size);
+
+					long start = System.nanoTime();
+					reply = client.send(command);
+					latency.record(System.nanoTime() - start);
+
+					if (reply.startsWith("ERR")) {
+						rejected.incrementAndGet();
+					}
+				} while (reply.startsWith("ERR"));
+
+				if (reply.startsWith("OK")) {
+					moves.incrementAndGet();
+				}
+			}
+		} catch (IOException e) {
+			failed.incrementAndGet();
+		} finally {
+			done.countDown();
+		}
+	} //play
+
+	/**
+	 * Runs the load generator.
+	 *
+	 * @param args optional number of games, board size and server address
+	 * @throws IOException if the server or a client cannot start
+	 * @throws InterruptedException if interrupted while waiting for games
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+		int size = (args.length > 1) ? Integer.parseInt(args[1]) : 9;
+		int spectators = (args.length > 2) ? Integer.parseInt(args[2]) : 0;
+
+		GameHost host = null;
+		GameServer server = null;
+		String address = "127.0.0.1";
+		int port;
+
+		if (args.length > 3) {
+			address = args[3].substring(0, args[3].lastIndexOf(':'));
+			port = Integer.parseInt(args[3].substring(args[3].lastIndexOf(':') + 1));
+		}
+		else {
+			host = new GameHost();
+			server = new GameServer(host, 0);
+			server.start();
+			port = server.getPort();
+		}
+
+		LoadGenerator load = new LoadGenerator(games, size, spectators);
+		long start = System.nanoTime();
+
+		load.run(address, port);
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d games, %d connections, %.2fs%n", games, 2 * games, seconds);
+		System.out.printf("moves %d (%.0f/s), rejected %d, failed clients %d%n",
+				load.moves.get(), load.moves.get() / seconds, load.rejected.get(), load.failed.get());
+		System.out.printf("round trip p50 %.1fus p90 %.1fus p99 %.1fus p99.9 %.1fus%n",
+				load.latency.percentile(0.5) / 1e3, load.latency.percentile(0.9) / 1e3,
+				load.latency.percentile(0.99) / 1e3, load.latency.percentile(0.999) / 1e3);
+
+		if (spectators > 0) {
+			System.out.printf("spectators %d, frames %d (%.0f/s), %.1f bytes/frame, mismatched %d%n",
+					games * spectators, load.frames.get(), load.frames.get() / seconds,
+					(double) load.frameBytes.get() / Math.max(load.frames.get(), 1), load.mismatched.get());
+		}
+
+		if (host != null) {
+			System.out.print(host.report());
+			System.out.print(Metrics.dump());
+			server.close();
+		}
+	} //main
+
+} //LoadGenerator
@@ -0,0 +1,225 @@
+package go.game;
+
+import java.util.Arrays;
+
+/**
+ * Class representing a set of <code>long</code> values stored in a single
+ * open-addressed array. Used to remember the hashes of previous positions
+ * without boxing or allocating on each insert.
+ *
+ * The value 0 is stored in a separate flag since it marks empty slots.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class LongHashSet {
+
+	private long[] table;
+	private int count = 0;
+	private boolean hasZero = false;
+
+	/**
+	 * Constructor for an empty <code>LongHashSet</code>.
+	 *
+	 * @param expected number of values expected to be added
+	 */
+	public LongHashSet(int expected) {
+
+		int capacity = 16;
+
+		while (capacity < expected * 2) {
+			capacity <<= 1;
+		}
+
+		table = new long[capacity];
+	} //LongHashSet
+
+	/**
+	 * Adds a value to the set.
+	 *
+	 * @param value value to add
+	 * @return boolean value whether the value was not already present
+	 */
+	public boolean add(long value) {
+
+		if (value == 0) {
+			boolean added = !hasZero;
+			hasZero = true;
+			return added;
+		}
+
+		int mask = table.length - 1;
+		int i = slot(value) & mask;
+
+		while (table[i] != 0) {
+			if (table[i] == value) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+
+		table[i] = value;
+		count++;
+
+		if (count * 2 > table.length) {
+			grow();
+		}
+
+		return true;
+	} //add
+
+	/**
+	 * Checks whether a value is in the set.
+	 *
+	 * @param value value to find
+	 * @return boolean value whether the value is present
+	 */
+	public boolean contains(long value) {
+
+		if (value == 0) {
+			return hasZero;
+		}
+
+		int mask = table.length - 1;
+		int i = slot(value) & mask;
+
+		while (table[i] != 0) {
+			if (table[i] == value) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+
+		return false;
+	} //contains
+
+	/**
+	 * Removes a value from the set. Values after it in the same run of
+	 * occupied slots are shifted back, so no tombstones are left behind.
+	 *
+	 * @param value value to remove
+	 * @return boolean value whether the value was present
+	 */
+	public boolean remove(long value) {
+
+		if (value == 0) {
+			boolean removed = hasZero;
+			hasZero = false;
+			return removed;
+		}
+
+		int mask = table.length - 1;
+		int i = slot(value) & mask;
+
+		while (table[i] != value) {
+			if (table[i] == 0) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+
+		int j = i;
+
+		while (true) {
+
+			j = (j + 1) & mask;
+
+			if (table[j] == 0) {
+				break;
+			}
+
+			int home = slot(table[j]) & mask;
+
+			//move the value back unless its home slot lies between the hole and j
+			boolean stays = (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+
+			if (!stays) {
+				table[i] = table[j];
+				i = j;
+			}
+		}
+
+		table[i] = 0;
+		count--;
+
+		return true;
+	} //remove
+
+	/**
+	 * Removes every value from the set.
+	 */
+	public void clear() {
+		Arrays.fill(table, 0);
+		count = 0;
+		hasZero = false;
+	} //clear
+
+	/**
+	 * Replaces the contents of this set with a copy of another set.
+	 *
+	 * @param other set to copy
+	 */
+	public void copyFrom(LongHashSet other) {
+
+		if (table.length != other.table.length) {
+			table = new long[other.table.length];
+		}
+
+		System.arraycopy(other.table, 0, table, 0, table.length);
+		count = other.count;
+		hasZero = other.hasZero;
+	} //copyFrom
+
+	/**
+	 * Gets the number of values in the set.
+	 *
+	 * @return number of values
+	 */
+	public int size() {
+		return count + (hasZero ? 1 : 0);
+	} //size
+
+	/**
+	 * Gets the number of slots in the table.
+	 *
+	 * @return length of the table
+	 */
+	public int capacity() {
+		return table.length;
+	} //capacity
+
+	/**
+	 * Doubles the table and re-inserts every value.
+	 */
+	private void grow() {
+
+		long[] old = table;
+		table = new long[old.length * 2];
+		int mask = table.length - 1;
+
+		for (long value : old) {
+
+			if (value == 0) {
+				continue;
+			}
+
+			int i = slot(value) & mask;
+
+			while (table[i] != 0) {
+				i = (i + 1) & mask;
+			}
+
+			table[i] = value;
+		}
+	} //grow
+
+	/**
+	 * Spreads the bits of a value into a starting slot.
+	 *
+	 * @param value value to place
+	 * @return unmasked slot
+	 */
+	private static int slot(long value) {
+		return (int) (value ^ (value >>> 32));
+	} //slot
+
+} //LongHashSet
@@ -0,0 +1,349 @@
+package go.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Class holding the process-wide metrics of the rules engine and the views:
+ * a registry of histograms and the Flight Recorder events that go with
+ * them. Nothing is measured unless the JVM is started with
+ * <code>-Dgo.metrics=true</code>. The flag is read once into a constant, so
+ * with it off every measuring branch is removed by the JIT and the hot
+ * paths cost nothing extra.
+ *
+ * With the flag on, each measurement is recorded into its histogram and
+ * emitted as an event in the <code>Go</code> category, which a recording
+ * started with <code>-XX:StartFlightRecording</code> or <code>jcmd</code>
+ * picks up. Histograms ending in <code>.ns</code> hold durations; the
+ * others hold counts.
+ *
+ * Usage: <code>java go.game.Metrics [host:port]</code> prints the metrics
+ * of a running <code>GameServer</code>.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class Metrics {
+
+	public static final boolean ENABLED = Boolean.getBoolean("go.metrics");
+
+	private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	public static final LatencyHistogram VALIDATE = histogram("move.validate.ns");
+	public static final LatencyHistogram CAPTURED = histogram("move.captured.stones");
+	public static final LatencyHistogram SCORE = histogram("move.score.ns");
+	public static final LatencyHistogram RENDER = histogram("render.pass.ns");
+	public static final LatencyHistogram RENDERED = histogram("render.pass.points");
+	public static final LatencyHistogram GAME_CPU = histogram("game.cpu.ns");
+
+	private Metrics() {
+	} //Metrics
+
+	/**
+	 * Event for one move legality check.
+	 */
+	@Name("go.Validate")
+	@Label("Move Validation")
+	@Category("Go")
+	static class ValidateEvent extends Event {
+
+		@Label("Point")
+		int point;
+
+		@Label("Legal")
+		boolean legal;
+
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	} //ValidateEvent
+
+	/**
+	 * Event for one move made in a game.
+	 */
+	@Name("go.Move")
+	@Label("Move")
+	@Category("Go")
+	static class MoveEvent extends Event {
+
+		@Label("Color")
+		@Description("1 for black, 2 for white")
+		byte color;
+
+		@Label("Point")
+		@Description("Index of the point played, or -1 for a pass")
+		int point;
+
+		@Label("Captured")
+		int captured;
+
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	} //MoveEvent
+
+	/**
+	 * Event for one incremental update of the area score.
+	 */
+	@Name("go.ScoreUpdate")
+	@Label("Score Update")
+	@Category("Go")
+	static class ScoreEvent extends Event {
+
+		@Label("Changed")
+		@Description("Number of stones removed by the move")
+		int changed;
+
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	} //ScoreEvent
+
+	/**
+	 * Event for one pass of the FX thread over changed points.
+	 */
+	@Name("go.Render")
+	@Label("Render Pass")
+	@Category("Go")
+	static class RenderEvent extends Event {
+
+		@Label("Points")
+		int points;
+
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	} //RenderEvent
+
+	/**
+	 * Event for a game loop that has ended.
+	 */
+	@Name("go.Game")
+	@Label("Game")
+	@Category("Go")
+	static class GameEvent extends Event {
+
+		@Label("Moves")
+		int moves;
+
+		@Label("Result")
+		String result;
+
+		@Label("CPU Time")
+		@Description("CPU time of the game thread, or -1 where the JVM cannot measure it")
+		@Timespan(Timespan.NANOSECONDS)
+		long cpuTime;
+	} //GameEvent
+
+	/**
+	 * Gets the histogram with a name, adding it to the registry if there is
+	 * none yet.
+	 *
+	 * @param name name of the histogram, ending in <code>.ns</code> for durations
+	 * @return the histogram
+	 */
+	public static LatencyHistogram histogram(String name) {
+		return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+	} //histogram
+
+	/**
+	 * Records a move legality check.
+	 *
+	 * @param point index of the point checked
+	 * @param legal whether the move was legal
+	 * @param nanos time the check took in nanoseconds
+	 */
+	public static void validated(int point, boolean legal, long nanos) {
+
+		VALIDATE.record(nanos);
+
+		ValidateEvent event = new ValidateEvent();
+
+		if (event.shouldCommit()) {
+			event.point = point;
+			event.legal = legal;
+			event.time = nanos;
+			event.commit();
+		}
+	} //validated
+
+	/**
+	 * Records a move made in a game.
+	 *
+	 * @param color color code of the player who moved
+	 * @param point index of the point played, or -1 for a pass
+	 * @param captured number of stones the move captured
+	 * @param nanos time the player took to move in nanoseconds
+	 */
+	public static void moved(byte color, int point, int captured, long nanos) {
+
+		CAPTURED.record(captured);
+
+		MoveEvent event = new MoveEvent();
+
+		if (event.shouldCommit()) {
+			event.color = color;
+			event.point = point;
+			event.captured = captured;
+			event.time = nanos;
+			event.commit();
+		}
+	} //moved
+
+	/**
+	 * Records an update of the area score.
+	 *
+	 * @param changed number of stones removed by the move
+	 * @param nanos time the update took in nanoseconds
+	 */
+	public static void scored(int changed, long nanos) {
+
+		SCORE.record(nanos);
+
+		ScoreEvent event = new ScoreEvent();
+
+		if (event.shouldCommit()) {
+			event.changed = changed;
+			event.time = nanos;
+			event.commit();
+		}
+	} //scored
+
+	/**
+	 * Records a pass of the FX thread over changed points.
+	 *
+	 * @param points number of points applied
+	 * @param nanos time the pass took in nanoseconds
+	 */
+	public static void rendered(int points, long nanos) {
+
+		RENDER.record(nanos);
+		RENDERED.record(points);
+
+		RenderEvent event = new RenderEvent();
+
+		if (event.shouldCommit()) {
+			event.points = points;
+			event.time = nanos;
+			event.commit();
+		}
+	} //rendered
+
+	/**
+	 * Records a game loop that has ended.
+	 *
+	 * @param moves number of moves in the game
+	 * @param result result of the game
+	 * @param cpuNanos CPU time of the game thread in nanoseconds, or -1 if unknown
+	 */
+	public static void ended(int moves, String result, long cpuNanos) {
+
+		if (cpuNanos >= 0) {
+			GAME_CPU.record(cpuNanos);
+		}
+
+		GameEvent event = new GameEvent();
+
+		if (event.shouldCommit()) {
+			event.moves = moves;
+			event.result = result;
+			event.cpuTime = cpuNanos;
+			event.commit();
+		}
+	} //ended
+
+	/**
+	 * Gets the CPU time used so far by the current thread.
+	 *
+	 * @return CPU time in nanoseconds, or -1 where the JVM cannot measure it,
+	 * as for virtual threads
+	 */
+	public static long threadCpuTime() {
+
+		try {
+			return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+		} catch (UnsupportedOperationException e) {
+			return -1;
+		}
+	} //threadCpuTime
+
+	/**
+	 * Describes every histogram, one per line, in order of name.
+	 *
+	 * @return count and percentiles of each histogram, durations in microseconds
+	 */
+	public static String dump() {
+
+		StringBuilder text = new StringBuilder();
+
+		if (!ENABLED) {
+			text.append("metrics off, start with -Dgo.metrics=true").append(System.lineSeparator());
+		}
+
+		for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+
+			LatencyHistogram histogram = entry.getValue();
+			double scale = entry.getKey().endsWith(".ns") ? 1e3 : 1;
+			String unit = entry.getKey().endsWith(".ns") ? "us" : "";
+
+			text.append(String.format("%s count=%d p50=%.1f%s p90=%.1f%s p99=%.1f%s p99.9=%.1f%s%n",
+					entry.getKey(), histogram.getCount(),
+					histogram.percentile(0.5) / scale, unit, histogram.percentile(0.9) / scale, unit,
+					histogram.percentile(0.99) / scale, unit, histogram.percentile(0.999) / scale, unit));
+		}
+
+		return text.toString();
+	} //dump
+
+	/**
+	 * Prints the host report and metrics of a running server.
+	 *
+	 * @param args optional server address as host:port
+	 * @throws IOException if the server cannot be reached
+	 */
+	public static void main(String[] args) throws IOException {
+
+		String address = "127.0.0.1";
+		int port = GameServer.DEFAULT_PORT;
+
+		if (args.length > 0) {
+			address = args[0].substring(0, args[0].lastIndexOf(':'));
+			port = Integer.parseInt(args[0].substring(args[0].lastIndexOf(':') + 1));
+		}
+
+		try (Socket socket = new Socket(address, port)) {
+
+			OutputStream out = socket.getOutputStream();
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+
+			out.write("METRICS\nQUIT\n".getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+
+			String reply = in.readLine();
+
+			if (reply == null || !reply.startsWith("METRICS ")) {
+				throw new IOException("Unexpected reply: " + reply);
+			}
+
+			for (String line : reply.substring("METRICS ".length()).split(";")) {
+				System.out.println(line);
+			}
+		}
+	} //main
+
+} //Metrics
@@ -0,0 +1,39 @@
+package go.game;
+
+/**
+ * Interface for objects notified after every move of a <code>Game</code>.
+ * Listeners run on the game thread, so they should return quickly.
+ * 
+ * @author Benjamin C. McKinley
+ */
+public interface MoveListener {
+
+	/**
+	 * Called after a player has moved.
+	 * 
+	 * @param game game the move was made in
+	 * @param color color code of the player who moved
+	 * @param point index of the point played, or -1 for a pass
+	 * @param captured number of stones the move captured
+	 * @param nanos time the player took to move in nanoseconds
+	 */
+	void moved(Game game, byte color, int point, int captured, long nanos);
+
+	/**
+	 * Called after the last move has been taken back.
+	 * 
+	 * @param game game the move was taken back in
+	 */
+	default void undone(Game game) {
+	} //undone
+
+	/**
+	 * Called once when the game loop ends, whether the game finished or
+	 * was stopped.
+	 * 
+	 * @param game game that ended
+	 */
+	default void ended(Game game) {
+	} //ended
+
+} //MoveListener
@@ -0,0 +1,83 @@
+package go.game;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Class representing the hand-off of moves from whoever makes them, such
+ * as mouse clicks on the FX thread, to the <code>Player</code> waiting on
+ * the game thread. A waiting player blocks without using the CPU.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class MoveQueue {
+
+	public static final int PASS = -1;
+	public static final int UNDO = -2;
+	public static final int REDO = -3;
+
+	private BlockingQueue<Integer> moves;
+
+	/**
+	 * Constructor for an unbounded <code>MoveQueue</code>.
+	 */
+	public MoveQueue() {
+		moves = new LinkedBlockingQueue<>();
+	} //MoveQueue
+
+	/**
+	 * Constructor for a <code>MoveQueue</code> that holds at most a fixed
+	 * number of moves waiting to be taken, so a client submitting faster
+	 * than the game can play cannot grow it without limit.
+	 *
+	 * @param capacity maximum number of waiting moves
+	 */
+	public MoveQueue(int capacity) {
+		moves = new LinkedBlockingQueue<>(capacity);
+	} //MoveQueue
+
+	/**
+	 * Submits a move to the waiting player.
+	 *
+	 * @param point index of the point to play, or <code>PASS</code>, <code>UNDO</code> or <code>REDO</code>
+	 * @return boolean value whether the move was queued, false if the queue is full
+	 */
+	public boolean submit(int point) {
+		return moves.offer(point);
+	} //submit
+
+	/**
+	 * Waits until a move is submitted and removes it from the queue.
+	 *
+	 * @return index of the submitted point, or <code>PASS</code>, <code>UNDO</code> or <code>REDO</code>
+	 * @throws InterruptedException if the game thread is stopped while waiting
+	 */
+	public int take() throws InterruptedException {
+		return moves.take();
+	} //take
+
+	/**
+	 * Gets the number of moves waiting to be taken.
+	 *
+	 * @return number of waiting moves
+	 */
+	public int size() {
+		return moves.size();
+	} //size
+
+	/**
+	 * Discards any moves that have not been taken yet.
+	 */
+	public void clear() {
+		moves.clear();
+	} //clear
+
+	/**
+	 * Discards any points and passes that have not been taken yet, keeping
+	 * undo and redo requests in the order they were submitted.
+	 */
+	public void clearPoints() {
+		moves.removeIf(point -> point != UNDO && point != REDO);
+	} //clearPoints
+
+} //MoveQueue
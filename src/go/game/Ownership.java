@@ -0,0 +1,312 @@
+package go.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that settles a finished game by estimating who owns each point.
+ * Random games are played to the end from the final position on every
+ * thread of the shared playout pool, each with its own <code>Playout</code>,
+ * and every point is counted for the color holding it when each one ends:
+ * the color of the stone on it, or the color of every neighbour of an
+ * empty point.
+ *
+ * A group whose stones the opponent ends up owning in most playouts is
+ * marked dead. The final score counts each point for the color that owns
+ * it in most playouts, so dead stones go to the side that surrounds them
+ * and dame and seki points to neither, with komi added for white.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class Ownership {
+
+	public static final int DEFAULT_PLAYOUTS = 4000;
+	public static final long DEFAULT_MILLIS = 500;
+
+	private Position position;
+	private double komi = AreaScorer.DEFAULT_KOMI;
+	private SplittableRandom seeds = new SplittableRandom();
+
+	//black's share of the playouts minus white's, from 1 to -1, per point
+	private double[] owner;
+	private boolean[] dead;
+	private int blackPoints, whitePoints;
+	private int deadBlack, deadWhite;
+	private int playouts;
+
+	/**
+	 * Constructor for the <code>Ownership</code> of a position. The
+	 * position is copied, so the copy must be taken on the thread that
+	 * owns it or after that thread has stopped.
+	 *
+	 * @param from final position of the game
+	 */
+	public Ownership(Position from) {
+
+		int width = from.getWidth();
+		int height = from.getHeight();
+
+		//passes forgotten, so a game that ended on two passes is played on
+		position = new Position(width, height);
+		position.setSuperko(false);
+		position.loadFrom(from);
+		position.resetHistory();
+
+		owner = new double[width * height];
+		dead = new boolean[width * height];
+	} //Ownership
+
+	/**
+	 * Estimates ownership from a number of playouts split across every
+	 * core, then marks dead groups and scores the position. Stops at
+	 * whichever budget runs out first.
+	 *
+	 * @param maxPlayouts playout budget
+	 * @param millis time budget in milliseconds
+	 * @throws InterruptedException if the calling thread is interrupted
+	 */
+	public void estimate(int maxPlayouts, long millis) throws InterruptedException {
+
+		int n = owner.length;
+		long deadline = System.nanoTime() + millis * 1_000_000L;
+		AtomicInteger started = new AtomicInteger();
+		List<Future<int[]>> workers = new ArrayList<>();
+
+		ForkJoinPool pool = GameThreads.getPlayoutPool();
+
+		for (int i = 0; i < pool.getParallelism(); i++) {
+			SplittableRandom random = seeds.split();
+			workers.add(pool.submit(() -> work(random, started, maxPlayouts, deadline)));
+		}
+
+		//one count per point of black ownership minus white, then the playouts run
+		int[] total = new int[n + 1];
+
+		try {
+			for (Future<int[]> worker : workers) {
+
+				int[] counts = worker.get();
+
+				for (int p = 0; p <= n; p++) {
+					total[p] += counts[p];
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+
+		playouts = total[n];
+
+		for (int p = 0; p < n; p++) {
+			owner[p] = (playouts == 0) ? 0 : (double) total[p] / playouts;
+		}
+
+		settle();
+	} //estimate
+
+	/**
+	 * Loop run by each worker until the playout or time budget is spent.
+	 *
+	 * @param random source of random numbers for this worker
+	 * @param started playouts started by every worker so far
+	 * @param maxPlayouts playout budget
+	 * @param deadline time to stop, from <code>System.nanoTime</code>
+	 * @return ownership counts per point followed by the number of playouts run
+	 */
+	private int[] work(SplittableRandom random, AtomicInteger started, int maxPlayouts, long deadline) {
+
+		Playout playout = new Playout(position.getWidth(), position.getHeight());
+		Position end = playout.getPosition();
+		int n = owner.length;
+		int[] counts = new int[n + 1];
+
+		while (started.getAndIncrement() < maxPlayouts && System.nanoTime() < deadline) {
+
+			playout.reset(position);
+			playout.run(random, komi);
+
+			for (int p = 0; p < n; p++) {
+
+				byte color = end.get(p);
+
+				if (color == Position.VACANT) {
+					color = playout.surroundingColor(p);
+				}
+
+				if (color == Position.BLACK) {
+					counts[p]++;
+				}
+				else if (color == Position.WHITE) {
+					counts[p]--;
+				}
+			}
+
+			counts[n]++;
+		}
+
+		return counts;
+	} //work
+
+	/**
+	 * Marks every group the opponent owns on average as dead and counts
+	 * each point for its majority owner.
+	 */
+	private void settle() {
+
+		int n = owner.length;
+		boolean[] visited = new boolean[n];
+
+		blackPoints = 0;
+		whitePoints = 0;
+		deadBlack = 0;
+		deadWhite = 0;
+
+		for (int p = 0; p < n; p++) {
+
+			if (owner[p] > 0) {
+				blackPoints++;
+			}
+			else if (owner[p] < 0) {
+				whitePoints++;
+			}
+
+			byte color = position.get(p);
+
+			if (color == Position.VACANT || visited[p]) {
+				continue;
+			}
+
+			//average ownership of the group from its own color's side
+			double sum = 0;
+			int size = 0;
+			int s = p;
+
+			do {
+				visited[s] = true;
+				sum += owner[s];
+				size++;
+				s = position.getNextStone(s);
+			} while (s != p);
+
+			boolean killed = (color == Position.BLACK) ? sum < 0 : sum > 0;
+
+			do {
+				dead[s] = killed;
+				s = position.getNextStone(s);
+			} while (s != p);
+
+			if (killed && color == Position.BLACK) {
+				deadBlack += size;
+			}
+			else if (killed) {
+				deadWhite += size;
+			}
+		}
+	} //settle
+
+	/**
+	 * Gets how strongly each color owns a point.
+	 *
+	 * @param p index of the point
+	 * @return 1 if black owned it in every playout, -1 if white did
+	 */
+	public double getOwner(int p) {
+		return owner[p];
+	} //getOwner
+
+	/**
+	 * Checks whether the stone on a point is dead.
+	 *
+	 * @param p index of the point
+	 * @return boolean value whether a stone there belongs to a dead group
+	 */
+	public boolean isDead(int p) {
+		return dead[p];
+	} //isDead
+
+	/**
+	 * Gets black's area score: the points black owns in most playouts.
+	 *
+	 * @return black area score
+	 */
+	public double getBlackArea() {
+		return blackPoints;
+	} //getBlackArea
+
+	/**
+	 * Gets white's area score: the points white owns in most playouts plus komi.
+	 *
+	 * @return white area score
+	 */
+	public double getWhiteArea() {
+		return whitePoints + komi;
+	} //getWhiteArea
+
+	/**
+	 * Gets the points the winner owns, without komi.
+	 *
+	 * @return winner's area in points
+	 */
+	public int getWinnerPoints() {
+		return (getBlackArea() > getWhiteArea()) ? blackPoints : whitePoints;
+	} //getWinnerPoints
+
+	/**
+	 * Gets the result by settled area score in SGF form.
+	 *
+	 * @return "B+" or "W+" followed by the margin, or "0" for a draw
+	 */
+	public String getResult() {
+
+		double margin = getBlackArea() - getWhiteArea();
+
+		if (margin == 0) {
+			return "0";
+		}
+
+		return (margin > 0 ? "B+" : "W+") + Math.abs(margin);
+	} //getResult
+
+	/**
+	 * Gets the number of dead stones of a color.
+	 *
+	 * @param color color of the stones
+	 * @return number of that color's stones in dead groups
+	 */
+	public int getDeadStones(byte color) {
+		return (color == Position.BLACK) ? deadBlack : deadWhite;
+	} //getDeadStones
+
+	/**
+	 * Getter method for <code>playouts</code>.
+	 *
+	 * @return number of playouts the estimate used
+	 */
+	public int getPlayouts() {
+		return playouts;
+	} //getPlayouts
+
+	/**
+	 * Getter method for <code>position</code>.
+	 *
+	 * @return copy of the stones settled
+	 */
+	public Position getPosition() {
+		return position;
+	} //getPosition
+
+	/**
+	 * Setter method for <code>komi</code>.
+	 *
+	 * @param komi points given to white
+	 */
+	public void setKomi(double komi) {
+		this.komi = komi;
+	} //setKomi
+
+} //Ownership
@@ -0,0 +1,512 @@
+package go.game;
+
+/**
+ * Class that keeps the 3x3 pattern around every vacant point of a
+ * <code>Position</code> as a code in a primitive array, so the prior of a
+ * move is one table lookup rather than a look at its surroundings.
+ *
+ * A code holds the eight neighbours of a point, two bits each, in the
+ * order north, east, south, west, then northeast, southeast, southwest and
+ * northwest, followed by one bit per orthogonal neighbour set when the
+ * group on it is in atari. Codes are kept up to date incrementally. A
+ * stone placed or removed changes two bits in the code of each of its
+ * eight neighbours, and the atari bits are looked at again only on the
+ * points <code>ChangedPoints</code> finds, so a move costs a few bit
+ * operations rather than a look around a dozen points. Neighbour values
+ * are the color codes of <code>Position</code>, so black is the own color
+ * of a stored code. Points holding a stone have no pattern and a code of
+ * -1.
+ *
+ * Codes index a table of weights built once when the class is loaded,
+ * seen from black's side; white's weight is black's for the code with the
+ * colors swapped. A weight near 1 is an ordinary move, higher weights are
+ * urgent or good shape and lower ones are moves a player rarely wants.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class Patterns {
+
+	public static final int NEIGHBOURS = 8;
+	public static final int ATARI_SHIFT = 2 * NEIGHBOURS;
+	public static final int CODES = 1 << (ATARI_SHIFT + 4);
+	public static final int ATARI_MASK = 0xF << ATARI_SHIFT;
+
+	//two bit values of a neighbour
+	public static final int EMPTY = 0, OWN = 1, ENEMY = 2, EDGE = 3;
+
+	//offsets of the neighbours, orthogonal ones first in the order of the atari bits
+	private static final int[] DX = {0, 1, 0, -1, 1, 1, -1, -1};
+	private static final int[] DY = {-1, 0, 1, 0, -1, 1, 1, -1};
+
+	private static final float[] weights = buildWeights();
+	private static final float maxWeight = max(weights);
+
+	private Position position;
+	private int width, height;
+
+	//code of every point, or -1 where there is a stone
+	private int[] codes;
+
+	//neighbours of every point in code order, -1 off the board
+	private int[] around;
+
+	//points whose atari bits may change after each move
+	private ChangedPoints changed;
+	private int refreshed = 0;
+
+	/**
+	 * Constructor for the <code>Patterns</code> of a position.
+	 *
+	 * @param position position whose patterns are kept
+	 */
+	public Patterns(Position position) {
+
+		this.position = position;
+
+		width = position.getWidth();
+		height = position.getHeight();
+		codes = new int[width * height];
+		around = new int[NEIGHBOURS * width * height];
+		changed = new ChangedPoints(position);
+
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				for (int i = 0; i < NEIGHBOURS; i++) {
+
+					int nx = x + DX[i];
+					int ny = y + DY[i];
+					boolean onBoard = nx >= 0 && ny >= 0 && nx < width && ny < height;
+
+					around[NEIGHBOURS * (height * x + y) + i] = onBoard ? height * nx + ny : -1;
+				}
+			}
+		}
+
+		rebuild();
+	} //Patterns
+
+	/**
+	 * Works out the code of every point from scratch.
+	 */
+	public void rebuild() {
+
+		for (int p = 0; p < codes.length; p++) {
+			codes[p] = compute(p);
+		}
+	} //rebuild
+
+	/**
+	 * Copies the codes of another position's patterns, which must be of the
+	 * same width and height and hold the same stones as this position.
+	 *
+	 * @param other patterns to copy
+	 */
+	public void copyFrom(Patterns other) {
+		System.arraycopy(other.codes, 0, codes, 0, codes.length);
+	} //copyFrom
+
+	/**
+	 * Updates the codes after a stone has been played and its captures
+	 * removed.
+	 *
+	 * @param p index of the stone played
+	 * @param captured array of the points captured
+	 * @param count number of entries of <code>captured</code> to use
+	 */
+	public void played(int p, int[] captured, int count) {
+
+		//a captured point's atari bits are set by the refresh, as it is a
+		//liberty of every group in atari beside it
+		for (int i = 0; i < count; i++) {
+			codes[captured[i]] = removed(captured[i]);
+		}
+
+		codes[p] = -1;
+		placed(p);
+		refresh(changed.ataris(p));
+	} //played
+
+	/**
+	 * Updates the codes after a move has been taken back.
+	 *
+	 * @param p index of the point emptied
+	 * @param restored array of the stones put back
+	 * @param count number of entries of <code>restored</code> to use
+	 */
+	public void undone(int p, int[] restored, int count) {
+
+		for (int i = 0; i < count; i++) {
+			codes[restored[i]] = -1;
+		}
+
+		codes[p] = removed(p);
+
+		for (int i = 0; i < count; i++) {
+			placed(restored[i]);
+		}
+
+		refresh(changed.undone(p, restored, count));
+	} //undone
+
+	/**
+	 * Sets the color of a new stone in the codes of its vacant neighbours.
+	 * Each neighbour sees the stone from the opposite direction, whose
+	 * index in code order differs only in its second bit. Setting bits of a
+	 * stone's code leaves it at -1, so stones need no check.
+	 *
+	 * @param s index of the stone
+	 */
+	private void placed(int s) {
+
+		int color = position.get(s);
+
+		for (int i = 0; i < NEIGHBOURS; i++) {
+
+			int q = around[NEIGHBOURS * s + i];
+
+			if (q >= 0) {
+				codes[q] |= color << (2 * (i ^ 2));
+			}
+		}
+	} //placed
+
+	/**
+	 * Clears a point that has been emptied from the codes of its vacant
+	 * neighbours, along with the atari bit of orthogonal ones, and works
+	 * out the point's own neighbour bits on the way.
+	 *
+	 * @param s index of the point
+	 * @return code of the point without its atari bits
+	 */
+	private int removed(int s) {
+
+		int code = 0;
+
+		for (int i = 0; i < NEIGHBOURS; i++) {
+
+			int q = around[NEIGHBOURS * s + i];
+
+			if (q < 0) {
+				code |= EDGE << (2 * i);
+				continue;
+			}
+
+			code |= position.get(q) << (2 * i);
+
+			if (codes[q] >= 0) {
+				int atari = (i < 4) ? 1 << (ATARI_SHIFT + (i ^ 2)) : 0;
+				codes[q] &= ~((3 << (2 * (i ^ 2))) | atari);
+			}
+		}
+
+		return code;
+	} //removed
+
+	/**
+	 * Works out the atari bits again on the vacant points found by the last
+	 * update.
+	 *
+	 * @param count number of points found
+	 */
+	private void refresh(int count) {
+
+		int[] points = changed.getPoints();
+		refreshed = count;
+
+		for (int i = 0; i < count; i++) {
+
+			int q = points[i];
+
+			if (codes[q] >= 0) {
+				codes[q] = (codes[q] & ~ATARI_MASK) | atari(q);
+			}
+		}
+	} //refresh
+
+	/**
+	 * Works out the atari bits of a point.
+	 *
+	 * @param p index of the point
+	 * @return atari bits of the groups on the point's orthogonal neighbours
+	 */
+	private int atari(int p) {
+
+		int bits = 0;
+
+		for (int i = 0; i < 4; i++) {
+
+			int q = around[NEIGHBOURS * p + i];
+
+			if (q >= 0 && position.isInAtari(q)) {
+				bits |= 1 << (ATARI_SHIFT + i);
+			}
+		}
+
+		return bits;
+	} //atari
+
+	/**
+	 * Works out the code of one point from the position, with black as the
+	 * own color.
+	 *
+	 * @param p index of the point
+	 * @return code of the point, or -1 if it holds a stone
+	 */
+	private int compute(int p) {
+
+		if (position.get(p) != Position.VACANT) {
+			return -1;
+		}
+
+		int code = atari(p);
+
+		for (int i = 0; i < NEIGHBOURS; i++) {
+
+			int q = around[NEIGHBOURS * p + i];
+
+			code |= ((q < 0) ? EDGE : position.get(q)) << (2 * i);
+		}
+
+		return code;
+	} //compute
+
+	/**
+	 * Gets the code of a point.
+	 *
+	 * @param p index of the point
+	 * @return code seen from black's side, or -1 if the point holds a stone
+	 */
+	public int getCode(int p) {
+		return codes[p];
+	} //getCode
+
+	/**
+	 * Gets the points whose atari bits were looked at again by the last
+	 * update. With the stones it placed or removed and their neighbours,
+	 * these are the only points whose codes it can have changed.
+	 *
+	 * @return array of the points, valid until the next update
+	 */
+	public int[] getRefreshed() {
+		return changed.getPoints();
+	} //getRefreshed
+
+	/**
+	 * Gets the number of points whose atari bits were looked at again by the
+	 * last update.
+	 *
+	 * @return number of entries of <code>getRefreshed</code> to use
+	 */
+	public int getRefreshedCount() {
+		return refreshed;
+	} //getRefreshedCount
+
+	/**
+	 * Gets one of the eight neighbours of a point.
+	 *
+	 * @param p index of the point
+	 * @param i neighbour in code order
+	 * @return index of the neighbour, or -1 if it is off the board
+	 */
+	public int getNeighbour(int p, int i) {
+		return around[NEIGHBOURS * p + i];
+	} //getNeighbour
+
+	/**
+	 * Gets the weight of a move.
+	 *
+	 * @param color color of the player moving
+	 * @param p index of the point
+	 * @return prior weight of the move, or 0 if the point holds a stone
+	 */
+	public float getWeight(byte color, int p) {
+		return weight(color, codes[p]);
+	} //getWeight
+
+	/**
+	 * Gets the weight of a code for a color.
+	 *
+	 * @param color color of the player moving
+	 * @param code code seen from black's side, or -1 for a stone
+	 * @return prior weight of the move, or 0 for a stone
+	 */
+	public static float weight(byte color, int code) {
+
+		if (code < 0) {
+			return 0;
+		}
+
+		return weights[(color == Position.BLACK) ? code : swapColors(code)];
+	} //weight
+
+	/**
+	 * Gets the weight of a move scaled against the heaviest pattern, for
+	 * showing as a hint.
+	 *
+	 * @param color color of the player moving
+	 * @param p index of the point
+	 * @return weight from 0 to 1
+	 */
+	public float getHint(byte color, int p) {
+		return getWeight(color, p) / maxWeight;
+	} //getHint
+
+	/**
+	 * Swaps own and enemy stones in a code, leaving empty points, edges and
+	 * atari bits alone.
+	 *
+	 * @param code code to swap
+	 * @return code seen from the other color's side
+	 */
+	public static int swapColors(int code) {
+
+		int low = code & ((1 << ATARI_SHIFT) - 1);
+
+		//a neighbour differs between its two bits only when it holds a stone
+		int stones = (low ^ (low >>> 1)) & 0x5555;
+
+		return code ^ (stones | (stones << 1));
+	} //swapColors
+
+	/**
+	 * Builds the table of weights from black's side.
+	 *
+	 * @return weight of every code
+	 */
+	private static float[] buildWeights() {
+
+		float[] table = new float[CODES];
+
+		for (int code = 0; code < CODES; code++) {
+			table[code] = rate(code);
+		}
+
+		return table;
+	} //buildWeights
+
+	/**
+	 * Rates one pattern for the player moving, whose stones are
+	 * <code>OWN</code>. Captures and saving a group in atari come first,
+	 * cuts, connections against a cut and hane are good shape, and filling
+	 * an own eye, playing into self-atari or onto an empty edge are rarely
+	 * wanted.
+	 *
+	 * @param code code of the pattern
+	 * @return weight of the pattern
+	 */
+	private static float rate(int code) {
+
+		int own = 0, enemy = 0, empty = 0, edge = 0;
+		boolean capture = false, save = false;
+
+		for (int i = 0; i < 4; i++) {
+
+			int value = neighbour(code, i);
+			boolean atari = (code & (1 << (ATARI_SHIFT + i))) != 0;
+
+			if (value == OWN) {
+				own++;
+				save |= atari;
+			}
+			else if (value == ENEMY) {
+				enemy++;
+				capture |= atari;
+			}
+			else if (value == EMPTY) {
+				empty++;
+			}
+			else {
+				edge++;
+			}
+		}
+
+		if (capture) {
+			return 40;
+		}
+		if (enemy == 0 && empty == 0) {
+			return save ? 8 : 0.01f;
+		}
+
+		float weight = 1;
+
+		if (save) {
+			weight *= (empty >= 2) ? 20 : 2;
+		}
+		if (empty + own <= 1 && (own == 0 || save)) {
+			weight *= 0.1f;
+		}
+
+		for (int i = 0; i < 4; i++) {
+
+			int a = neighbour(code, i);
+			int b = neighbour(code, (i + 1) % 4);
+			int between = neighbour(code, 4 + i);
+
+			if (a == ENEMY && b == ENEMY && between != ENEMY) {
+				weight *= (between == OWN) ? 4 : 2;
+			}
+			else if (a == OWN && b == OWN && between == ENEMY) {
+				weight *= 4;
+			}
+			else if (a == ENEMY && b == EMPTY && neighbour(code, 4 + (i + 3) % 4) == EMPTY && between == OWN) {
+				weight *= 2;
+			}
+		}
+
+		if (edge > 0 && own == 0 && enemy == 0 && (code & 0xFFFF) == emptyEdge(code)) {
+			weight *= 0.3f;
+		}
+
+		return weight;
+	} //rate
+
+	/**
+	 * Gets the value of one neighbour in a code.
+	 *
+	 * @param code code of the pattern
+	 * @param i neighbour in code order
+	 * @return two bit value of the neighbour
+	 */
+	private static int neighbour(int code, int i) {
+		return (code >>> (2 * i)) & 3;
+	} //neighbour
+
+	/**
+	 * Gets the neighbours of a code with every on-board neighbour emptied,
+	 * which matches the code itself only when every neighbour on the board
+	 * is empty.
+	 *
+	 * @param code code of the pattern
+	 * @return neighbour bits with only the edges kept
+	 */
+	private static int emptyEdge(int code) {
+
+		int edges = 0;
+
+		for (int i = 0; i < NEIGHBOURS; i++) {
+			if (neighbour(code, i) == EDGE) {
+				edges |= EDGE << (2 * i);
+			}
+		}
+
+		return edges;
+	} //emptyEdge
+
+	/**
+	 * Gets the largest entry of a table.
+	 *
+	 * @param table table of weights
+	 * @return largest weight
+	 */
+	private static float max(float[] table) {
+
+		float max = 0;
+
+		for (float w : table) {
+			max = Math.max(max, w);
+		}
+
+		return max;
+	} //max
+
+} //Patterns
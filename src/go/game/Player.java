@@ -13,6 +13,8 @@ public class Player {
 	protected boolean turn;
 	protected Resident selected = Resident.BLACK;
 	protected Board gameBoard;
+	protected Position position;
+	protected MoveQueue moves;
 
 	/**
 	 * Constructor for a <code>Player</code>.
@@ -23,30 +25,146 @@ public class Player {
 	public Player(Board gameBoard, Resident selected) {
 		this.gameBoard = gameBoard;
 		this.selected = selected;
+		this.position = gameBoard.getPosition();
+		this.moves = gameBoard.getMoveQueue();
+	} //Player
+
+	/**
+	 * Constructor for a <code>Player</code> without a <code>Board</code>,
+	 * for games that run headless.
+	 * 
+	 * @param position position the player is using
+	 * @param moves queue the player's moves are delivered to
+	 * @param selected color of player's pieces
+	 */
+	public Player(Position position, MoveQueue moves, Resident selected) {
+		this.selected = selected;
+		this.position = position;
+		this.moves = moves;
 	} //Player
 
 	/**
 	 * Method waits until the player clicks a valid spot for a piece to be placed and
-	 * then places piece on the <code>gameBoard</code>.
+	 * then places piece on the <code>gameBoard</code>. Blocks on the <code>MoveQueue</code>
+	 * while waiting, so an idle player uses no CPU. A pass is always accepted, and an
+	 * undo or redo request takes the place of the move when there is a move to undo
+	 * or redo.
+	 * 
+	 * @throws InterruptedException if the game is stopped while waiting for a click
 	 */
-	public void move() {
+	public void move() throws InterruptedException {
 		turn = true;
 		while (turn) {
-			while (gameBoard.getLastX() == -1) {
-				System.out.print("");
-			}
+			int point = moves.take();
 
-			if (gameBoard.checkValidMove(selected, gameBoard.getLastX(), gameBoard.getLastY())) {
-
-				gameBoard.placePiece(selected, gameBoard.getLastX(), gameBoard.getLastY());
-				gameBoard.resetLastMove();
+			if (point == MoveQueue.PASS) {
+				pass();
+				turn = false;
+			}
+			else if (point == MoveQueue.UNDO && position.canUndo()) {
+				undo();
+				turn = false;
+			}
+			else if (point == MoveQueue.REDO && position.canRedo()) {
+				redo();
 				turn = false;
 			}
+			else if (point >= 0 && point < position.getPointCount() && isLegal(point)) {
 
-			gameBoard.resetLastMove();
+				place(point);
+				turn = false;
+			}
+			else {
+				rejected(point);
+			}
 		}
 	} //move
 
+	/**
+	 * Checks whether the selected color may play on a point, timing the
+	 * check when <code>Metrics</code> are on.
+	 * 
+	 * @param point index of the point to check
+	 * @return boolean value for validity
+	 */
+	private boolean isLegal(int point) {
+
+		if (!Metrics.ENABLED) {
+			return position.isLegal(Position.code(selected), point);
+		}
+
+		long start = System.nanoTime();
+		boolean legal = position.isLegal(Position.code(selected), point);
+		Metrics.validated(point, legal, System.nanoTime() - start);
+
+		return legal;
+	} //isLegal
+
+	/**
+	 * Called when a submitted move is not legal, or is an undo or redo with
+	 * nothing to undo or redo, before waiting for the next one.
+	 * 
+	 * @param point index of the rejected point, or the rejected request
+	 */
+	protected void rejected(int point) {
+	} //rejected
+
+	/**
+	 * Places a piece of the player's color, through the <code>Board</code>
+	 * when there is one so the view is updated.
+	 * 
+	 * @param point index of the point to play
+	 */
+	protected void place(int point) {
+
+		if (gameBoard != null) {
+			gameBoard.placePiece(selected, position.getX(point), position.getY(point));
+		}
+		else {
+			position.play(Position.code(selected), point);
+		}
+	} //place
+
+	/**
+	 * Passes the player's turn.
+	 */
+	protected void pass() {
+
+		if (gameBoard != null) {
+			gameBoard.pass(selected);
+		}
+		else {
+			position.pass(Position.code(selected));
+		}
+	} //pass
+
+	/**
+	 * Takes back the last move, through the <code>Board</code> when there is one.
+	 */
+	protected void undo() {
+
+		if (gameBoard != null) {
+			gameBoard.undo();
+		}
+		else {
+			position.undo();
+		}
+	} //undo
+
+	/**
+	 * Plays the last undone move again, through the <code>Board</code> when
+	 * there is one.
+	 */
+	protected void redo() {
+
+		if (gameBoard != null) {
+			gameBoard.redo();
+		}
+		else {
+			position.redo();
+		}
+	} //redo
+
 	/**
 	 * Getter method for color of player's stones.
 	 * 
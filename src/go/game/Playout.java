@@ -0,0 +1,353 @@
+package go.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Class that plays random games to the end from a copy of a
+ * <code>Position</code>. Moves are chosen uniformly from the legal points
+ * that do not fill one of the mover's own eyes, and the finished board is
+ * scored by area. One <code>Playout</code> is reused for many games, so
+ * nothing is allocated per playout.
+ *
+ * With patterns on, each move first looks at the vacant points around the
+ * previous one and picks among them by their 3x3 <code>Patterns</code>
+ * weights, so captures, escapes and good shape near the last move are
+ * played far more often than a uniform choice would. The local choice is
+ * skipped in favour of a uniform one with a chance that shrinks as the
+ * local weights grow.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class Playout {
+
+	//weight of a uniform choice against the local pattern weights
+	private static final float UNIFORM_WEIGHT = 4;
+
+	private Position position;
+	private int width, height;
+	private int maxMoves;
+
+	private Patterns patterns;
+	private int[] local = new int[Patterns.NEIGHBOURS];
+	private float[] localWeight = new float[Patterns.NEIGHBOURS];
+
+	//vacant points, with the index of each point in the list
+	private int[] empty;
+	private int[] where;
+	private int emptyCount = 0;
+
+	/**
+	 * Constructor for a <code>Playout</code> on boards of a given size.
+	 *
+	 * @param size size of row and col for board
+	 */
+	public Playout(int size) {
+		this(size, size);
+	} //Playout
+
+	/**
+	 * Constructor for a <code>Playout</code> on rectangular boards.
+	 *
+	 * @param width number of points in the x direction
+	 * @param height number of points in the y direction
+	 */
+	public Playout(int width, int height) {
+
+		this.width = width;
+		this.height = height;
+
+		position = new Position(width, height);
+		position.setSuperko(false);
+		maxMoves = 3 * width * height;
+
+		empty = new int[width * height];
+		where = new int[width * height];
+	} //Playout
+
+	/**
+	 * Copies a position to start the next playout from.
+	 *
+	 * @param from position to copy
+	 */
+	public void reset(Position from) {
+
+		position.loadFrom(from);
+		emptyCount = 0;
+
+		for (int p = 0; p < width * height; p++) {
+			if (position.get(p) == Position.VACANT) {
+				where[p] = emptyCount;
+				empty[emptyCount++] = p;
+			}
+		}
+	} //reset
+
+	/**
+	 * Plays a move and keeps the list of vacant points up to date.
+	 *
+	 * @param color color of piece to place
+	 * @param p index of point to play, or -1 to pass
+	 */
+	public void play(byte color, int p) {
+
+		if (p < 0) {
+			position.pass(color);
+			return;
+		}
+
+		position.play(color, p);
+		removeEmpty(p);
+
+		int[] captured = position.getCaptured();
+
+		for (int i = 0; i < position.getCapturedCount(); i++) {
+			where[captured[i]] = emptyCount;
+			empty[emptyCount++] = captured[i];
+		}
+	} //play
+
+	/**
+	 * Picks a random legal move that does not fill an eye of the mover.
+	 * Points that are rejected are moved out of the way so each one is
+	 * tried at most once.
+	 *
+	 * @param color color of the player to move
+	 * @param random source of random numbers
+	 * @return index of the point chosen, or -1 to pass
+	 */
+	public int selectMove(byte color, SplittableRandom random) {
+
+		if (patterns != null) {
+
+			int p = selectLocal(color, random);
+
+			if (p >= 0) {
+				return p;
+			}
+		}
+
+		int remaining = emptyCount;
+
+		while (remaining > 0) {
+
+			int i = random.nextInt(remaining);
+			int p = empty[i];
+
+			if (position.isLegal(color, p) && !isEye(color, p)) {
+				return p;
+			}
+
+			remaining--;
+			swap(i, remaining);
+		}
+
+		return -1;
+	} //selectMove
+
+	/**
+	 * Picks a vacant point next to the previous move by its pattern weight.
+	 * Only the point picked is checked for legality; if it is illegal or an
+	 * eye of the mover, the caller falls back to a uniform choice.
+	 *
+	 * @param color color of the player to move
+	 * @param random source of random numbers
+	 * @return index of the point chosen, or -1 for none
+	 */
+	private int selectLocal(byte color, SplittableRandom random) {
+
+		int last = position.getLastMove();
+
+		if (last < 0) {
+			return -1;
+		}
+
+		int count = 0;
+		float total = 0;
+
+		for (int i = 0; i < Patterns.NEIGHBOURS; i++) {
+
+			int q = patterns.getNeighbour(last, i);
+
+			if (q >= 0) {
+
+				float weight = patterns.getWeight(color, q);
+
+				if (weight > 0) {
+					total += weight;
+					local[count] = q;
+					localWeight[count++] = total;
+				}
+			}
+		}
+
+		float r = random.nextFloat() * (total + UNIFORM_WEIGHT);
+
+		for (int i = 0; i < count; i++) {
+			if (r < localWeight[i]) {
+				int p = local[i];
+				return (position.isLegal(color, p) && !isEye(color, p)) ? p : -1;
+			}
+		}
+
+		return -1;
+	} //selectLocal
+
+	/**
+	 * Plays random moves until both players pass or the move limit is
+	 * reached.
+	 *
+	 * @param random source of random numbers
+	 * @param komi points given to white
+	 * @return black's area score minus white's
+	 */
+	public double run(SplittableRandom random, double komi) {
+
+		byte color = position.getToMove();
+
+		for (int moves = 0; moves < maxMoves && position.getPasses() < 2; moves++) {
+			play(color, selectMove(color, random));
+			color = Position.opponent(color);
+		}
+
+		return score(komi);
+	} //run
+
+	/**
+	 * Scores a finished playout by area. Every vacant point left at the end
+	 * of a playout is an eye or a shared point, so a point counts for a
+	 * color when all its neighbours are that color.
+	 *
+	 * @param komi points given to white
+	 * @return black's area score minus white's
+	 */
+	public double score(double komi) {
+
+		int black = position.getBlackScore();
+		int white = position.getWhiteScore();
+
+		for (int i = 0; i < emptyCount; i++) {
+
+			byte owner = surroundingColor(empty[i]);
+
+			if (owner == Position.BLACK) {
+				black++;
+			}
+			else if (owner == Position.WHITE) {
+				white++;
+			}
+		}
+
+		return black - white - komi;
+	} //score
+
+	/**
+	 * Gets the color of a vacant point's neighbours when they all match.
+	 *
+	 * @param p index of a vacant point
+	 * @return color of every neighbour, or <code>Position.VACANT</code> if mixed
+	 */
+	public byte surroundingColor(int p) {
+
+		byte color = Position.VACANT;
+
+		for (int i = 0; i < 4; i++) {
+
+			int q = position.getAdjacent(p, i);
+
+			if (q < 0) {
+				continue;
+			}
+
+			byte c = position.get(q);
+
+			if (c == Position.VACANT || (color != Position.VACANT && c != color)) {
+				return Position.VACANT;
+			}
+
+			color = c;
+		}
+
+		return color;
+	} //surroundingColor
+
+	/**
+	 * Checks whether a vacant point is an eye of a color: every neighbour is
+	 * that color, and the opponent holds no more than one diagonal in the
+	 * middle of the board or none on the edge.
+	 *
+	 * @param color color of the eye's owner
+	 * @param p index of a vacant point
+	 * @return boolean value whether the point is an eye
+	 */
+	public boolean isEye(byte color, int p) {
+
+		if (surroundingColor(p) != color) {
+			return false;
+		}
+
+		int x = position.getX(p);
+		int y = position.getY(p);
+		int enemies = 0;
+		int offBoard = 0;
+
+		for (int dx = -1; dx <= 1; dx += 2) {
+			for (int dy = -1; dy <= 1; dy += 2) {
+
+				if (x + dx < 0 || y + dy < 0 || x + dx >= width || y + dy >= height) {
+					offBoard++;
+				}
+				else if (position.get(x + dx, y + dy) == Position.opponent(color)) {
+					enemies++;
+				}
+			}
+		}
+
+		return enemies + (offBoard > 0 ? 1 : 0) < 2;
+	} //isEye
+
+	/**
+	 * Sets whether moves are picked by their 3x3 patterns around the
+	 * previous move before falling back to a uniform choice.
+	 *
+	 * @param on whether to use patterns
+	 */
+	public void setPatterns(boolean on) {
+		patterns = on ? position.getPatterns() : null;
+	} //setPatterns
+
+	/**
+	 * Removes a point from the vacant list.
+	 *
+	 * @param p index of the point
+	 */
+	private void removeEmpty(int p) {
+		emptyCount--;
+		swap(where[p], emptyCount);
+	} //removeEmpty
+
+	/**
+	 * Swaps two entries of the vacant list.
+	 *
+	 * @param i first index in the list
+	 * @param j second index in the list
+	 */
+	private void swap(int i, int j) {
+
+		int a = empty[i];
+		int b = empty[j];
+		empty[i] = b;
+		empty[j] = a;
+		where[b] = i;
+		where[a] = j;
+	} //swap
+
+	/**
+	 * Getter method for <code>position</code>.
+	 *
+	 * @return scratch position being played out
+	 */
+	public Position getPosition() {
+		return position;
+	} //getPosition
+
+} //Playout
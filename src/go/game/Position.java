@@ -0,0 +1,1519 @@
+package go.game;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+import go.game.Space.Resident;
+
+/**
+ * Class representing the state of a game of Go independent of any JavaFX
+ * nodes. Stores the board as a compact <code>byte</code> array and contains
+ * methods relating to applying moves, capturing pieces and scoring.
+ *
+ * Points are indexed as <code>height * x + y</code>, which on a square
+ * board is <code>size * x + y</code>, matching the layout of the
+ * <code>Space</code> array in <code>Board</code>. Boards may be rectangular.
+ *
+ * Connected stones are tracked in a group table that is updated only around
+ * the placed stone. Each stone points at the representative of its group and
+ * the stones of a group form a ring through <code>next</code>. Every group
+ * keeps a count of its pseudo-liberties (one per stone/vacant adjacency),
+ * which reaches zero exactly when the group has no liberties, along with the
+ * sum and sum of squares of those liberty indices so that a group with a
+ * single remaining liberty can be recognised in constant time.
+ *
+ * Each position is identified by a 64-bit Zobrist hash, the XOR of a random
+ * key for every stone on the board. Groups keep the XOR of their own stones
+ * so the hash after a capture is known before the move is made, and every
+ * hash reached so far is kept to enforce positional superko. Scratch
+ * positions used by searches may turn superko off, in which case only
+ * simple ko is enforced.
+ *
+ * Every move and pass is kept in an undo history that records only the
+ * point played, the stones it captured and the few values it overwrote,
+ * so a move is unmade in time proportional to the captures and the group
+ * it joined rather than the size of the board. Undone moves stay in the
+ * history until a different move is played, so they can be redone.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class Position {
+
+	public static final byte VACANT = 0;
+	public static final byte BLACK = 1;
+	public static final byte WHITE = 2;
+
+	//fixed seed so equal positions hash equally across games and runs
+	private static final long ZOBRIST_SEED = 0x9E3779B97F4A7C15L;
+
+	//key and neighbour tables depend only on the board's dimensions and are
+	//never written once built, so every position of one size shares them
+	private static Map<Long, long[]> sharedKeys = new ConcurrentHashMap<>();
+	private static Map<Long, int[]> sharedAdjacent = new ConcurrentHashMap<>();
+
+	private int width, height;
+	private byte[] points;
+	private int blackScore = 0;
+	private int whiteScore = 0;
+	private int blackCaptures = 0;
+	private int whiteCaptures = 0;
+	private AreaScorer scorer;
+	private LegalMoves legal;
+	private Patterns patterns;
+
+	//four neighbours per point, -1 when off the board
+	private int[] adjacent;
+
+	//group table, indexed by point and by group representative
+	private int[] group;
+	private int[] next;
+	private int[] stones;
+	private int[] libs;
+	private int[] libSum;
+	private long[] libSumSq;
+	private long[] groupHash;
+
+	//two keys per point, black then white
+	private long[] keys;
+	private long hash = 0;
+	private LongHashSet history;
+	private boolean superko = true;
+
+	//points changed by the last call to play
+	private int lastMove = -1;
+	private int[] captured;
+	private int capturedCount = 0;
+
+	//former liberty of each group the last move's captures took out of atari
+	private int[] rescued;
+	private int rescuedCount = 0;
+
+	//point the opponent may not retake immediately, or -1
+	private int koPoint = -1;
+	private byte toMove = BLACK;
+	private int passes = 0;
+
+	//undo history, one entry per move, entries from moveTop to moveEnd can be redone
+	private int moveTop = 0;
+	private int moveEnd = 0;
+	private int[] undoPoint;
+	private byte[] undoColor;
+	private byte[] undoToMove;
+	private int[] undoKo;
+	private int[] undoLast;
+	private int[] undoPasses;
+	private long[] undoHash;
+	private boolean[] undoAdded;
+	private int[] undoCapStart;
+	private int[] undoCapCount;
+	private int[] undoCaptured;
+	private int[] regroup;
+
+	/**
+	 * Constructor for an empty <code>Position</code>.
+	 *
+	 * @param size size of row and col for board
+	 */
+	public Position(int size) {
+		this(size, size);
+	} //Position
+
+	/**
+	 * Constructor for an empty rectangular <code>Position</code>.
+	 *
+	 * @param width number of points in the x direction
+	 * @param height number of points in the y direction
+	 */
+	public Position(int width, int height) {
+
+		this.width = width;
+		this.height = height;
+		int n = width * height;
+
+		points = new byte[n];
+		adjacent = sharedAdjacent.computeIfAbsent(dimensions(width, height), d -> adjacency(width, height));
+		captured = new int[n];
+		rescued = new int[n];
+		regroup = new int[n];
+
+		group = new int[n];
+		next = new int[n];
+		stones = new int[n];
+		libs = new int[n];
+		libSum = new int[n];
+		libSumSq = new long[n];
+		groupHash = new long[n];
+
+		keys = sharedKeys.computeIfAbsent(dimensions(width, height), d -> zobrist(2 * n));
+
+		history = new LongHashSet(n);
+		history.add(hash);
+
+		undoPoint = new int[n];
+		undoColor = new byte[n];
+		undoToMove = new byte[n];
+		undoKo = new int[n];
+		undoLast = new int[n];
+		undoPasses = new int[n];
+		undoHash = new long[n];
+		undoAdded = new boolean[n];
+		undoCapStart = new int[n];
+		undoCapCount = new int[n];
+		undoCaptured = new int[n];
+	} //Position
+
+	/**
+	 * Packs the dimensions of a board into the key of its shared tables.
+	 *
+	 * @param width number of points in the x direction
+	 * @param height number of points in the y direction
+	 * @return key for the dimensions
+	 */
+	private static long dimensions(int width, int height) {
+		return (long) width << 32 | height;
+	} //dimensions
+
+	/**
+	 * Builds the neighbour table of a board: four entries per point, -1
+	 * where the neighbour is off the board.
+	 *
+	 * @param width number of points in the x direction
+	 * @param height number of points in the y direction
+	 * @return neighbour table
+	 */
+	private static int[] adjacency(int width, int height) {
+
+		int[] adjacent = new int[4 * width * height];
+
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+
+				int p = height * x + y;
+				adjacent[4 * p] = (y + 1 < height) ? p + 1 : -1;
+				adjacent[4 * p + 1] = (x + 1 < width) ? p + height : -1;
+				adjacent[4 * p + 2] = (x > 0) ? p - height : -1;
+				adjacent[4 * p + 3] = (y > 0) ? p - 1 : -1;
+			}
+		}
+
+		return adjacent;
+	} //adjacency
+
+	/**
+	 * Generates the Zobrist keys from the fixed seed.
+	 *
+	 * @param count number of keys
+	 * @return array of random keys
+	 */
+	private static long[] zobrist(int count) {
+
+		long[] keys = new long[count];
+		SplittableRandom random = new SplittableRandom(ZOBRIST_SEED);
+
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextLong();
+		}
+
+		return keys;
+	} //zobrist
+
+	/**
+	 * Check if a move is valid without changing the board. A move is valid
+	 * on a vacant point that either touches a vacant point, joins a friendly
+	 * group with another liberty, or captures an opponent group whose only
+	 * liberty is the point being played, as long as the resulting position
+	 * has not been seen before.
+	 *
+	 * @param color color of piece to validate
+	 * @param x coordinate in x direction to check
+	 * @param y coordinate in y direction to check
+	 * @return boolean value for validity
+	 */
+	public boolean isLegal(byte color, int x, int y) {
+		return isLegal(color, point(x, y));
+	} //isLegal
+
+	/**
+	 * Check if a move is valid without changing the board.
+	 *
+	 * @param color color of piece to validate
+	 * @param p index of point to check
+	 * @return boolean value for validity
+	 */
+	public boolean isLegal(byte color, int p) {
+
+		if (points[p] != VACANT || (p == koPoint && color == toMove)) {
+			return false;
+		}
+
+		boolean alive = false;
+		long result = hash ^ key(color, p);
+		int g0 = -1, g1 = -1, g2 = -1;
+
+		for (int i = 4 * p; i < 4 * p + 4; i++) {
+
+			int q = adjacent[i];
+
+			if (q < 0) {
+				continue;
+			}
+			if (points[q] == VACANT) {
+				alive = true;
+				continue;
+			}
+
+			int g = group[q];
+
+			//p is a liberty of every neighbouring group, so atari means p is the last one
+			boolean atari = inAtari(g);
+
+			if (points[q] == color) {
+				alive |= !atari;
+			}
+			else if (atari && g != g0 && g != g1 && g != g2) {
+				alive = true;
+				result ^= groupHash[g];
+			}
+
+			g2 = g1;
+			g1 = g0;
+			g0 = g;
+		}
+
+		return alive && !(superko && history.contains(result));
+	} //isLegal
+
+	/**
+	 * Checks whether a vacant point may be played without suicide, ignoring
+	 * ko and superko, which depend on the history rather than the board.
+	 *
+	 * @param color color of piece to validate
+	 * @param p index of a vacant point
+	 * @return boolean value whether the stone would have a liberty
+	 */
+	boolean isPlayable(byte color, int p) {
+
+		for (int i = 4 * p; i < 4 * p + 4; i++) {
+
+			int q = adjacent[i];
+
+			if (q < 0) {
+				continue;
+			}
+			if (points[q] == VACANT) {
+				return true;
+			}
+
+			//p is a liberty of every neighbouring group, so atari means p is the last one
+			if ((points[q] == color) != inAtari(group[q])) {
+				return true;
+			}
+		}
+
+		return false;
+	} //isPlayable
+
+	/**
+	 * Checks whether playing a point would repeat an earlier position. Only
+	 * positional superko is checked, so this is false when superko is off.
+	 *
+	 * @param color color of piece to validate
+	 * @param p index of a playable point
+	 * @return boolean value whether the move is forbidden by superko
+	 */
+	boolean repeats(byte color, int p) {
+
+		if (!superko) {
+			return false;
+		}
+
+		long result = hash ^ key(color, p);
+		int g0 = -1, g1 = -1, g2 = -1;
+
+		for (int i = 4 * p; i < 4 * p + 4; i++) {
+
+			int q = adjacent[i];
+
+			if (q < 0 || points[q] == VACANT) {
+				continue;
+			}
+
+			int g = group[q];
+
+			if (points[q] != color && inAtari(g) && g != g0 && g != g1 && g != g2) {
+				result ^= groupHash[g];
+			}
+
+			g2 = g1;
+			g1 = g0;
+			g0 = g;
+		}
+
+		return history.contains(result);
+	} //repeats
+
+	/**
+	 * Places a piece at the designated location, joins it to any neighbouring
+	 * groups of the same color and removes any neighbouring opponent groups
+	 * left without liberties. Only the placed stone and its four neighbours
+	 * are examined, and captures cost one step per captured stone.
+	 *
+	 * @param color color of piece to place
+	 * @param x coordinate of x location to place piece
+	 * @param y coordinate of y location to place piece
+	 * @return number of stones captured
+	 */
+	public int play(byte color, int x, int y) {
+		return play(color, point(x, y));
+	} //play
+
+	/**
+	 * Places a piece at a point index.
+	 *
+	 * @param color color of piece to place
+	 * @param p index of point to place piece
+	 * @return number of stones captured
+	 */
+	public int play(byte color, int p) {
+
+		byte enemy = opponent(color);
+		int m = push(color, p);
+
+		points[p] = color;
+		group[p] = p;
+		next[p] = p;
+		stones[p] = 1;
+		libs[p] = 0;
+		libSum[p] = 0;
+		libSumSq[p] = 0;
+		groupHash[p] = key(color, p);
+		hash ^= groupHash[p];
+
+		lastMove = p;
+		capturedCount = 0;
+		rescuedCount = 0;
+		toMove = enemy;
+		passes = 0;
+
+		if (color == BLACK) {
+			blackScore++;
+		}
+		else {
+			whiteScore++;
+		}
+
+		//the new stone takes a liberty from every neighbouring group
+		for (int i = 4 * p; i < 4 * p + 4; i++) {
+
+			int q = adjacent[i];
+
+			if (q < 0) {
+				continue;
+			}
+			if (points[q] == VACANT) {
+				addLiberty(p, q);
+			}
+			else {
+				removeLiberty(group[q], p);
+			}
+		}
+
+		for (int i = 4 * p; i < 4 * p + 4; i++) {
+
+			int q = adjacent[i];
+
+			if (q < 0) {
+				continue;
+			}
+			if (points[q] == color && group[q] != group[p]) {
+				merge(group[p], group[q]);
+			}
+			else if (points[q] == enemy && libs[group[q]] == 0) {
+				removeGroup(group[q]);
+			}
+		}
+
+		if (superko) {
+			undoAdded[m] = history.add(hash);
+		}
+
+		//a lone stone that took a lone stone and has one liberty left can be retaken there
+		int g = group[p];
+		koPoint = (capturedCount == 1 && stones[g] == 1 && libs[g] == 1) ? captured[0] : -1;
+
+		if (color == BLACK) {
+			whiteScore -= capturedCount;
+			blackCaptures += capturedCount;
+		}
+		else {
+			blackScore -= capturedCount;
+			whiteCaptures += capturedCount;
+		}
+
+		if (scorer != null && Metrics.ENABLED) {
+			long start = System.nanoTime();
+			scorer.update(p, captured, capturedCount);
+			Metrics.scored(capturedCount, System.nanoTime() - start);
+		}
+		else if (scorer != null) {
+			scorer.update(p, captured, capturedCount);
+		}
+		if (legal != null) {
+			legal.played(p, captured, capturedCount);
+		}
+		if (patterns != null) {
+			patterns.played(p, captured, capturedCount);
+		}
+
+		saveCaptured(m);
+
+		return capturedCount;
+	} //play
+
+	/**
+	 * Passes the turn without placing a piece.
+	 *
+	 * @param color color of the player passing
+	 */
+	public void pass(byte color) {
+
+		int m = push(color, -1);
+
+		lastMove = -1;
+		capturedCount = 0;
+		koPoint = -1;
+		toMove = opponent(color);
+		passes++;
+
+		saveCaptured(m);
+	} //pass
+
+	/**
+	 * Takes back the last move or pass. The placed stone is removed, the
+	 * stones it captured are put back and every other value the move
+	 * changed is restored. Afterwards <code>getCaptured</code> holds the
+	 * stones that were put back.
+	 *
+	 * @return index of the point emptied, or -1 if a pass was undone
+	 * @throws IllegalStateException if there is no move to undo
+	 */
+	public int undo() {
+
+		if (moveTop == 0) {
+			throw new IllegalStateException("Nothing to undo");
+		}
+
+		int m = --moveTop;
+		int p = undoPoint[m];
+		byte color = undoColor[m];
+		int start = undoCapStart[m];
+		int count = undoCapCount[m];
+
+		System.arraycopy(undoCaptured, start, captured, 0, count);
+		capturedCount = count;
+
+		if (p >= 0) {
+
+			if (undoAdded[m]) {
+				history.remove(hash);
+			}
+
+			removeStone(p, color);
+			restoreStones(opponent(color));
+
+			if (color == BLACK) {
+				blackScore--;
+				whiteScore += count;
+				blackCaptures -= count;
+			}
+			else {
+				whiteScore--;
+				blackScore += count;
+				whiteCaptures -= count;
+			}
+		}
+
+		hash = undoHash[m];
+		koPoint = undoKo[m];
+		lastMove = undoLast[m];
+		passes = undoPasses[m];
+		toMove = undoToMove[m];
+
+		if (scorer != null && p >= 0) {
+			scorer.update(p, captured, capturedCount);
+		}
+		if (legal != null && p >= 0) {
+			legal.undone(p, captured, capturedCount);
+		}
+		if (patterns != null && p >= 0) {
+			patterns.undone(p, captured, capturedCount);
+		}
+
+		return p;
+	} //undo
+
+	/**
+	 * Plays the last undone move again.
+	 *
+	 * @return index of the point played, or -1 if a pass was redone
+	 * @throws IllegalStateException if there is no move to redo
+	 */
+	public int redo() {
+
+		if (moveTop == moveEnd) {
+			throw new IllegalStateException("Nothing to redo");
+		}
+
+		int end = moveEnd;
+		int p = undoPoint[moveTop];
+
+		if (p < 0) {
+			pass(undoColor[moveTop]);
+		}
+		else {
+			play(undoColor[moveTop], p);
+		}
+
+		moveEnd = end;
+
+		return p;
+	} //redo
+
+	/**
+	 * Starts a new undo history entry with the values a move is about to
+	 * overwrite, dropping any undone moves.
+	 *
+	 * @param color color of the player moving
+	 * @param p index of the point played, or -1 for a pass
+	 * @return index of the entry
+	 */
+	private int push(byte color, int p) {
+
+		if (moveTop == undoPoint.length) {
+
+			int length = 2 * undoPoint.length;
+			undoPoint = Arrays.copyOf(undoPoint, length);
+			undoColor = Arrays.copyOf(undoColor, length);
+			undoToMove = Arrays.copyOf(undoToMove, length);
+			undoKo = Arrays.copyOf(undoKo, length);
+			undoLast = Arrays.copyOf(undoLast, length);
+			undoPasses = Arrays.copyOf(undoPasses, length);
+			undoHash = Arrays.copyOf(undoHash, length);
+			undoAdded = Arrays.copyOf(undoAdded, length);
+			undoCapStart = Arrays.copyOf(undoCapStart, length);
+			undoCapCount = Arrays.copyOf(undoCapCount, length);
+		}
+
+		int m = moveTop++;
+		moveEnd = moveTop;
+
+		undoPoint[m] = p;
+		undoColor[m] = color;
+		undoToMove[m] = toMove;
+		undoKo[m] = koPoint;
+		undoLast[m] = lastMove;
+		undoPasses[m] = passes;
+		undoHash[m] = hash;
+		undoAdded[m] = false;
+
+		return m;
+	} //push
+
+	/**
+	 * Copies the stones captured by a move into its undo history entry.
+	 *
+	 * @param m index of the entry
+	 */
+	private void saveCaptured(int m) {
+
+		int start = (m == 0) ? 0 : undoCapStart[m - 1] + undoCapCount[m - 1];
+
+		if (start + capturedCount > undoCaptured.length) {
+			undoCaptured = Arrays.copyOf(undoCaptured, 2 * (start + capturedCount));
+		}
+
+		System.arraycopy(captured, 0, undoCaptured, start, capturedCount);
+		undoCapStart[m] = start;
+		undoCapCount[m] = capturedCount;
+	} //saveCaptured
+
+	/**
+	 * Removes a stone placed by the move being undone. Neighbouring
+	 * opponent groups get the point back as a liberty, and the rest of the
+	 * stone's own group is regrouped, since removing the stone may split it.
+	 *
+	 * @param p index of the stone
+	 * @param color color of the stone
+	 */
+	private void removeStone(int p, byte color) {
+
+		int g = group[p];
+		int count = 0;
+
+		for (int s = next[p]; s != p; s = next[s]) {
+			regroup[count++] = s;
+		}
+
+		points[p] = VACANT;
+
+		for (int i = 4 * p; i < 4 * p + 4; i++) {
+
+			int q = adjacent[i];
+
+			if (q >= 0 && points[q] == opponent(color)) {
+				addLiberty(group[q], p);
+			}
+		}
+
+		if (stones[g] > 1) {
+			regroup(regroup, count, color);
+		}
+	} //removeStone
+
+	/**
+	 * Puts back the stones in <code>captured</code>, taking the points they
+	 * cover away from the liberties of their neighbours.
+	 *
+	 * @param color color of the stones
+	 */
+	private void restoreStones(byte color) {
+
+		for (int i = 0; i < capturedCount; i++) {
+			points[captured[i]] = color;
+		}
+
+		regroup(captured, capturedCount, color);
+
+		for (int i = 0; i < capturedCount; i++) {
+
+			int s = captured[i];
+
+			for (int j = 4 * s; j < 4 * s + 4; j++) {
+
+				int q = adjacent[j];
+
+				if (q >= 0 && points[q] != VACANT && points[q] != color) {
+					removeLiberty(group[q], s);
+				}
+			}
+		}
+	} //restoreStones
+
+	/**
+	 * Rebuilds the groups formed by a set of stones of one color, which
+	 * must together make up whole groups.
+	 *
+	 * @param set array holding the stones
+	 * @param count number of entries of <code>set</code> to use
+	 * @param color color of the stones
+	 */
+	private void regroup(int[] set, int count, byte color) {
+
+		for (int i = 0; i < count; i++) {
+
+			int s = set[i];
+			group[s] = s;
+			next[s] = s;
+			stones[s] = 1;
+			libs[s] = 0;
+			libSum[s] = 0;
+			libSumSq[s] = 0;
+			groupHash[s] = key(color, s);
+		}
+
+		for (int i = 0; i < count; i++) {
+
+			int s = set[i];
+
+			for (int j = 4 * s; j < 4 * s + 4; j++) {
+
+				int q = adjacent[j];
+
+				if (q < 0) {
+					continue;
+				}
+				if (points[q] == VACANT) {
+					addLiberty(group[s], q);
+				}
+				else if (points[q] == color && group[q] != group[s]) {
+					merge(group[s], group[q]);
+				}
+			}
+		}
+	} //regroup
+
+	/**
+	 * Checks whether there is a move to undo.
+	 *
+	 * @return boolean value whether <code>undo</code> may be called
+	 */
+	public boolean canUndo() {
+		return moveTop > 0;
+	} //canUndo
+
+	/**
+	 * Checks whether there is an undone move to redo.
+	 *
+	 * @return boolean value whether <code>redo</code> may be called
+	 */
+	public boolean canRedo() {
+		return moveTop < moveEnd;
+	} //canRedo
+
+	/**
+	 * Gets the number of moves and passes in the undo history.
+	 *
+	 * @return number of moves made since the position was cleared or loaded
+	 */
+	public int getMoveNumber() {
+		return moveTop;
+	} //getMoveNumber
+
+	/**
+	 * Checks whether the group containing a point has any liberties.
+	 *
+	 * @param p index of point to check
+	 * @return boolean value whether the group is surrounded
+	 */
+	public boolean isSurrounded(int p) {
+		return points[p] != VACANT && libs[group[p]] == 0;
+	} //isSurrounded
+
+	/**
+	 * Removes a group from the board, records the removed points in
+	 * <code>captured</code> and gives a liberty back to every neighbouring
+	 * group.
+	 *
+	 * @param g representative of the group to remove
+	 */
+	private void removeGroup(int g) {
+
+		int s = g;
+		hash ^= groupHash[g];
+
+		do {
+			points[s] = VACANT;
+			captured[capturedCount++] = s;
+			s = next[s];
+		} while (s != g);
+
+		do {
+			for (int i = 4 * s; i < 4 * s + 4; i++) {
+
+				int q = adjacent[i];
+
+				if (q >= 0 && points[q] != VACANT) {
+
+					int h = group[q];
+
+					if (inAtari(h)) {
+						rescued[rescuedCount++] = libSum[h] / libs[h];
+					}
+
+					addLiberty(h, s);
+				}
+			}
+			s = next[s];
+		} while (s != g);
+	} //removeGroup
+
+	/**
+	 * Joins two groups of the same color, relabelling the smaller one.
+	 *
+	 * @param a representative of the first group
+	 * @param b representative of the second group
+	 */
+	private void merge(int a, int b) {
+
+		if (stones[a] < stones[b]) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+
+		int s = b;
+
+		do {
+			group[s] = a;
+			s = next[s];
+		} while (s != b);
+
+		//splice the two rings together
+		int t = next[a];
+		next[a] = next[b];
+		next[b] = t;
+
+		stones[a] += stones[b];
+		libs[a] += libs[b];
+		libSum[a] += libSum[b];
+		libSumSq[a] += libSumSq[b];
+		groupHash[a] ^= groupHash[b];
+	} //merge
+
+	/**
+	 * Adds a pseudo-liberty to a group.
+	 *
+	 * @param g representative of the group
+	 * @param lib index of the vacant point
+	 */
+	private void addLiberty(int g, int lib) {
+		libs[g]++;
+		libSum[g] += lib;
+		libSumSq[g] += (long) lib * lib;
+	} //addLiberty
+
+	/**
+	 * Removes a pseudo-liberty from a group.
+	 *
+	 * @param g representative of the group
+	 * @param lib index of the filled point
+	 */
+	private void removeLiberty(int g, int lib) {
+		libs[g]--;
+		libSum[g] -= lib;
+		libSumSq[g] -= (long) lib * lib;
+	} //removeLiberty
+
+	/**
+	 * Checks whether a group has exactly one liberty. All pseudo-liberties
+	 * name the same point exactly when the square of their sum equals their
+	 * count times the sum of their squares.
+	 *
+	 * @param g representative of the group
+	 * @return boolean value whether the group is in atari
+	 */
+	private boolean inAtari(int g) {
+		return libs[g] > 0 && (long) libSum[g] * libSum[g] == libs[g] * libSumSq[g];
+	} //inAtari
+
+	/**
+	 * Rebuilds the group table from <code>points</code>.
+	 */
+	private void rebuildGroups() {
+
+		hash = 0;
+
+		for (int p = 0; p < points.length; p++) {
+			group[p] = p;
+			next[p] = p;
+			stones[p] = 1;
+			libs[p] = 0;
+			libSum[p] = 0;
+			libSumSq[p] = 0;
+			groupHash[p] = (points[p] == VACANT) ? 0 : key(points[p], p);
+			hash ^= groupHash[p];
+		}
+
+		for (int p = 0; p < points.length; p++) {
+
+			if (points[p] == VACANT) {
+				continue;
+			}
+
+			for (int i = 4 * p; i < 4 * p + 4; i++) {
+
+				int q = adjacent[i];
+
+				if (q < 0) {
+					continue;
+				}
+				if (points[q] == VACANT) {
+					addLiberty(group[p], q);
+				}
+				else if (points[q] == points[p] && group[q] != group[p]) {
+					merge(group[p], group[q]);
+				}
+			}
+		}
+	} //rebuildGroups
+
+	/**
+	 * Sets a point directly without checking captures. Rebuilds the whole
+	 * group table and starts a new superko history, so this is meant for
+	 * setting up positions rather than playing moves.
+	 *
+	 * @param color type to set point to
+	 * @param x coordinate in x direction of point to set
+	 * @param y coordinate in y direction of point to set
+	 */
+	public void set(byte color, int x, int y) {
+
+		int p = point(x, y);
+
+		if (points[p] != color) {
+			points[p] = color;
+			rebuildGroups();
+			history.clear();
+			history.add(hash);
+			moveTop = 0;
+			moveEnd = 0;
+			score();
+
+			if (scorer != null) {
+				scorer.rebuild();
+			}
+			if (legal != null) {
+				legal.rebuild();
+			}
+			if (patterns != null) {
+				patterns.rebuild();
+			}
+		}
+	} //set
+
+	/**
+	 * Removes every stone and forgets the superko and undo histories,
+	 * keeping the allocated arrays so the position can be reused.
+	 */
+	public void clear() {
+
+		Arrays.fill(points, VACANT);
+		hash = 0;
+		lastMove = -1;
+		capturedCount = 0;
+		koPoint = -1;
+		toMove = BLACK;
+		passes = 0;
+		moveTop = 0;
+		moveEnd = 0;
+		history.clear();
+		history.add(hash);
+		blackScore = 0;
+		whiteScore = 0;
+		blackCaptures = 0;
+		whiteCaptures = 0;
+
+		if (scorer != null) {
+			scorer.rebuild();
+		}
+		if (legal != null) {
+			legal.rebuild();
+		}
+		if (patterns != null) {
+			patterns.rebuild();
+		}
+	} //clear
+
+	/**
+	 * Copies the stones, groups and hash of another position of the same
+	 * width and height into this one, reusing this position's arrays. The superko history
+	 * is copied only if this position enforces superko, and the undo history
+	 * starts empty.
+	 *
+	 * @param other position to copy
+	 */
+	public void loadFrom(Position other) {
+
+		int n = points.length;
+		System.arraycopy(other.points, 0, points, 0, n);
+		System.arraycopy(other.group, 0, group, 0, n);
+		System.arraycopy(other.next, 0, next, 0, n);
+		System.arraycopy(other.stones, 0, stones, 0, n);
+		System.arraycopy(other.libs, 0, libs, 0, n);
+		System.arraycopy(other.libSum, 0, libSum, 0, n);
+		System.arraycopy(other.libSumSq, 0, libSumSq, 0, n);
+		System.arraycopy(other.groupHash, 0, groupHash, 0, n);
+		System.arraycopy(other.captured, 0, captured, 0, other.capturedCount);
+
+		hash = other.hash;
+		lastMove = other.lastMove;
+		capturedCount = other.capturedCount;
+		koPoint = other.koPoint;
+		toMove = other.toMove;
+		passes = other.passes;
+		blackScore = other.blackScore;
+		whiteScore = other.whiteScore;
+		blackCaptures = other.blackCaptures;
+		whiteCaptures = other.whiteCaptures;
+		moveTop = 0;
+		moveEnd = 0;
+
+		if (superko) {
+			history.copyFrom(other.history);
+		}
+		if (scorer != null) {
+			scorer.rebuild();
+		}
+		if (legal != null && other.legal != null) {
+			legal.copyFrom(other.legal);
+		}
+		else if (legal != null) {
+			legal.rebuild();
+		}
+		if (patterns != null && other.patterns != null) {
+			patterns.copyFrom(other.patterns);
+		}
+		else if (patterns != null) {
+			patterns.rebuild();
+		}
+	} //loadFrom
+
+	/**
+	 * Forgets the passes and the undo and superko histories, keeping the
+	 * stones and the player to move, so play can go on from the position as
+	 * if it had been set up.
+	 */
+	public void resetHistory() {
+
+		passes = 0;
+		moveTop = 0;
+		moveEnd = 0;
+		history.clear();
+		history.add(hash);
+	} //resetHistory
+
+	/**
+	 * Sets whether repeating any earlier position is forbidden. With superko
+	 * off no history is kept and only simple ko is enforced, which is what
+	 * playouts use.
+	 *
+	 * @param superko boolean value whether superko is enforced
+	 */
+	public void setSuperko(boolean superko) {
+
+		this.superko = superko;
+		history.clear();
+		history.add(hash);
+	} //setSuperko
+
+	/**
+	 * Recounts the number of each stone in play. The counts are kept up to
+	 * date by every move, so this is only needed after setting points directly.
+	 */
+	public void score() {
+
+		blackScore = 0;
+		whiteScore = 0;
+
+		for (byte current : points) {
+			if (current == BLACK) {
+				blackScore++;
+			}
+			if (current == WHITE) {
+				whiteScore++;
+			}
+		}
+	} //score
+
+	/**
+	 * Gets the color at a point.
+	 *
+	 * @param x location in x direction
+	 * @param y location in y direction
+	 * @return color code at param location
+	 */
+	public byte get(int x, int y) {
+		return points[point(x, y)];
+	} //get
+
+	/**
+	 * Gets the color at a point index.
+	 *
+	 * @param p index of point
+	 * @return color code at param index
+	 */
+	public byte get(int p) {
+		return points[p];
+	} //get
+
+	/**
+	 * Converts coordinates to a point index.
+	 *
+	 * @param x location in x direction
+	 * @param y location in y direction
+	 * @return index of point
+	 */
+	public int point(int x, int y) {
+		return height * x + y;
+	} //point
+
+	/**
+	 * Gets the Zobrist key for a stone at a point.
+	 *
+	 * @param color color of the stone
+	 * @param p index of point
+	 * @return key for the stone
+	 */
+	private long key(byte color, int p) {
+		return keys[2 * p + color - 1];
+	} //key
+
+	/**
+	 * Works out the hash this position would have under several mappings
+	 * of the points at once, reading each stone once.
+	 *
+	 * @param maps image of every point under each mapping, <code>count</code> entries per point
+	 * @param count number of mappings
+	 * @param hashes array receiving the hash under each mapping
+	 */
+	void hashUnder(int[] maps, int count, long[] hashes) {
+
+		Arrays.fill(hashes, 0, count, 0);
+
+		for (int p = 0; p < points.length; p++) {
+
+			byte color = points[p];
+
+			if (color != VACANT) {
+				for (int s = 0; s < count; s++) {
+					hashes[s] ^= key(color, maps[count * p + s]);
+				}
+			}
+		}
+	} //hashUnder
+
+	/**
+	 * Getter method for <code>hash</code>.
+	 *
+	 * @return Zobrist hash of the current position
+	 */
+	public long getHash() {
+		return hash;
+	} //getHash
+
+	/**
+	 * Gets a neighbour of a point.
+	 *
+	 * @param p index of point
+	 * @param dir direction from 0 to 3
+	 * @return index of the neighbour, or -1 if it is off the board
+	 */
+	public int getAdjacent(int p, int dir) {
+		return adjacent[4 * p + dir];
+	} //getAdjacent
+
+	/**
+	 * Gets the <code>AreaScorer</code> kept up to date with this position,
+	 * creating it on first use so positions that never need territory do
+	 * not pay for it.
+	 *
+	 * @return scorer for this position
+	 */
+	public AreaScorer getScorer() {
+
+		if (scorer == null) {
+			scorer = new AreaScorer(this);
+		}
+
+		return scorer;
+	} //getScorer
+
+	/**
+	 * Gets the <code>LegalMoves</code> kept up to date with this position,
+	 * creating them on first use so positions that never list their moves
+	 * do not pay for them.
+	 *
+	 * @return legal moves of this position
+	 */
+	public LegalMoves getLegalMoves() {
+
+		if (legal == null) {
+			legal = new LegalMoves(this);
+		}
+
+		return legal;
+	} //getLegalMoves
+
+	/**
+	 * Gets the <code>Patterns</code> kept up to date with this position,
+	 * creating them on first use so positions that never weigh their moves
+	 * do not pay for them.
+	 *
+	 * @return 3x3 patterns of this position
+	 */
+	public Patterns getPatterns() {
+
+		if (patterns == null) {
+			patterns = new Patterns(this);
+		}
+
+		return patterns;
+	} //getPatterns
+
+	/**
+	 * Gets the representative of the group on a point.
+	 *
+	 * @param p index of a stone
+	 * @return index of the group's representative
+	 */
+	int getGroup(int p) {
+		return group[p];
+	} //getGroup
+
+	/**
+	 * Gets the next stone in the ring of a group's stones.
+	 *
+	 * @param s index of a stone
+	 * @return index of the next stone of the same group
+	 */
+	int getNextStone(int s) {
+		return next[s];
+	} //getNextStone
+
+	/**
+	 * Checks whether the group on a point is in atari.
+	 *
+	 * @param p index of point
+	 * @return boolean value whether the point holds a stone whose group has one liberty
+	 */
+	boolean isInAtari(int p) {
+		return points[p] != VACANT && inAtari(group[p]);
+	} //isInAtari
+
+	/**
+	 * Gets the only liberty of the group on a point if it is in atari.
+	 *
+	 * @param p index of point
+	 * @return index of the liberty, or -1 if the point is vacant or its group has more than one
+	 */
+	int getAtariLiberty(int p) {
+
+		if (points[p] == VACANT || !inAtari(group[p])) {
+			return -1;
+		}
+
+		int g = group[p];
+
+		return libSum[g] / libs[g];
+	} //getAtariLiberty
+
+	/**
+	 * Getter method for <code>koPoint</code>.
+	 *
+	 * @return point the player to move may not retake, or -1
+	 */
+	public int getKoPoint() {
+		return koPoint;
+	} //getKoPoint
+
+	/**
+	 * Checks whether repeating any earlier position is forbidden.
+	 *
+	 * @return boolean value whether superko is enforced
+	 */
+	public boolean isSuperko() {
+		return superko;
+	} //isSuperko
+
+	/**
+	 * Gets the x coordinate of a point index.
+	 *
+	 * @param p index of point
+	 * @return location in x direction
+	 */
+	public int getX(int p) {
+		return p / height;
+	} //getX
+
+	/**
+	 * Gets the y coordinate of a point index.
+	 *
+	 * @param p index of point
+	 * @return location in y direction
+	 */
+	public int getY(int p) {
+		return p % height;
+	} //getY
+
+	/**
+	 * Getter method for <code>toMove</code>.
+	 *
+	 * @return color of the player whose turn it is
+	 */
+	public byte getToMove() {
+		return toMove;
+	} //getToMove
+
+	/**
+	 * Getter method for <code>passes</code>.
+	 *
+	 * @return number of consecutive passes just made
+	 */
+	public int getPasses() {
+		return passes;
+	} //getPasses
+
+	/**
+	 * Getter method for <code>lastMove</code>.
+	 *
+	 * @return index of the last point played, or -1 before the first move
+	 */
+	public int getLastMove() {
+		return lastMove;
+	} //getLastMove
+
+	/**
+	 * Gets the points removed by the last move.
+	 *
+	 * @return array of captured indices, valid up to <code>getCapturedCount()</code>
+	 */
+	public int[] getCaptured() {
+		return captured;
+	} //getCaptured
+
+	/**
+	 * Getter method for <code>capturedCount</code>.
+	 *
+	 * @return number of stones removed by the last move
+	 */
+	public int getCapturedCount() {
+		return capturedCount;
+	} //getCapturedCount
+
+	/**
+	 * Gets the points that were the last liberty of a group until the last
+	 * move's captures gave it more. Only valid straight after the move.
+	 *
+	 * @return array of former liberties, valid up to <code>getRescuedCount()</code>
+	 */
+	int[] getRescued() {
+		return rescued;
+	} //getRescued
+
+	/**
+	 * Getter method for <code>rescuedCount</code>.
+	 *
+	 * @return number of groups the last move's captures took out of atari
+	 */
+	int getRescuedCount() {
+		return rescuedCount;
+	} //getRescuedCount
+
+	/**
+	 * Getter method for <code>size</code> of board. On a rectangular board
+	 * this is the width.
+	 *
+	 * @return size
+	 */
+	public int getSize() {
+		return width;
+	} //getSize
+
+	/**
+	 * Getter method for <code>width</code>.
+	 *
+	 * @return number of points in the x direction
+	 */
+	public int getWidth() {
+		return width;
+	} //getWidth
+
+	/**
+	 * Getter method for <code>height</code>.
+	 *
+	 * @return number of points in the y direction
+	 */
+	public int getHeight() {
+		return height;
+	} //getHeight
+
+	/**
+	 * Estimates the memory held by this position in bytes, counting the
+	 * arrays it owns and the undo history as it has grown so far, but not
+	 * the tables shared with other positions of the same size.
+	 *
+	 * @return approximate size in bytes
+	 */
+	public long getFootprint() {
+
+		long n = points.length;
+		long undo = undoPoint.length;
+
+		return n + 4 * 7 * n + 8 * 2 * n + 8L * history.capacity()
+				+ undo * (4 * 6 + 8 + 3) + 4L * undoCaptured.length;
+	} //getFootprint
+
+	/**
+	 * Gets the number of points on the board.
+	 *
+	 * @return width times height
+	 */
+	public int getPointCount() {
+		return points.length;
+	} //getPointCount
+
+	/**
+	 * Getter method for <code>blackScore</code>.
+	 *
+	 * @return blackScore
+	 */
+	public int getBlackScore() {
+		return blackScore;
+	} //getBlackScore
+
+	/**
+	 * Getter method for <code>whiteScore</code>.
+	 *
+	 * @return whiteScore
+	 */
+	public int getWhiteScore() {
+		return whiteScore;
+	} //getWhiteScore
+
+	/**
+	 * Getter method for <code>blackCaptures</code>.
+	 *
+	 * @return number of white stones captured by black
+	 */
+	public int getBlackCaptures() {
+		return blackCaptures;
+	} //getBlackCaptures
+
+	/**
+	 * Getter method for <code>whiteCaptures</code>.
+	 *
+	 * @return number of black stones captured by white
+	 */
+	public int getWhiteCaptures() {
+		return whiteCaptures;
+	} //getWhiteCaptures
+
+	/**
+	 * Gets the color of the opposing player.
+	 *
+	 * @param color color of current player
+	 * @return color of opponent
+	 */
+	public static byte opponent(byte color) {
+		return (byte) (3 - color);
+	} //opponent
+
+	/**
+	 * Converts a <code>Resident</code> to its color code.
+	 *
+	 * @param resident type to convert
+	 * @return color code
+	 */
+	public static byte code(Resident resident) {
+
+		switch (resident) {
+		case BLACK:
+			return BLACK;
+		case WHITE:
+			return WHITE;
+		default:
+			return VACANT;
+		}
+	} //code
+
+	/**
+	 * Converts a color code to its <code>Resident</code>.
+	 *
+	 * @param color code to convert
+	 * @return matching <code>Resident</code>
+	 */
+	public static Resident resident(byte color) {
+
+		switch (color) {
+		case BLACK:
+			return Resident.BLACK;
+		case WHITE:
+			return Resident.WHITE;
+		default:
+			return Resident.VACANT;
+		}
+	} //resident
+
+} //Position
@@ -0,0 +1,521 @@
+package go.game;
+
+/**
+ * Class representing a cache of search results shared by every searcher in
+ * the process. Entries are keyed by the canonical key of a
+ * <code>Symmetry</code>, so a position and its rotations and reflections
+ * share one entry, and hold the number of playouts through the position,
+ * how many black won and the best move in the canonical orientation.
+ *
+ * The cache is split into shards picked by the high bits of the key, each
+ * guarded by its own lock, so concurrent searchers rarely wait on each
+ * other. Each shard keeps its entries in primitive arrays with an
+ * open-addressed index and a least recently used list threaded through
+ * them, so nothing is allocated per entry and the memory used is known in
+ * advance: the capacity is worked out from a cap in bytes, and once a
+ * shard is full each new entry replaces the one used longest ago.
+ *
+ * Hits, misses and evictions are counted so the cap can be sized for a
+ * workload.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class PositionCache {
+
+	//bytes of the arrays per entry: key, visits, wins, move and two links
+	public static final int ENTRY_BYTES = 8 + 5 * 4;
+
+	private Shard[] shards;
+	private int shift;
+
+	/**
+	 * Class holding the result of a lookup.
+	 */
+	public static class Entry {
+
+		private int visits;
+		private int blackWins;
+		private int move;
+
+		/**
+		 * Getter method for <code>visits</code>.
+		 *
+		 * @return number of playouts through the position
+		 */
+		public int getVisits() {
+			return visits;
+		} //getVisits
+
+		/**
+		 * Getter method for <code>blackWins</code>.
+		 *
+		 * @return number of those playouts black won
+		 */
+		public int getBlackWins() {
+			return blackWins;
+		} //getBlackWins
+
+		/**
+		 * Getter method for <code>move</code>.
+		 *
+		 * @return best move in the canonical orientation, or -1 for a pass or none
+		 */
+		public int getMove() {
+			return move;
+		} //getMove
+	} //Entry
+
+	/**
+	 * Class representing one shard of the cache and its lock.
+	 */
+	private static class Shard {
+
+		private long[] keys;
+		private int[] visits;
+		private int[] wins;
+		private int[] moves;
+
+		//least recently used list, from oldest to newest
+		private int[] older;
+		private int[] newer;
+		private int oldest = -1;
+		private int newest = -1;
+
+		//open-addressed index of entry numbers plus one, 0 for an empty slot
+		private int[] index;
+		private int size = 0;
+
+		private long hits = 0;
+		private long misses = 0;
+		private long evictions = 0;
+
+		/**
+		 * Constructor for a <code>Shard</code> that fits in a number of bytes.
+		 *
+		 * @param bytes memory the shard may use
+		 */
+		private Shard(long bytes) {
+
+			int capacity = (int) Math.max(1, Math.min(1 << 29, bytes / (ENTRY_BYTES + 8)));
+			int slots = Integer.highestOneBit(2 * capacity - 1) << 1;
+
+			if ((long) capacity * ENTRY_BYTES + 4L * slots > bytes) {
+				capacity = (int) Math.max(1, (bytes - 4L * slots) / ENTRY_BYTES);
+			}
+
+			keys = new long[capacity];
+			visits = new int[capacity];
+			wins = new int[capacity];
+			moves = new int[capacity];
+			older = new int[capacity];
+			newer = new int[capacity];
+			index = new int[slots];
+		} //Shard
+
+		/**
+		 * Looks up a key and marks its entry as the most recently used.
+		 *
+		 * @param key canonical key of a position
+		 * @param entry entry to fill in if the key is found
+		 * @return boolean value whether the key was found
+		 */
+		private synchronized boolean get(long key, Entry entry) {
+
+			int e = find(key);
+
+			if (e < 0) {
+				misses++;
+				return false;
+			}
+
+			hits++;
+			touch(e);
+			entry.visits = visits[e];
+			entry.blackWins = wins[e];
+			entry.move = moves[e];
+
+			return true;
+		} //get
+
+		/**
+		 * Stores a result unless the shard holds one from more playouts,
+		 * evicting the least recently used entry if the shard is full.
+		 *
+		 * @param key canonical key of a position
+		 * @param playouts number of playouts through the position
+		 * @param blackWins number of those playouts black won
+		 * @param move best move in the canonical orientation, or -1
+		 */
+		private synchronized void put(long key, int playouts, int blackWins, int move) {
+
+			int e = find(key);
+
+			if (e < 0) {
+
+				if (size < keys.length) {
+					e = size++;
+				}
+				else {
+					e = oldest;
+					unindex(e);
+					unlink(e);
+					evictions++;
+				}
+
+				keys[e] = key;
+				visits[e] = 0;
+				insert(e);
+			}
+			else {
+				unlink(e);
+			}
+
+			link(e);
+
+			if (playouts >= visits[e]) {
+				visits[e] = playouts;
+				wins[e] = blackWins;
+				moves[e] = move;
+			}
+		} //put
+
+		/**
+		 * Finds the entry of a key.
+		 *
+		 * @param key canonical key of a position
+		 * @return entry number, or -1 if the key is not held
+		 */
+		private int find(long key) {
+
+			int mask = index.length - 1;
+
+			for (int i = slot(key) & mask; index[i] != 0; i = (i + 1) & mask) {
+				if (keys[index[i] - 1] == key) {
+					return index[i] - 1;
+				}
+			}
+
+			return -1;
+		} //find
+
+		/**
+		 * Adds an entry to the index.
+		 *
+		 * @param e entry number
+		 */
+		private void insert(int e) {
+
+			int mask = index.length - 1;
+			int i = slot(keys[e]) & mask;
+
+			while (index[i] != 0) {
+				i = (i + 1) & mask;
+			}
+
+			index[i] = e + 1;
+		} //insert
+
+		/**
+		 * Removes an entry from the index. Entries after it in the same run of
+		 * occupied slots are shifted back, as in <code>LongHashSet</code>.
+		 *
+		 * @param e entry number
+		 */
+		private void unindex(int e) {
+
+			int mask = index.length - 1;
+			int i = slot(keys[e]) & mask;
+
+			while (index[i] != e + 1) {
+				i = (i + 1) & mask;
+			}
+
+			int j = i;
+
+			while (true) {
+
+				j = (j + 1) & mask;
+
+				if (index[j] == 0) {
+					break;
+				}
+
+				int home = slot(keys[index[j] - 1]) & mask;
+
+				//move the entry back unless its home slot lies between the hole and j
+				boolean stays = (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+
+				if (!stays) {
+					index[i] = index[j];
+					i = j;
+				}
+			}
+
+			index[i] = 0;
+		} //unindex
+
+		/**
+		 * Moves an entry to the newest end of the list.
+		 *
+		 * @param e entry number
+		 */
+		private void touch(int e) {
+
+			if (e != newest) {
+				unlink(e);
+				link(e);
+			}
+		} //touch
+
+		/**
+		 * Adds an entry at the newest end of the list.
+		 *
+		 * @param e entry number
+		 */
+		private void link(int e) {
+
+			older[e] = newest;
+			newer[e] = -1;
+
+			if (newest >= 0) {
+				newer[newest] = e;
+			}
+			else {
+				oldest = e;
+			}
+
+			newest = e;
+		} //link
+
+		/**
+		 * Takes an entry out of the list.
+		 *
+		 * @param e entry number
+		 */
+		private void unlink(int e) {
+
+			if (older[e] >= 0) {
+				newer[older[e]] = newer[e];
+			}
+			else {
+				oldest = newer[e];
+			}
+
+			if (newer[e] >= 0) {
+				older[newer[e]] = older[e];
+			}
+			else {
+				newest = older[e];
+			}
+		} //unlink
+
+		/**
+		 * Gets the bytes held by the shard's arrays.
+		 *
+		 * @return size of the arrays in bytes
+		 */
+		private long bytes() {
+			return (long) keys.length * ENTRY_BYTES + 4L * index.length;
+		} //bytes
+	} //Shard
+
+	/**
+	 * Constructor for a <code>PositionCache</code> with four shards per core.
+	 *
+	 * @param maxBytes memory the cache may use
+	 */
+	public PositionCache(long maxBytes) {
+		this(maxBytes, 4 * Runtime.getRuntime().availableProcessors());
+	} //PositionCache
+
+	/**
+	 * Constructor for a <code>PositionCache</code>.
+	 *
+	 * @param maxBytes memory the cache may use
+	 * @param shardCount number of shards, rounded up to a power of two
+	 */
+	public PositionCache(long maxBytes, int shardCount) {
+
+		int count = Integer.highestOneBit(Math.max(1, 2 * shardCount - 1));
+
+		shards = new Shard[count];
+		shift = 64 - Integer.numberOfTrailingZeros(count);
+
+		for (int i = 0; i < count; i++) {
+			shards[i] = new Shard(maxBytes / count);
+		}
+	} //PositionCache
+
+	/**
+	 * Mixes the bits of a key into an index slot.
+	 *
+	 * @param key canonical key of a position
+	 * @return slot before masking
+	 */
+	private static int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+	} //slot
+
+	/**
+	 * Gets the shard that holds a key.
+	 *
+	 * @param key canonical key of a position
+	 * @return shard of the key
+	 */
+	private Shard shard(long key) {
+		return (shift == 64) ? shards[0] : shards[(int) (key >>> shift)];
+	} //shard
+
+	/**
+	 * Looks up the result stored for a position.
+	 *
+	 * @param key canonical key of the position
+	 * @param entry entry to fill in if the key is found
+	 * @return boolean value whether the key was found
+	 */
+	public boolean get(long key, Entry entry) {
+		return shard(key).get(key, entry);
+	} //get
+
+	/**
+	 * Stores the result of a search through a position, keeping any result
+	 * already held from more playouts.
+	 *
+	 * @param key canonical key of the position
+	 * @param playouts number of playouts through the position
+	 * @param blackWins number of those playouts black won
+	 * @param move best move in the canonical orientation, or -1 for a pass or none
+	 */
+	public void put(long key, int playouts, int blackWins, int move) {
+		shard(key).put(key, playouts, blackWins, move);
+	} //put
+
+	/**
+	 * Gets the number of lookups that found their key.
+	 *
+	 * @return number of hits
+	 */
+	public long getHits() {
+
+		long hits = 0;
+
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				hits += shard.hits;
+			}
+		}
+
+		return hits;
+	} //getHits
+
+	/**
+	 * Gets the number of lookups that did not find their key.
+	 *
+	 * @return number of misses
+	 */
+	public long getMisses() {
+
+		long misses = 0;
+
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				misses += shard.misses;
+			}
+		}
+
+		return misses;
+	} //getMisses
+
+	/**
+	 * Gets the fraction of lookups that found their key.
+	 *
+	 * @return hit rate from 0 to 1, or 0 before any lookup
+	 */
+	public double getHitRate() {
+
+		long hits = getHits();
+		long lookups = hits + getMisses();
+
+		return (lookups == 0) ? 0 : (double) hits / lookups;
+	} //getHitRate
+
+	/**
+	 * Gets the number of entries replaced to make room for new ones.
+	 *
+	 * @return number of evictions
+	 */
+	public long getEvictions() {
+
+		long evictions = 0;
+
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				evictions += shard.evictions;
+			}
+		}
+
+		return evictions;
+	} //getEvictions
+
+	/**
+	 * Gets the number of entries held.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+
+		int size = 0;
+
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				size += shard.size;
+			}
+		}
+
+		return size;
+	} //size
+
+	/**
+	 * Gets the number of entries the cache can hold before evicting.
+	 *
+	 * @return capacity in entries
+	 */
+	public int getCapacity() {
+
+		int capacity = 0;
+
+		for (Shard shard : shards) {
+			capacity += shard.keys.length;
+		}
+
+		return capacity;
+	} //getCapacity
+
+	/**
+	 * Gets the memory held by the cache's arrays.
+	 *
+	 * @return size in bytes
+	 */
+	public long getBytes() {
+
+		long bytes = 0;
+
+		for (Shard shard : shards) {
+			bytes += shard.bytes();
+		}
+
+		return bytes;
+	} //getBytes
+
+	/**
+	 * Describes the cache's size and hit rate on one line.
+	 *
+	 * @return entries, memory, hit rate and evictions
+	 */
+	public String report() {
+		return String.format("cache %d/%d entries in %d shards, %.1f MB, hit rate %.1f%% (%d/%d), evictions %d%n",
+				size(), getCapacity(), shards.length, getBytes() / 1048576.0, 100 * getHitRate(),
+				getHits(), getHits() + getMisses(), getEvictions());
+	} //report
+
+} //PositionCache
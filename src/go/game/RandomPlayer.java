@@ -0,0 +1,50 @@
+package go.game;
+
+import java.util.SplittableRandom;
+
+import go.game.Space.Resident;
+
+/**
+ * Class representing a computer player that plays a random legal move
+ * that does not fill one of its own eyes, and passes when there is none.
+ * Used to drive headless games.
+ * 
+ * @author Benjamin C. McKinley
+ */
+public class RandomPlayer extends Player {
+
+	private SplittableRandom random;
+	private Playout playout;
+
+	/**
+	 * Constructor for a <code>RandomPlayer</code> without a <code>Board</code>.
+	 * 
+	 * @param position position the player is using
+	 * @param selected color of player's pieces
+	 * @param seed seed for the player's moves
+	 */
+	public RandomPlayer(Position position, Resident selected, long seed) {
+		super(position, new MoveQueue(), selected);
+		this.random = new SplittableRandom(seed);
+		this.playout = new Playout(position.getWidth(), position.getHeight());
+	} //RandomPlayer
+
+	/**
+	 * Places a random piece or passes. Never waits.
+	 */
+	@Override
+	public void move() {
+
+		playout.reset(position);
+		int point = playout.selectMove(Position.code(selected), random);
+
+		//the playout ignores superko, so check against the real history
+		if (point >= 0 && position.isLegal(Position.code(selected), point)) {
+			place(point);
+		}
+		else {
+			pass();
+		}
+	} //move
+
+} //RandomPlayer
@@ -1,6 +1,9 @@
 package go.game;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import go.game.Space.Resident;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
@@ -16,6 +19,10 @@ import javafx.scene.text.Text;
  * Class containing a visual representation of the
  * scores. Additionally indicates the current turn.
  * 
+ * Scores may be updated from the game thread. Only the latest scores are
+ * kept and they are shown by one <code>Platform.runLater</code> task, so a
+ * burst of updates costs a single change to the nodes.
+ * 
  * @author Benjamin C. McKinley
  */
 public class ScoreBoard extends VBox {
@@ -23,6 +30,11 @@ public class ScoreBoard extends VBox {
 	private Text bScore, wScore;
 	private Rectangle bTurn, wTurn;
 
+	//latest scores, guarded by the lock on this
+	private double bLatest, wLatest;
+	private Resident currentLatest;
+	private AtomicBoolean scheduled = new AtomicBoolean();
+
 	/**
 	 * Constructor for <code>ScoreBoard</code>.
 	 */
@@ -39,8 +51,8 @@ public class ScoreBoard extends VBox {
 		wTurn.setStroke(Color.WHITE);
 		wTurn.setStrokeWidth(1);
 
-		bScore = new Text("0 Komi");
-		wScore = new Text("0 Komi");
+		bScore = new Text("0");
+		wScore = new Text(format(AreaScorer.DEFAULT_KOMI));
 
 		StackPane bToken = new StackPane();
 		StackPane wToken = new StackPane();
@@ -62,15 +74,43 @@ public class ScoreBoard extends VBox {
 
 	/**
 	 * Updates the scores on the <code>ScoreBoard</code> and updates
-	 * the color of the current move.
+	 * the color of the current move. May be called from any thread.
 	 * 
-	 * @param bNum number of black pieces
-	 * @param wNum number of white pieces
+	 * @param bNum black area score
+	 * @param wNum white area score including komi
 	 * @param current the current color in play
 	 */
-	public void updateScoreBoard(int bNum, int wNum, Resident current) {
-		bScore.setText(bNum + " Komi");
-		wScore.setText(wNum + " Komi");
+	public void updateScoreBoard(double bNum, double wNum, Resident current) {
+
+		synchronized (this) {
+			bLatest = bNum;
+			wLatest = wNum;
+			currentLatest = current;
+		}
+
+		if (scheduled.compareAndSet(false, true)) {
+			Platform.runLater(this::applyScores);
+		}
+	}
+
+	/**
+	 * Shows the latest scores. Runs on the FX thread.
+	 */
+	private void applyScores() {
+
+		scheduled.set(false);
+
+		double bNum, wNum;
+		Resident current;
+
+		synchronized (this) {
+			bNum = bLatest;
+			wNum = wLatest;
+			current = currentLatest;
+		}
+
+		bScore.setText(format(bNum));
+		wScore.setText(format(wNum));
 
 		if (current == Resident.WHITE) {
 			bTurn.setStroke(Color.BLACK);
@@ -81,4 +121,14 @@ public class ScoreBoard extends VBox {
 			wTurn.setStroke(Color.WHITE);
 		}
 	}
+
+	/**
+	 * Formats a score, leaving off the fraction for whole numbers.
+	 * 
+	 * @param score score to format
+	 * @return text of the score
+	 */
+	private static String format(double score) {
+		return (score == Math.rint(score)) ? String.valueOf((long) score) : String.valueOf(score);
+	}
 }
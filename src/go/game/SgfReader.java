@@ -0,0 +1,388 @@
+package go.game;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Class that reads the games of a Smart Game Format (SGF) collection one at
+ * a time. The input is scanned through a fixed character buffer and only the
+ * properties needed to replay a game are kept, so collections of any size
+ * can be read in constant memory. Comments and other properties are skipped
+ * without being stored.
+ *
+ * Only the main line of each game is read: the first variation is followed
+ * at every branch and the rest are skipped. Square board size (SZ), komi (KM),
+ * result (RE), setup stones (AB, AW, AE) and moves (B, W) are read; a move
+ * of "tt" on boards up to 19 is read as a pass, as in older files.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class SgfReader {
+
+	private static final int PASS = 0xFFFF;
+	private static final int DEFAULT_SIZE = 19;
+
+	private static final int SZ = id("SZ");
+	private static final int KM = id("KM");
+	private static final int RE = id("RE");
+	private static final int AB = id("AB");
+	private static final int AW = id("AW");
+	private static final int AE = id("AE");
+	private static final int B = id("B");
+	private static final int W = id("W");
+
+	private Reader in;
+	private char[] buffer = new char[8192];
+	private int position = 0;
+	private int limit = 0;
+	private int malformed = 0;
+
+	//main line of the game being read, as color << 16 | x << 8 | y
+	private int[] moves = new int[512];
+	private int moveCount;
+	private int[] setup = new int[32];
+	private int setupCount;
+	private StringBuilder value = new StringBuilder();
+	private int size;
+	private double komi;
+	private String result;
+	private boolean broken;
+
+	/**
+	 * Constructor for an <code>SgfReader</code>.
+	 *
+	 * @param in reader over the SGF text, closed by the caller
+	 */
+	public SgfReader(Reader in) {
+		this.in = in;
+	} //SgfReader
+
+	/**
+	 * Reads the next game of the collection. Games with an unsupported or
+	 * rectangular board size or unreadable points are skipped and counted as
+	 * malformed.
+	 *
+	 * @return the main line of the next game, or null at the end of the input
+	 * @throws IOException if the input cannot be read
+	 */
+	public GameRecord next() throws IOException {
+
+		while (true) {
+
+			int c;
+			while ((c = read()) != '(') {
+				if (c < 0) {
+					return null;
+				}
+			}
+
+			GameRecord record = readGame();
+
+			if (record != null) {
+				return record;
+			}
+		}
+	} //next
+
+	/**
+	 * Reads one game tree, the opening parenthesis already read.
+	 *
+	 * @return the main line of the game, or null if malformed
+	 * @throws IOException if the input cannot be read
+	 */
+	private GameRecord readGame() throws IOException {
+
+		moveCount = 0;
+		setupCount = 0;
+		size = DEFAULT_SIZE;
+		komi = AreaScorer.DEFAULT_KOMI;
+		result = null;
+		broken = false;
+
+		int depth = 1;
+		int property = 0;
+		boolean ident = false;
+		boolean mainLine = true;
+
+		while (depth > 0) {
+
+			int c = read();
+
+			if (c < 0) {
+				malformed++;
+				return null;
+			}
+			else if (c == '(') {
+				depth++;
+			}
+			else if (c == ')') {
+				depth--;
+				//the first variation to close ends the main line
+				mainLine = false;
+			}
+			else if (c == '[') {
+				ident = false;
+				boolean keep = mainLine && !broken && isKept(property);
+				readValue(keep);
+
+				if (keep) {
+					readProperty(property);
+				}
+			}
+			else if (c >= 'A' && c <= 'Z') {
+				property = ident ? property * 32 + (c - 'A' + 1) : (c - 'A' + 1);
+				ident = true;
+			}
+			else if (c == ';') {
+				ident = false;
+			}
+		}
+
+		if (broken || size < 1 || size > 52) {
+			malformed++;
+			return null;
+		}
+
+		return build();
+	} //readGame
+
+	/**
+	 * Reads a property value up to the closing bracket, the opening bracket
+	 * already read.
+	 *
+	 * @param keep whether to keep the value in <code>value</code>
+	 * @throws IOException if the input ends inside the value
+	 */
+	private void readValue(boolean keep) throws IOException {
+
+		value.setLength(0);
+
+		int c;
+		while ((c = read()) != ']') {
+
+			if (c < 0) {
+				throw new IOException("Unterminated SGF property value");
+			}
+			if (c == '\\') {
+				c = read();
+			}
+			if (keep) {
+				value.append((char) c);
+			}
+		}
+	} //readValue
+
+	/**
+	 * Checks whether a property is needed to replay the game.
+	 *
+	 * @param property packed property identifier
+	 * @return boolean value whether the property is kept
+	 */
+	private static boolean isKept(int property) {
+		return property == B || property == W || property == AB || property == AW
+				|| property == AE || property == SZ || property == KM || property == RE;
+	} //isKept
+
+	/**
+	 * Applies one value of a kept property.
+	 *
+	 * @param property packed property identifier
+	 */
+	private void readProperty(int property) {
+
+		if (property == B || property == W) {
+
+			int point = parsePoint(0);
+
+			if (point < 0) {
+				broken = true;
+				return;
+			}
+
+			if (moveCount == moves.length) {
+				moves = Arrays.copyOf(moves, 2 * moves.length);
+			}
+
+			moves[moveCount++] = (property == B ? Position.BLACK : Position.WHITE) << 16 | point;
+		}
+		else if (property == AB || property == AW || property == AE) {
+			addSetup(property == AB ? Position.BLACK : property == AW ? Position.WHITE : Position.VACANT);
+		}
+		else if (property == SZ) {
+			try {
+				int colon = value.indexOf(":");
+				size = Integer.parseInt(value.substring(0, colon < 0 ? value.length() : colon).trim());
+
+				//records are square, so a rectangular board is skipped rather than replayed wrong
+				if (colon >= 0 && Integer.parseInt(value.substring(colon + 1).trim()) != size) {
+					broken = true;
+				}
+			} catch (NumberFormatException e) {
+				broken = true;
+			}
+		}
+		else if (property == KM) {
+			try {
+				komi = Double.parseDouble(value.toString().trim());
+			} catch (NumberFormatException e) {
+				//keep the default komi
+			}
+		}
+		else if (property == RE) {
+			result = value.toString();
+		}
+	} //readProperty
+
+	/**
+	 * Adds the setup stones of one value, either a single point or a
+	 * rectangle written as two corners.
+	 *
+	 * @param color color code of the stones
+	 */
+	private void addSetup(byte color) {
+
+		int from = parsePoint(0);
+		int to = (value.length() == 5 && value.charAt(2) == ':') ? parsePoint(3) : from;
+
+		if (from < 0 || to < 0 || from == PASS || to == PASS) {
+			broken = true;
+			return;
+		}
+
+		for (int x = from >> 8; x <= to >> 8; x++) {
+			for (int y = from & 0xFF; y <= (to & 0xFF); y++) {
+
+				if (setupCount == setup.length) {
+					setup = Arrays.copyOf(setup, 2 * setup.length);
+				}
+
+				setup[setupCount++] = color << 16 | x << 8 | y;
+			}
+		}
+	} //addSetup
+
+	/**
+	 * Parses the two letters of a point in <code>value</code>.
+	 *
+	 * @param start index of the first letter
+	 * @return point as x << 8 | y, <code>PASS</code> for an empty value, or -1 if unreadable
+	 */
+	private int parsePoint(int start) {
+
+		if (value.length() == start) {
+			return PASS;
+		}
+		if (value.length() < start + 2) {
+			return -1;
+		}
+
+		int x = SgfWriter.coordinate(value.charAt(start));
+		int y = SgfWriter.coordinate(value.charAt(start + 1));
+
+		return (x < 0 || y < 0) ? -1 : x << 8 | y;
+	} //parsePoint
+
+	/**
+	 * Builds a record from the main line just read, now that the board size
+	 * is known.
+	 *
+	 * @return the record, or null if a point is off the board
+	 */
+	private GameRecord build() {
+
+		GameRecord record = new GameRecord(size);
+		record.setKomi(komi);
+		record.setResult(result);
+
+		for (int i = 0; i < setupCount; i++) {
+
+			int p = toIndex(setup[i] & 0xFFFF);
+
+			if (p < 0) {
+				malformed++;
+				return null;
+			}
+
+			record.addSetup((byte) (setup[i] >>> 16), p);
+		}
+
+		for (int i = 0; i < moveCount; i++) {
+
+			int raw = moves[i] & 0xFFFF;
+			int p = (raw == PASS || (size <= 19 && raw == (19 << 8 | 19))) ? -1 : toIndex(raw);
+
+			if (p < 0 && raw != PASS && raw != (19 << 8 | 19)) {
+				malformed++;
+				return null;
+			}
+
+			record.addMove((byte) (moves[i] >>> 16), p);
+		}
+
+		return record;
+	} //build
+
+	/**
+	 * Converts a parsed point to an index on the board being read.
+	 *
+	 * @param raw point as x << 8 | y
+	 * @return index of the point, or -1 if off the board
+	 */
+	private int toIndex(int raw) {
+
+		int x = raw >> 8;
+		int y = raw & 0xFF;
+
+		return (x < size && y < size) ? size * x + y : -1;
+	} //toIndex
+
+	/**
+	 * Reads one character through the buffer.
+	 *
+	 * @return the character, or -1 at the end of the input
+	 * @throws IOException if the input cannot be read
+	 */
+	private int read() throws IOException {
+
+		if (position == limit) {
+			limit = in.read(buffer, 0, buffer.length);
+			position = 0;
+
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+
+		return buffer[position++];
+	} //read
+
+	/**
+	 * Packs a property identifier of up to six letters into an
+	 * <code>int</code>.
+	 *
+	 * @param name identifier in capital letters
+	 * @return packed identifier
+	 */
+	private static int id(String name) {
+
+		int id = 0;
+
+		for (int i = 0; i < name.length(); i++) {
+			id = id * 32 + (name.charAt(i) - 'A' + 1);
+		}
+
+		return id;
+	} //id
+
+	/**
+	 * Getter method for <code>malformed</code>.
+	 *
+	 * @return number of games skipped because they could not be read
+	 */
+	public int getMalformed() {
+		return malformed;
+	} //getMalformed
+
+} //SgfReader
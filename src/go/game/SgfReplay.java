@@ -0,0 +1,204 @@
+package go.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command line harness that replays SGF collections through the rules of
+ * <code>Position</code>. Files are read in parallel, one per worker thread,
+ * and each is streamed game by game with an <code>SgfReader</code>, so
+ * archives of any size can be checked. Every move is validated before it is
+ * played, and games with an illegal move are reported along with the
+ * throughput in positions per second.
+ *
+ * Recorded games are played under many rule sets, so positional superko is
+ * not enforced during replay; simple ko and suicide still are.
+ *
+ * Usage: <code>java go.game.SgfReplay [-t threads] file or directory...</code>
+ *
+ * @author Benjamin C. McKinley
+ */
+public class SgfReplay {
+
+	private static final int MAX_REPORTED = 20;
+
+	private int threads;
+	private AtomicLong games = new AtomicLong();
+	private AtomicLong positions = new AtomicLong();
+	private AtomicLong captures = new AtomicLong();
+	private AtomicLong illegal = new AtomicLong();
+	private AtomicLong malformed = new AtomicLong();
+
+	//one reusable position per board size on each worker
+	private ThreadLocal<Position[]> scratch = ThreadLocal.withInitial(() -> new Position[53]);
+
+	/**
+	 * Constructor for an <code>SgfReplay</code>.
+	 *
+	 * @param threads number of worker threads
+	 */
+	public SgfReplay(int threads) {
+		this.threads = threads;
+	} //SgfReplay
+
+	/**
+	 * Replays every file and prints a report.
+	 *
+	 * @param files SGF files to replay
+	 * @throws IOException if a file cannot be read
+	 * @throws InterruptedException if interrupted while waiting for the workers
+	 */
+	public void run(List<Path> files) throws IOException, InterruptedException {
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> results = new ArrayList<>();
+		long start = System.nanoTime();
+
+		try {
+			for (Path file : files) {
+				results.add(pool.submit(() -> {
+					replay(file);
+					return null;
+				}));
+			}
+
+			for (Future<?> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d files, %d games, %d positions in %.2f s%n",
+				files.size(), games.get(), positions.get(), seconds);
+		System.out.printf("%.0f positions/s, %.0f games/s, %.3f captures/move%n",
+				positions.get() / seconds, games.get() / seconds,
+				(double) captures.get() / Math.max(positions.get(), 1));
+		System.out.printf("%d games with an illegal move, %d malformed games skipped%n",
+				illegal.get(), malformed.get());
+	} //run
+
+	/**
+	 * Replays every game of one file.
+	 *
+	 * @param file SGF file to replay
+	 * @throws IOException if the file cannot be read
+	 */
+	private void replay(Path file) throws IOException {
+
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+
+			SgfReader reader = new SgfReader(in);
+			GameRecord record;
+			int game = 0;
+
+			while ((record = reader.next()) != null) {
+
+				Position position = position(record.getSize());
+				int played = replay(record, position);
+
+				positions.addAndGet(played);
+				games.incrementAndGet();
+
+				if (played < record.getMoveCount() && illegal.incrementAndGet() <= MAX_REPORTED) {
+					System.out.println(file + " game " + game + ": illegal move " + (played + 1));
+				}
+
+				game++;
+			}
+
+			malformed.addAndGet(reader.getMalformed());
+		}
+	} //replay
+
+	/**
+	 * Replays one game, counting the stones captured along the way.
+	 *
+	 * @param record game to replay
+	 * @param position position of the same size to replay onto
+	 * @return number of moves played before the first illegal move
+	 */
+	private int replay(GameRecord record, Position position) {
+
+		int played = record.replay(position);
+		captures.addAndGet(position.getBlackCaptures() + position.getWhiteCaptures());
+
+		return played;
+	} //replay
+
+	/**
+	 * Gets this worker's reusable position for a board size.
+	 *
+	 * @param size size of the board
+	 * @return position without superko
+	 */
+	private Position position(int size) {
+
+		Position[] positions = scratch.get();
+
+		if (positions[size] == null) {
+			positions[size] = new Position(size);
+			positions[size].setSuperko(false);
+		}
+
+		return positions[size];
+	} //position
+
+	/**
+	 * Runs the replay from the command line.
+	 *
+	 * @param args optional thread count, then SGF files or directories to search for them
+	 * @throws Exception if the replay fails
+	 */
+	public static void main(String[] args) throws Exception {
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<Path> files = new ArrayList<>();
+
+		for (int i = 0; i < args.length; i++) {
+
+			if (args[i].equals("-t") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			}
+			else if (Files.isDirectory(Paths.get(args[i]))) {
+				try (Stream<Path> walk = Files.walk(Paths.get(args[i]))) {
+					files.addAll(walk.filter(p -> p.toString().toLowerCase().endsWith(".sgf"))
+							.collect(Collectors.toList()));
+				}
+			}
+			else {
+				files.add(Paths.get(args[i]));
+			}
+		}
+
+		if (files.isEmpty()) {
+			System.out.println("Usage: java go.game.SgfReplay [-t threads] file or directory...");
+			return;
+		}
+
+		new SgfReplay(threads).run(files);
+	} //main
+
+} //SgfReplay
@@ -0,0 +1,129 @@
+package go.game;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Class that writes a <code>GameRecord</code> as a Smart Game Format (SGF)
+ * file. Points are written as two letters, the column then the row, using
+ * 'a' to 'z' and then 'A' to 'Z' for boards up to 52 wide, and passes are
+ * written as empty moves.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class SgfWriter {
+
+	/**
+	 * Writes a record to a new file, replacing any file at the path.
+	 *
+	 * @param record record to write
+	 * @param file path of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(GameRecord record, Path file) throws IOException {
+
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			write(record, out);
+		}
+	} //write
+
+	/**
+	 * Writes a record as a single SGF game tree.
+	 *
+	 * @param record record to write
+	 * @param out writer to write to, left open
+	 * @throws IOException if the record cannot be written
+	 */
+	public static void write(GameRecord record, Writer out) throws IOException {
+
+		int size = record.getSize();
+		StringBuilder sgf = new StringBuilder(32 + 6 * record.getMoveCount());
+
+		sgf.append("(;FF[4]GM[1]CA[UTF-8]AP[Go]");
+		sgf.append("SZ[").append(size).append(']');
+		sgf.append("KM[").append(record.getKomi()).append(']');
+		sgf.append("DT[").append(LocalDate.now()).append(']');
+
+		if (record.getResult() != null) {
+			sgf.append("RE[").append(record.getResult()).append(']');
+		}
+
+		for (byte color = Position.VACANT; color <= Position.WHITE; color++) {
+
+			boolean first = true;
+
+			for (int i = 0; i < record.getSetupCount(); i++) {
+
+				if (record.getSetupColor(i) == color) {
+
+					if (first) {
+						sgf.append(color == Position.BLACK ? "AB" : color == Position.WHITE ? "AW" : "AE");
+						first = false;
+					}
+
+					sgf.append('[');
+					appendPoint(sgf, record.getSetupPoint(i), size);
+					sgf.append(']');
+				}
+			}
+		}
+
+		for (int i = 0; i < record.getMoveCount(); i++) {
+
+			sgf.append(i % 16 == 0 ? "\n;" : ";");
+			sgf.append(record.getColor(i) == Position.BLACK ? 'B' : 'W').append('[');
+			appendPoint(sgf, record.getPoint(i), size);
+			sgf.append(']');
+		}
+
+		sgf.append(")\n");
+		out.write(sgf.toString());
+	} //write
+
+	/**
+	 * Appends the two letters of a point, or nothing for a pass.
+	 *
+	 * @param sgf builder to append to
+	 * @param p index of the point, or -1 for a pass
+	 * @param size size of the board
+	 */
+	private static void appendPoint(StringBuilder sgf, int p, int size) {
+
+		if (p >= 0) {
+			sgf.append(letter(p / size)).append(letter(p % size));
+		}
+	} //appendPoint
+
+	/**
+	 * Gets the SGF letter for a coordinate.
+	 *
+	 * @param coordinate coordinate from 0 to 51
+	 * @return letter for the coordinate
+	 */
+	static char letter(int coordinate) {
+		return (char) (coordinate < 26 ? 'a' + coordinate : 'A' + coordinate - 26);
+	} //letter
+
+	/**
+	 * Gets the coordinate of an SGF letter.
+	 *
+	 * @param letter letter from 'a' to 'z' or 'A' to 'Z'
+	 * @return coordinate from 0 to 51, or -1 if not a coordinate letter
+	 */
+	static int coordinate(char letter) {
+
+		if (letter >= 'a' && letter <= 'z') {
+			return letter - 'a';
+		}
+		if (letter >= 'A' && letter <= 'Z') {
+			return letter - 'A' + 26;
+		}
+
+		return -1;
+	} //coordinate
+
+} //SgfWriter
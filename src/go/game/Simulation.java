@@ -0,0 +1,179 @@
+package go.game;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import go.game.Space.Resident;
+
+/**
+ * Command line harness that plays batches of complete games with no UI.
+ * Each game is a headless <code>Game</code> between two
+ * <code>RandomPlayer</code>s, and games run in parallel on a pool of worker
+ * threads. One line per game is written to a CSV file, and throughput,
+ * captures per move and move latency percentiles are printed for every board
+ * size in <code>Game.BOARD_SIZES</code>. Games may also be appended to a
+ * <code>GameArchive</code>.
+ *
+ * Usage: <code>java go.game.Simulation [games per size] [threads] [output file] [archive]</code>
+ *
+ * @author Benjamin C. McKinley
+ */
+public class Simulation {
+
+	private int games;
+	private int threads;
+	private String output;
+	private GameArchive archive;
+
+	/**
+	 * Constructor for a <code>Simulation</code>.
+	 *
+	 * @param games number of games to play on each board size
+	 * @param threads number of worker threads
+	 * @param output path of the CSV file to write results to
+	 */
+	public Simulation(int games, int threads, String output) {
+		this.games = games;
+		this.threads = threads;
+		this.output = output;
+	} //Simulation
+
+	/**
+	 * Setter method for <code>archive</code>.
+	 *
+	 * @param archive archive every game is appended to, or null
+	 */
+	public void setArchive(GameArchive archive) {
+		this.archive = archive;
+	} //setArchive
+
+	/**
+	 * Class holding the totals for one board size.
+	 */
+	private static class Totals implements MoveListener {
+
+		private AtomicLong moves = new AtomicLong();
+		private AtomicLong captures = new AtomicLong();
+		private LatencyHistogram latency = new LatencyHistogram();
+
+		@Override
+		public void moved(Game game, byte color, int point, int captured, long nanos) {
+			moves.incrementAndGet();
+			captures.addAndGet(captured);
+			latency.record(nanos);
+		} //moved
+	} //Totals
+
+	/**
+	 * Plays every batch and prints a report for each board size.
+	 *
+	 * @throws IOException if the results cannot be written
+	 * @throws InterruptedException if interrupted while waiting for games
+	 */
+	public void run() throws IOException, InterruptedException {
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(output)))) {
+
+			out.println("size,game,moves,captures,black,white,winner");
+			System.out.printf("%6s %8s %12s %12s %14s %10s %10s%n",
+					"size", "games", "games/s", "moves/s", "captures/move", "p50 us", "p99 us");
+
+			for (int size : Game.BOARD_SIZES) {
+
+				Totals totals = new Totals();
+				List<Future<String>> results = new ArrayList<>();
+				long start = System.nanoTime();
+
+				for (int i = 0; i < games; i++) {
+					int id = i;
+					results.add(pool.submit(() -> play(size, id, totals, archive)));
+				}
+
+				for (Future<String> result : results) {
+					try {
+						out.println(result.get());
+					} catch (ExecutionException e) {
+						throw new IllegalStateException(e.getCause());
+					}
+				}
+
+				double seconds = (System.nanoTime() - start) / 1e9;
+				long moves = totals.moves.get();
+
+				System.out.printf("%6d %8d %12.1f %12.0f %14.3f %10.1f %10.1f%n", size, games,
+						games / seconds, moves / seconds, (double) totals.captures.get() / Math.max(moves, 1),
+						totals.latency.percentile(0.5) / 1e3, totals.latency.percentile(0.99) / 1e3);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	} //run
+
+	/**
+	 * Plays one complete game.
+	 *
+	 * @param size size of the board
+	 * @param id number of the game within its batch, used as its seed
+	 * @param totals totals for the board size
+	 * @param archive archive to append the game to, or null
+	 * @return CSV line describing the finished game
+	 */
+	private static String play(int size, int id, Totals totals, GameArchive archive) {
+
+		Position position = new Position(size);
+		long seed = (long) size << 32 | id;
+
+		Game game = new Game(position,
+				new RandomPlayer(position, Resident.BLACK, seed),
+				new RandomPlayer(position, Resident.WHITE, ~seed));
+		game.setMoveLimit(3 * size * size);
+		game.addMoveListener(totals);
+		game.setArchive(archive);
+		game.run();
+
+		AreaScorer scorer = position.getScorer();
+		double black = scorer.getBlackArea();
+		double white = scorer.getWhiteArea();
+		int captures = position.getBlackCaptures() + position.getWhiteCaptures();
+
+		return size + "," + id + "," + game.getMoveCount() + "," + captures + ","
+				+ black + "," + white + "," + (black > white ? "B" : "W");
+	} //play
+
+	/**
+	 * Runs the simulation from the command line.
+	 *
+	 * @param args games per size, number of threads, output file and archive, all optional
+	 * @throws Exception if the simulation fails
+	 */
+	public static void main(String[] args) throws Exception {
+
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		String output = (args.length > 2) ? args[2] : "simulation.csv";
+
+		Simulation simulation = new Simulation(games, threads, output);
+
+		if (args.length > 3) {
+			try (GameArchive archive = new GameArchive(Paths.get(args[3]))) {
+				simulation.setArchive(archive);
+				simulation.run();
+			}
+		}
+		else {
+			simulation.run();
+		}
+	} //main
+
+} //Simulation
@@ -1,17 +1,27 @@
 package go.game;
 
+import javafx.scene.effect.ColorAdjust;
 import javafx.scene.image.ImageView;
 
 /**
- * Class representing a space on a board. Provides methods
- * to change the state and image of the object.
+ * Class representing a space on a board. Mirrors one point of a
+ * <code>Position</code> and provides methods to change the state and
+ * image of the object.
  * 
  * @author Benjamin C. McKinley
  */
 public class Space extends ImageView {
 
+	public static final int HIGHLIGHT = 7;
+
+	//opacity of a highlight for the weakest move hint
+	public static final double FAINTEST = 0.35;
+
+	//opacity of a dead stone, and how far territory is darkened or lightened
+	public static final double DEAD = 0.4;
+	public static final double TERRITORY = 0.6;
+
 	private Resident resident;
-	private boolean seen = false;
 
 	SpriteSheet pieces;
 
@@ -40,39 +50,82 @@ public class Space extends ImageView {
 	 */
 	public void updatePiece() {
 
+		setViewport(pieces.getSprite(sprite(resident)));
+		setOpacity(1);
+		setEffect(null);
+	} //updatePiece
+
+	/**
+	 * Gets the index of the sprite drawn for a state.
+	 * 
+	 * @param resident state of a point
+	 * @return index of the sprite in the pieces <code>SpriteSheet</code>
+	 */
+	public static int sprite(Resident resident) {
+
 		switch(resident) {
 		case WHITE:
-			setViewport(pieces.getSprite(2));
-			break;
+			return 2;
 		case BLACK:
-			setViewport(pieces.getSprite(0));
-			break;
-		case VACANT:
-			setViewport(pieces.getSprite(4));
+			return 0;
+		default:
+			return 4;
 		}
-	} //updatePiece
+	} //sprite
 
 	/**
 	 * Changes sprite of a vacant <code>Space</code> to indicate it is being hovered over.
+	 * The highlight is drawn stronger for moves with a stronger hint.
+	 * 
+	 * @param hint strength of the move from 0 to 1
 	 */
-	public void highlight() {
+	public void highlight(double hint) {
 
 		if (resident == Resident.VACANT) {
-			setViewport(pieces.getSprite(7));
+			setViewport(pieces.getSprite(HIGHLIGHT));
+			setOpacity(opacity(hint));
 		}
 
 	} //highlight
 
 	/**
-	 * Indicates whether a piece belongs to the same type as the
-	 * parameter piece.
+	 * Gets the opacity of a highlight for a move hint.
+	 * 
+	 * @param hint strength of the move from 0 to 1
+	 * @return opacity from <code>FAINTEST</code> to 1
+	 */
+	public static double opacity(double hint) {
+		return FAINTEST + (1 - FAINTEST) * Math.min(1, Math.max(0, hint));
+	} //opacity
+
+	/**
+	 * Shows who owns the <code>Space</code> at the end of the game. A dead
+	 * piece is faded, and a vacant space is darkened for black territory
+	 * or lightened for white, more so the surer the owner.
+	 * 
+	 * @param owner from 1 if black owns the space to -1 if white does
+	 * @param dead boolean value whether the piece on the space is dead
+	 */
+	public void showOwner(double owner, boolean dead) {
+
+		if (resident == Resident.VACANT) {
+			setEffect(shade(owner));
+		}
+		else {
+			setOpacity(dead ? DEAD : 1);
+		}
+
+	} //showOwner
+
+	/**
+	 * Gets the effect that shades a vacant point for its owner.
 	 * 
-	 * @param space piece to check
-	 * @return boolean value of whether a piece belongs to the opponent
+	 * @param owner from 1 if black owns the point to -1 if white does
+	 * @return effect darkening black territory and lightening white
 	 */
-	public boolean belongsToOpponent(Space space) {
-		return resident != space.getResident();
-	} //belongsToOpponent
+	public static ColorAdjust shade(double owner) {
+		return new ColorAdjust(0, 0, -TERRITORY * owner, 0);
+	} //shade
 
 	/**
 	 * Sets pieces state to the parameter state and updates
@@ -85,15 +138,6 @@ public class Space extends ImageView {
 		updatePiece();
 	} //setResident
 
-	/**
-	 * Sets if the object has been checked.
-	 * 
-	 * @param seen boolean value for if a <code>Space</code> has been checked yet
-	 */
-	public void setSeen(boolean seen) {
-		this.seen = seen;
-	} //setSeen
-
 	/**
 	 * Getter method for state of <code>Space</code>.
 	 * 
@@ -103,13 +147,4 @@ public class Space extends ImageView {
 		return resident;
 	} //getResident
 
-	/**
-	 * Getter method for <code>seen</code>.
-	 * 
-	 * @return whether the piece has been checked yet
-	 */
-	public boolean getSeen() {
-		return seen;
-	} //getSeen
-
 } //Space
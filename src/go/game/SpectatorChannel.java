@@ -0,0 +1,531 @@
+package go.game;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that broadcasts a live game to any number of spectators. A new
+ * <code>Subscriber</code> is sent one snapshot of the board, and after that
+ * one small delta per move: the point played, the stones it captured and
+ * the change in each side's area score. Each delta is encoded once on the
+ * game thread into a read-only buffer, and every subscriber is handed a
+ * duplicate of it, so the bytes are shared rather than copied or encoded
+ * again per spectator.
+ *
+ * Subscribers have bounded queues. The game thread only ever offers to a
+ * queue, so a slow spectator can never hold up <code>Game.run</code>. When
+ * a queue is full its subscriber is marked as lagging and its queued frames
+ * are dropped, and the next frame it takes is a fresh snapshot, after which
+ * it carries on with the deltas.
+ *
+ * Every frame starts with its length as an unsigned short, a type byte and
+ * a sequence number, followed by, for each type:
+ *
+ * <pre>
+ * SNAPSHOT  width, height, to move (bytes), black and white area in half
+ *           points (ints), board at two bits per point
+ * MOVE      color (byte), point or -1 (short), captured count (short),
+ *           captured points (shorts), black and white area change in half
+ *           points (shorts)
+ * END       result length (byte), result in ASCII
+ * </pre>
+ *
+ * @author Benjamin C. McKinley
+ */
+public class SpectatorChannel implements MoveListener {
+
+	public static final byte SNAPSHOT = 'S';
+	public static final byte MOVE = 'M';
+	public static final byte END = 'E';
+
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static final int HEADER = 7;
+
+	//queued in place of a dropped backlog to wake a waiting subscriber
+	private static final ByteBuffer RESYNC = ByteBuffer.allocate(0);
+
+	private int width, height;
+	private int capacity;
+	private List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+	private AtomicLong encoded = new AtomicLong();
+	private AtomicLong dropped = new AtomicLong();
+
+	//mirror of the game as broadcast, guarded by the lock on this
+	private byte[] board;
+	private byte toMove = Position.BLACK;
+	private int blackHalves, whiteHalves;
+	private int sequence = 0;
+	private ByteBuffer ending;
+
+	/**
+	 * Class representing one spectator's view of the channel.
+	 */
+	public class Subscriber {
+
+		private BlockingQueue<ByteBuffer> frames = new ArrayBlockingQueue<>(capacity);
+		private volatile boolean lagging = false;
+		private volatile boolean closed = false;
+
+		/**
+		 * Offers a frame without waiting. Runs on the game thread.
+		 *
+		 * @param frame shared frame to send
+		 */
+		private void offer(ByteBuffer frame) {
+
+			if (lagging || closed) {
+				return;
+			}
+
+			if (!frames.offer(frame.duplicate())) {
+				lagging = true;
+				frames.clear();
+				frames.offer(RESYNC);
+				dropped.incrementAndGet();
+			}
+		} //offer
+
+		/**
+		 * Waits for the next frame. After falling behind, the next frame is
+		 * a snapshot of the game as it is now.
+		 *
+		 * @param millis longest time to wait in milliseconds
+		 * @return read-only frame positioned at its length, or null if none arrived in time
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		public ByteBuffer poll(long millis) throws InterruptedException {
+
+			ByteBuffer frame = (lagging) ? null : frames.poll(millis, TimeUnit.MILLISECONDS);
+
+			if (lagging) {
+				return resync(this);
+			}
+
+			return frame;
+		} //poll
+
+		/**
+		 * Stops receiving frames.
+		 */
+		public void close() {
+			closed = true;
+			subscribers.remove(this);
+			frames.clear();
+		} //close
+
+		/**
+		 * Checks whether this subscriber has received the end of the game or
+		 * been closed.
+		 *
+		 * @return boolean value whether no more frames will arrive
+		 */
+		public boolean isDone() {
+
+			//the end is the last frame offered, so once it has been the queue can only shrink
+			return closed || (isEnded() && !lagging && frames.isEmpty());
+		} //isDone
+	} //Subscriber
+
+	/**
+	 * Constructor for a <code>SpectatorChannel</code> of a game that has
+	 * not started.
+	 *
+	 * @param position position the game is played on
+	 * @param capacity number of frames each subscriber may fall behind by
+	 */
+	public SpectatorChannel(Position position, int capacity) {
+
+		this.capacity = capacity;
+		width = position.getWidth();
+		height = position.getHeight();
+		board = new byte[width * height];
+		mirror(position);
+	} //SpectatorChannel
+
+	/**
+	 * Adds a spectator. The first frame it takes is a snapshot of the game
+	 * as broadcast so far, followed by every later frame in order.
+	 *
+	 * @return the new subscriber
+	 */
+	public synchronized Subscriber subscribe() {
+
+		Subscriber subscriber = new Subscriber();
+		subscriber.frames.offer(snapshot());
+
+		if (ending != null) {
+			subscriber.frames.offer(ending.duplicate());
+		}
+
+		subscribers.add(subscriber);
+		return subscriber;
+	} //subscribe
+
+	/**
+	 * Replaces a lagging subscriber's backlog with a snapshot.
+	 *
+	 * @param subscriber subscriber that fell behind
+	 * @return the snapshot frame
+	 */
+	private synchronized ByteBuffer resync(Subscriber subscriber) {
+
+		subscriber.frames.clear();
+		subscriber.lagging = false;
+
+		if (ending != null) {
+			subscriber.frames.offer(ending.duplicate());
+		}
+
+		return snapshot();
+	} //resync
+
+	@Override
+	public void moved(Game game, byte color, int point, int captured, long nanos) {
+
+		Position position = game.getPosition();
+		AreaScorer scorer = position.getScorer();
+		int[] points = position.getCaptured();
+		int count = position.getCapturedCount();
+		int black = (int) (2 * scorer.getBlackArea());
+		int white = (int) (2 * scorer.getWhiteArea());
+
+		synchronized (this) {
+
+			if (point >= 0) {
+				board[point] = color;
+			}
+			for (int i = 0; i < count; i++) {
+				board[points[i]] = Position.VACANT;
+			}
+
+			toMove = position.getToMove();
+			int blackChange = black - blackHalves;
+			int whiteChange = white - whiteHalves;
+			blackHalves = black;
+			whiteHalves = white;
+			sequence++;
+
+			if (subscribers.isEmpty()) {
+				return;
+			}
+
+			ByteBuffer frame = ByteBuffer.allocate(HEADER + 1 + 2 + 2 + 2 * count + 4);
+			header(frame, MOVE);
+			frame.put(color);
+			frame.putShort((short) point);
+			frame.putShort((short) count);
+
+			for (int i = 0; i < count; i++) {
+				frame.putShort((short) points[i]);
+			}
+
+			frame.putShort((short) blackChange);
+			frame.putShort((short) whiteChange);
+
+			broadcast(frame);
+		}
+	} //moved
+
+	@Override
+	public void undone(Game game) {
+
+		synchronized (this) {
+
+			mirror(game.getPosition());
+			sequence++;
+
+			if (!subscribers.isEmpty()) {
+				broadcast(snapshot().duplicate());
+			}
+		}
+	} //undone
+
+	@Override
+	public void ended(Game game) {
+
+		String result = game.getPosition().getScorer().getResult();
+		byte[] text = result.getBytes(StandardCharsets.US_ASCII);
+
+		synchronized (this) {
+
+			sequence++;
+
+			ByteBuffer frame = ByteBuffer.allocate(HEADER + 1 + text.length);
+			header(frame, END);
+			frame.put((byte) text.length);
+			frame.put(text);
+
+			ending = finish(frame);
+
+			for (Subscriber subscriber : subscribers) {
+				subscriber.offer(ending);
+			}
+		}
+	} //ended
+
+	/**
+	 * Copies the whole board and scores of a position into the mirror. Runs
+	 * on the game thread or before the game starts.
+	 *
+	 * @param position position to copy
+	 */
+	private synchronized void mirror(Position position) {
+
+		for (int p = 0; p < board.length; p++) {
+			board[p] = position.get(p);
+		}
+
+		AreaScorer scorer = position.getScorer();
+		toMove = position.getToMove();
+		blackHalves = (int) (2 * scorer.getBlackArea());
+		whiteHalves = (int) (2 * scorer.getWhiteArea());
+	} //mirror
+
+	/**
+	 * Encodes a snapshot of the mirror.
+	 *
+	 * @return read-only snapshot frame
+	 */
+	private ByteBuffer snapshot() {
+
+		ByteBuffer frame = ByteBuffer.allocate(HEADER + 3 + 8 + (board.length + 3) / 4);
+		header(frame, SNAPSHOT);
+		frame.put((byte) width);
+		frame.put((byte) height);
+		frame.put(toMove);
+		frame.putInt(blackHalves);
+		frame.putInt(whiteHalves);
+
+		for (int p = 0; p < board.length; p += 4) {
+
+			int packed = 0;
+
+			for (int i = 0; i < 4 && p + i < board.length; i++) {
+				packed |= board[p + i] << (2 * i);
+			}
+
+			frame.put((byte) packed);
+		}
+
+		return finish(frame);
+	} //snapshot
+
+	/**
+	 * Writes the length, type and sequence number at the start of a frame.
+	 *
+	 * @param frame frame being encoded
+	 * @param type type of the frame
+	 */
+	private void header(ByteBuffer frame, byte type) {
+		frame.putShort((short) frame.capacity());
+		frame.put(type);
+		frame.putInt(sequence);
+	} //header
+
+	/**
+	 * Flips an encoded frame and makes it read-only for sharing.
+	 *
+	 * @param frame frame that has been encoded
+	 * @return read-only frame positioned at its start
+	 */
+	private ByteBuffer finish(ByteBuffer frame) {
+		frame.flip();
+		encoded.incrementAndGet();
+		return frame.asReadOnlyBuffer();
+	} //finish
+
+	/**
+	 * Finishes a frame and offers it to every subscriber.
+	 *
+	 * @param frame frame that has been encoded
+	 */
+	private void broadcast(ByteBuffer frame) {
+
+		ByteBuffer shared = (frame.isReadOnly()) ? frame : finish(frame);
+
+		for (Subscriber subscriber : subscribers) {
+			subscriber.offer(shared);
+		}
+	} //broadcast
+
+	/**
+	 * Checks whether the end of the game has been broadcast.
+	 *
+	 * @return boolean value whether the game has ended
+	 */
+	public synchronized boolean isEnded() {
+		return ending != null;
+	} //isEnded
+
+	/**
+	 * Gets the number of spectators subscribed.
+	 *
+	 * @return number of subscribers
+	 */
+	public int getSubscribers() {
+		return subscribers.size();
+	} //getSubscribers
+
+	/**
+	 * Getter method for <code>encoded</code>.
+	 *
+	 * @return number of frames encoded, each shared by every subscriber
+	 */
+	public long getEncoded() {
+		return encoded.get();
+	} //getEncoded
+
+	/**
+	 * Getter method for <code>dropped</code>.
+	 *
+	 * @return number of times a subscriber fell behind and had its backlog dropped
+	 */
+	public long getDropped() {
+		return dropped.get();
+	} //getDropped
+
+	/**
+	 * Class that rebuilds a game from the frames of a channel, as a
+	 * spectator would.
+	 */
+	public static class Mirror {
+
+		private byte[] board;
+		private int width, height;
+		private byte toMove;
+		private int blackHalves, whiteHalves;
+		private int sequence = -1;
+		private String result;
+
+		/**
+		 * Applies one frame.
+		 *
+		 * @param frame frame positioned at its length; it is read without being moved
+		 * @throws IllegalStateException if a delta does not follow the last frame or the type is unknown
+		 */
+		public void apply(ByteBuffer frame) {
+
+			ByteBuffer in = frame.duplicate();
+			in.getShort();
+			byte type = in.get();
+			int seq = in.getInt();
+
+			if (type == SNAPSHOT) {
+
+				width = in.get() & 0xFF;
+				height = in.get() & 0xFF;
+				toMove = in.get();
+				blackHalves = in.getInt();
+				whiteHalves = in.getInt();
+
+				if (board == null || board.length != width * height) {
+					board = new byte[width * height];
+				}
+
+				for (int p = 0; p < board.length; p += 4) {
+
+					int packed = in.get();
+
+					for (int i = 0; i < 4 && p + i < board.length; i++) {
+						board[p + i] = (byte) ((packed >> (2 * i)) & 3);
+					}
+				}
+			}
+			else if (type == MOVE) {
+
+				if (board == null || seq != sequence + 1) {
+					throw new IllegalStateException("Frame " + seq + " does not follow " + sequence);
+				}
+
+				byte color = in.get();
+				int point = in.getShort();
+				int count = in.getShort();
+
+				if (point >= 0) {
+					board[point] = color;
+				}
+				for (int i = 0; i < count; i++) {
+					board[in.getShort()] = Position.VACANT;
+				}
+
+				blackHalves += in.getShort();
+				whiteHalves += in.getShort();
+				toMove = Position.opponent(color);
+			}
+			else if (type == END) {
+
+				byte[] text = new byte[in.get()];
+				in.get(text);
+				result = new String(text, StandardCharsets.US_ASCII);
+			}
+			else {
+				throw new IllegalStateException("Unknown frame type " + type);
+			}
+
+			sequence = seq;
+		} //apply
+
+		/**
+		 * Gets the color on a point.
+		 *
+		 * @param p index of point
+		 * @return color code on the point
+		 */
+		public byte get(int p) {
+			return board[p];
+		} //get
+
+		/**
+		 * Getter method for <code>toMove</code>.
+		 *
+		 * @return color code of the player whose turn it is
+		 */
+		public byte getToMove() {
+			return toMove;
+		} //getToMove
+
+		/**
+		 * Gets black's area score.
+		 *
+		 * @return black area score
+		 */
+		public double getBlackArea() {
+			return blackHalves / 2.0;
+		} //getBlackArea
+
+		/**
+		 * Gets white's area score including komi.
+		 *
+		 * @return white area score
+		 */
+		public double getWhiteArea() {
+			return whiteHalves / 2.0;
+		} //getWhiteArea
+
+		/**
+		 * Getter method for <code>result</code>.
+		 *
+		 * @return result of the game, or null until it has ended
+		 */
+		public String getResult() {
+			return result;
+		} //getResult
+
+		/**
+		 * Getter method for <code>sequence</code>.
+		 *
+		 * @return sequence number of the last frame applied
+		 */
+		public int getSequence() {
+			return sequence;
+		} //getSequence
+	} //Mirror
+
+} //SpectatorChannel
@@ -28,8 +28,21 @@ public class SpriteSheet {
 	 * @param num number of sprites in sheet
 	 */
 	public SpriteSheet(String loc, int height, int width, int num) {
+		this(new Image(loc), height, width, num);
+	} //SpriteSheet
+
+	/**
+	 * Constructor for <code>SpriteSheet</code> from an image that is
+	 * already loaded.
+	 * 
+	 * @param sheet <code>Image</code> of the whole sheet
+	 * @param height size of each sprites height
+	 * @param width size of each sprites width
+	 * @param num number of sprites in sheet
+	 */
+	public SpriteSheet(Image sheet, int height, int width, int num) {
 
-		sheet = new Image(loc);
+		this.sheet = sheet;
 		sprites = new Rectangle2D[num];
 		this.height = height;
 		this.width = width;
@@ -0,0 +1,155 @@
+package go.game;
+
+/**
+ * Class that maps positions onto one canonical orientation, so a position
+ * and its rotations and reflections share a single key. A square board has
+ * eight symmetries and any other board four: the identity, the two flips
+ * and the half turn.
+ *
+ * <code>canonicalize</code> works out the Zobrist hash of a position under
+ * every symmetry in one pass over the stones and keeps the smallest, with
+ * the side to move, the ko point and the board size folded in, since the
+ * Zobrist keys of different sizes overlap. The symmetry that gave it is
+ * remembered so moves can be mapped to and from the canonical
+ * orientation. Superko history and passes are not part of the key.
+ *
+ * Each thread needs its own <code>Symmetry</code>, since it remembers the
+ * last position it was given.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class Symmetry {
+
+	private static final long WHITE_TO_MOVE = 0x9E3779B97F4A7C15L;
+	private static final long KO = 0xBF58476D1CE4E5B9L;
+
+	private int count;
+	private long board;
+
+	//image of every point under each symmetry, count entries per point
+	private int[] maps;
+
+	//index of the symmetry undoing each one
+	private int[] inverses;
+
+	private long[] hashes;
+	private int transform = 0;
+
+	/**
+	 * Constructor for the <code>Symmetry</code> of boards of a given size.
+	 *
+	 * @param width number of points in the x direction
+	 * @param height number of points in the y direction
+	 */
+	public Symmetry(int width, int height) {
+
+		count = (width == height) ? 8 : 4;
+		maps = new int[count * width * height];
+		inverses = new int[count];
+		hashes = new long[count];
+		board = Long.rotateLeft((65L * width + height) * KO, 17);
+
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				for (int s = 0; s < count; s++) {
+
+					//flip x, then flip y, then swap the axes
+					int fx = ((s & 1) != 0) ? width - 1 - x : x;
+					int fy = ((s & 2) != 0) ? height - 1 - y : y;
+
+					maps[count * (height * x + y) + s] = ((s & 4) != 0) ? height * fy + fx : height * fx + fy;
+				}
+			}
+		}
+
+		for (int s = 0; s < count; s++) {
+			for (int t = 0; t < count; t++) {
+				if (undoes(s, t, width * height)) {
+					inverses[s] = t;
+				}
+			}
+		}
+	} //Symmetry
+
+	/**
+	 * Checks whether one symmetry undoes another on every point.
+	 *
+	 * @param s symmetry applied first
+	 * @param t symmetry applied second
+	 * @param points number of points on the board
+	 * @return boolean value whether every point ends where it started
+	 */
+	private boolean undoes(int s, int t, int points) {
+
+		for (int p = 0; p < points; p++) {
+			if (maps[count * maps[count * p + s] + t] != p) {
+				return false;
+			}
+		}
+
+		return true;
+	} //undoes
+
+	/**
+	 * Works out the canonical key of a position and remembers the symmetry
+	 * that maps it onto the canonical orientation.
+	 *
+	 * @param position position of the same width and height
+	 * @return key shared by the position and all of its symmetries
+	 */
+	public long canonicalize(Position position) {
+
+		position.hashUnder(maps, count, hashes);
+
+		int ko = position.getKoPoint();
+		long best = 0;
+
+		for (int s = 0; s < count; s++) {
+
+			long hash = hashes[s];
+
+			if (ko >= 0) {
+				hash ^= Long.rotateLeft((maps[count * ko + s] + 1) * KO, 31);
+			}
+			if (s == 0 || Long.compareUnsigned(hash, best) < 0) {
+				best = hash;
+				transform = s;
+			}
+		}
+
+		best ^= board;
+
+		return (position.getToMove() == Position.WHITE) ? best ^ WHITE_TO_MOVE : best;
+	} //canonicalize
+
+	/**
+	 * Maps a point of the last position given into the canonical orientation.
+	 *
+	 * @param p index of the point, or -1 for a pass
+	 * @return index of the point in the canonical orientation, or -1 for a pass
+	 */
+	public int toCanonical(int p) {
+		return (p < 0) ? p : maps[count * p + transform];
+	} //toCanonical
+
+	/**
+	 * Maps a point of the canonical orientation back onto the last position
+	 * given.
+	 *
+	 * @param p index of the point in the canonical orientation, or -1 for a pass
+	 * @return index of the point, or -1 for a pass
+	 */
+	public int fromCanonical(int p) {
+		return (p < 0) ? p : maps[count * p + inverses[transform]];
+	} //fromCanonical
+
+	/**
+	 * Getter method for <code>count</code>.
+	 *
+	 * @return number of symmetries of the board
+	 */
+	public int getCount() {
+		return count;
+	} //getCount
+
+} //Symmetry
@@ -0,0 +1,452 @@
+package go.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Class that chooses moves by Monte Carlo tree search. Every worker thread
+ * walks a single shared tree, picking children by UCT, plays a random game
+ * to the end with its own <code>Playout</code> and adds the result back up
+ * the path. Visit and win counters are updated with atomic field updaters,
+ * and a node's children are published with a single compare-and-set, so the
+ * workers never take a lock.
+ *
+ * A visit is counted on the way down, before its result is known, which
+ * acts as a virtual loss that steers other workers onto different paths.
+ *
+ * With a <code>PositionCache</code> set, results are carried from one
+ * search to the next and between searchers sharing the cache. After each
+ * search every node visited at least <code>STORE_AT</code> times is stored
+ * under its canonical key with its most visited reply. The root's moves
+ * and every leaf expanded look themselves up and start with up to
+ * <code>PRIOR_CAP</code> of the stored playouts. Those seeded playouts are
+ * remembered per node and left out when the node is stored again, so only
+ * the playouts a search ran are ever written back.
+ *
+ * @author Benjamin C. McKinley
+ */
+public class TreeSearch {
+
+	private static final double EXPLORATION = 0.7;
+	private static final int EXPAND_AT = 2;
+	private static final int PRIOR_CAP = 64;
+	private static final int STORE_AT = 8;
+
+	private int threads;
+	private double komi = AreaScorer.DEFAULT_KOMI;
+	private boolean patterns = false;
+	private PositionCache cache;
+	private SplittableRandom seeds = new SplittableRandom();
+
+	private Node root;
+	private Position rootPosition;
+	private AtomicLong playouts = new AtomicLong();
+	private volatile boolean stopped;
+	private long playoutLimit;
+	private long deadline;
+
+	/**
+	 * Constructor for a <code>TreeSearch</code> using every core.
+	 */
+	public TreeSearch() {
+		this(Runtime.getRuntime().availableProcessors());
+	} //TreeSearch
+
+	/**
+	 * Constructor for a <code>TreeSearch</code>.
+	 *
+	 * @param threads number of workers to run playouts on
+	 */
+	public TreeSearch(int threads) {
+		this.threads = threads;
+	} //TreeSearch
+
+	/**
+	 * Class representing one move in the search tree.
+	 */
+	private static class Node {
+
+		private static final AtomicIntegerFieldUpdater<Node> VISITS =
+				AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+		private static final AtomicIntegerFieldUpdater<Node> WINS =
+				AtomicIntegerFieldUpdater.newUpdater(Node.class, "wins");
+		private static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN =
+				AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+		private final Node parent;
+		private final int move;
+		private final byte color;
+
+		private volatile int visits;
+		private volatile int wins;
+		private volatile Node[] children;
+
+		//playouts and wins seeded from the cache, set once by the seeding thread
+		private int prior;
+		private int priorWins;
+
+		/**
+		 * Constructor for a <code>Node</code>.
+		 *
+		 * @param parent node before this move, or null for the root
+		 * @param move point played, or -1 for a pass
+		 * @param color color of the player who made the move
+		 */
+		private Node(Node parent, int move, byte color) {
+			this.parent = parent;
+			this.move = move;
+			this.color = color;
+		} //Node
+
+	} //Node
+
+	/**
+	 * Searches a position and returns the most visited move for the player
+	 * to move. Stops at whichever budget runs out first.
+	 *
+	 * @param position position to search, which is not changed
+	 * @param millis time budget in milliseconds
+	 * @param maxPlayouts playout budget
+	 * @return index of the chosen point, or -1 to pass
+	 * @throws InterruptedException if the calling thread is interrupted
+	 */
+	public int search(Position position, long millis, long maxPlayouts) throws InterruptedException {
+
+		byte toMove = position.getToMove();
+
+		rootPosition = position;
+		root = new Node(null, -1, Position.opponent(toMove));
+		playouts.set(0);
+
+		playoutLimit = maxPlayouts;
+		deadline = System.nanoTime() + millis * 1_000_000L;
+		stopped = false;
+
+		//the root uses the real position so its moves respect superko
+		Playout scratch = new Playout(position.getWidth(), position.getHeight());
+		scratch.reset(position);
+		List<Node> moves = new ArrayList<>();
+		int[] legal = new int[position.getPointCount()];
+		int count = position.getLegalMoves().get(toMove).toPoints(legal);
+
+		//kept on the root so each playout copies the codes instead of working them out
+		if (patterns) {
+			position.getPatterns();
+		}
+
+		for (int i = 0; i < count; i++) {
+			if (!scratch.isEye(toMove, legal[i])) {
+				moves.add(new Node(root, legal[i], toMove));
+			}
+		}
+
+		if (moves.isEmpty()) {
+			return -1;
+		}
+
+		root.children = moves.toArray(new Node[0]);
+
+		//the root's moves are looked up on a copy so its history is not touched
+		Symmetry symmetry = new Symmetry(position.getWidth(), position.getHeight());
+		PositionCache.Entry entry = new PositionCache.Entry();
+		Position copy = null;
+
+		if (cache != null) {
+
+			copy = new Position(position.getWidth(), position.getHeight());
+			copy.setSuperko(false);
+			copy.loadFrom(position);
+
+			for (Node child : root.children) {
+				copy.play(toMove, child.move);
+				seed(child, copy, symmetry, entry);
+				copy.undo();
+			}
+		}
+
+		List<Future<?>> workers = new ArrayList<>();
+
+		for (int i = 0; i < threads; i++) {
+			SplittableRandom random = seeds.split();
+			workers.add(GameThreads.getPlayoutPool().submit(() -> work(random)));
+		}
+
+		try {
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			stopped = true;
+		}
+
+		if (cache != null) {
+			store(root, copy, symmetry);
+		}
+
+		return mostVisited(root).move;
+	} //search
+
+	/**
+	 * Gets the most visited child of a node.
+	 *
+	 * @param node node with children
+	 * @return child with the most visits
+	 */
+	private static Node mostVisited(Node node) {
+
+		Node best = node.children[0];
+
+		for (Node child : node.children) {
+			if (child.visits > best.visits) {
+				best = child;
+			}
+		}
+
+		return best;
+	} //mostVisited
+
+	/**
+	 * Adds the playouts the cache holds for a node's position to the node,
+	 * up to <code>PRIOR_CAP</code> of them, and remembers them as its prior.
+	 *
+	 * @param node node to seed
+	 * @param position position after the node's move
+	 * @param symmetry symmetry used to work out the key
+	 * @param entry entry to look up into
+	 */
+	private void seed(Node node, Position position, Symmetry symmetry, PositionCache.Entry entry) {
+
+		if (!cache.get(symmetry.canonicalize(position), entry) || entry.getVisits() == 0) {
+			return;
+		}
+
+		int visits = Math.min(entry.getVisits(), PRIOR_CAP);
+		int blackWins = (int) ((long) entry.getBlackWins() * visits / entry.getVisits());
+
+		node.prior = visits;
+		node.priorWins = (node.color == Position.BLACK) ? blackWins : visits - blackWins;
+
+		Node.VISITS.addAndGet(node, visits);
+		Node.WINS.addAndGet(node, node.priorWins);
+	} //seed
+
+	/**
+	 * Stores a node and every node below it that this search visited at
+	 * least <code>STORE_AT</code> times in the cache, with the most visited
+	 * reply as its best move. Playouts seeded from the cache are left out.
+	 *
+	 * @param node node to store
+	 * @param position position after the node's move, left as it was found
+	 * @param symmetry symmetry used to work out the keys
+	 */
+	private void store(Node node, Position position, Symmetry symmetry) {
+
+		Node[] children = node.children;
+		int visits = node.visits - node.prior;
+
+		if (visits < STORE_AT) {
+			return;
+		}
+
+		int won = node.wins - node.priorWins;
+		int wins = (node.color == Position.BLACK) ? won : visits - won;
+		long key = symmetry.canonicalize(position);
+		int move = (children == null) ? -1 : symmetry.toCanonical(mostVisited(node).move);
+
+		cache.put(key, visits, wins, move);
+
+		if (children == null) {
+			return;
+		}
+
+		for (Node child : children) {
+			if (child.visits - child.prior >= STORE_AT) {
+
+				if (child.move < 0) {
+					position.pass(child.color);
+				}
+				else {
+					position.play(child.color, child.move);
+				}
+
+				store(child, position, symmetry);
+				position.undo();
+			}
+		}
+	} //store
+
+	/**
+	 * Loop run by each worker until the search budget is spent.
+	 *
+	 * @param random source of random numbers for this worker
+	 */
+	private void work(SplittableRandom random) {
+
+		Playout playout = new Playout(rootPosition.getWidth(), rootPosition.getHeight());
+		playout.setPatterns(patterns);
+
+		Symmetry symmetry = new Symmetry(rootPosition.getWidth(), rootPosition.getHeight());
+		PositionCache.Entry entry = new PositionCache.Entry();
+
+		while (!stopped) {
+
+			playout.reset(rootPosition);
+			Node node = root;
+			Node.VISITS.incrementAndGet(node);
+
+			while (node.children != null) {
+				node = select(node, random);
+				Node.VISITS.incrementAndGet(node);
+				playout.play(node.color, node.move);
+			}
+
+			if (node.visits >= EXPAND_AT && playout.getPosition().getPasses() < 2) {
+				node = select(expand(node, playout, symmetry, entry), random);
+				Node.VISITS.incrementAndGet(node);
+				playout.play(node.color, node.move);
+			}
+
+			double margin = playout.run(random, komi);
+			byte winner = (margin > 0) ? Position.BLACK : Position.WHITE;
+
+			for (Node n = node; n != null; n = n.parent) {
+				if (n.color == winner) {
+					Node.WINS.incrementAndGet(n);
+				}
+			}
+
+			long done = playouts.incrementAndGet();
+
+			if (done >= playoutLimit || System.nanoTime() >= deadline) {
+				stopped = true;
+			}
+		}
+	} //work
+
+	/**
+	 * Gives a leaf its children, one per legal move that does not fill an
+	 * eye, or a single pass when there are none. If another worker expands
+	 * the node first, its children are kept. With a cache set, the worker
+	 * that expands the node also seeds it from the cache.
+	 *
+	 * @param node leaf to expand
+	 * @param playout playout holding the leaf's position
+	 * @param symmetry this worker's symmetry
+	 * @param entry this worker's entry to look up into
+	 * @return the expanded node
+	 */
+	private Node expand(Node node, Playout playout, Symmetry symmetry, PositionCache.Entry entry) {
+
+		Position position = playout.getPosition();
+		byte toMove = Position.opponent(node.color);
+		int n = position.getPointCount();
+		int count = 0;
+
+		for (int p = 0; p < n; p++) {
+			if (position.isLegal(toMove, p) && !playout.isEye(toMove, p)) {
+				count++;
+			}
+		}
+
+		Node[] children = new Node[Math.max(count, 1)];
+
+		if (count == 0) {
+			children[0] = new Node(node, -1, toMove);
+		}
+		else {
+			count = 0;
+			for (int p = 0; p < n; p++) {
+				if (position.isLegal(toMove, p) && !playout.isEye(toMove, p)) {
+					children[count++] = new Node(node, p, toMove);
+				}
+			}
+		}
+
+		if (Node.CHILDREN.compareAndSet(node, null, children) && cache != null) {
+			seed(node, position, symmetry, entry);
+		}
+
+		return node;
+	} //expand
+
+	/**
+	 * Picks the child with the best UCT value. Unvisited children come
+	 * first, in random order.
+	 *
+	 * @param node node to choose from
+	 * @param random source of random numbers
+	 * @return chosen child
+	 */
+	private Node select(Node node, SplittableRandom random) {
+
+		Node[] children = node.children;
+		double logVisits = Math.log(Math.max(node.visits, 1));
+		Node best = null;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		int start = random.nextInt(children.length);
+
+		for (int i = 0; i < children.length; i++) {
+
+			Node child = children[(start + i) % children.length];
+			int visits = child.visits;
+
+			if (visits == 0) {
+				return child;
+			}
+
+			double value = (double) child.wins / visits + EXPLORATION * Math.sqrt(logVisits / visits);
+
+			if (value > bestValue) {
+				bestValue = value;
+				best = child;
+			}
+		}
+
+		return best;
+	} //select
+
+	/**
+	 * Getter method for the number of playouts run by the last search.
+	 *
+	 * @return number of playouts
+	 */
+	public long getPlayouts() {
+		return playouts.get();
+	} //getPlayouts
+
+	/**
+	 * Setter method for <code>komi</code>.
+	 *
+	 * @param komi points given to white
+	 */
+	public void setKomi(double komi) {
+		this.komi = komi;
+	} //setKomi
+
+	/**
+	 * Setter method for <code>patterns</code>.
+	 *
+	 * @param patterns whether playouts pick moves by their 3x3 patterns
+	 */
+	public void setPatterns(boolean patterns) {
+		this.patterns = patterns;
+	} //setPatterns
+
+	/**
+	 * Setter method for <code>cache</code>.
+	 *
+	 * @param cache cache shared with other searches, or null for none
+	 */
+	public void setCache(PositionCache cache) {
+		this.cache = cache;
+	} //setCache
+
+} //TreeSearch